@@ -0,0 +1,76 @@
+package main.java.benchmarks;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ElevatorManager.askForElevator called by many threads at once, as by connections of many floors
+ * Routes are kept at a steady depth by DrainingScheduler; run with -t to change the number of threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AskForElevatorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Building {
+
+        @Param({"4", "16"})
+        int elevators;
+
+        @Param({"8"})
+        int depth;
+
+        @Param({"greedy", "nearest", "joint"})
+        String strategy;
+
+        ElevatorManager manager;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            manager = new ElevatorManager(Collections.nCopies(elevators, CarKinematics.DEFAULT), new AtomicBoolean(true),
+                    new DrainingScheduler(depth), DispatchStrategies.byName(strategy));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Calls {
+
+        int[] calls;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            calls = Fleets.randomCalls(1024, new Random(Thread.currentThread().getId()));
+        }
+    }
+
+    @Benchmark
+    public int askForElevator(Building building, Calls calls) {
+        int i = calls.next;
+        calls.next = (i + 2) & (calls.calls.length - 1);
+        return building.manager.askForElevator(calls.calls[i], calls.calls[i + 1]);
+    }
+}
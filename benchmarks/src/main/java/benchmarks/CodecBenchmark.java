@@ -0,0 +1,79 @@
+package main.java.benchmarks;
+
+import main.java.model.Message;
+import main.java.protocol.MessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a message into a frame and decoding it back, as on both ends of a connection
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.MAX_FRAME_LENGTH + MessageCodec.MAX_HEADER_LENGTH);
+    private Message pickup;
+    private Message assignment;
+    private Message pickupBatch;
+    private Message resultBatch;
+
+    @Setup
+    public void setUp() {
+        pickup = Message.pickup(17, 1234);
+        assignment = Message.assignment(17, 3, 1234);
+        List<Message> pickups = new ArrayList<>();
+        List<Message> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            pickups.add(Message.pickup(i, i));
+            results.add(Message.assignment(i, i % 4, i));
+        }
+        pickupBatch = Message.pickupBatch(pickups);
+        resultBatch = Message.resultBatch(results);
+    }
+
+    @Benchmark
+    public Message pickup() throws ProtocolException {
+        return roundTrip(pickup);
+    }
+
+    @Benchmark
+    public Message assignment() throws ProtocolException {
+        return roundTrip(assignment);
+    }
+
+    @Benchmark
+    public Message pickupBatch() throws ProtocolException {
+        return roundTrip(pickupBatch);
+    }
+
+    @Benchmark
+    public Message resultBatch() throws ProtocolException {
+        return roundTrip(resultBatch);
+    }
+
+    private Message roundTrip(Message message) throws ProtocolException {
+        buffer.clear();
+        MessageCodec.encode(message, buffer);
+        buffer.flip();
+        return MessageCodec.tryDecode(buffer);
+    }
+}
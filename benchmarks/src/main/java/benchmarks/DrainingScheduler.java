@@ -0,0 +1,42 @@
+package main.java.benchmarks;
+
+import main.java.simulation.ElevatorScheduler;
+import main.java.threads.Elevator;
+
+import java.util.List;
+
+/**
+ * Scheduler without time: an elevator whose route grows beyond 'maxDepth' immediately serves its first floor
+ * Keeps routes at a steady depth no matter how many calls a benchmark makes, and changes elevators
+ * concurrently with dispatching, so optimistic commits can fail like on a running server
+ */
+class DrainingScheduler implements ElevatorScheduler {
+
+    private final int maxDepth;
+
+    DrainingScheduler(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public long now() {
+        return 0;
+    }
+
+    @Override
+    public void start(List<Elevator> elevators) {
+    }
+
+    @Override
+    public void floorAdded(Elevator elevator) {
+        while (elevator.getSnapshot().getRouteLength() > maxDepth) {
+            if (elevator.departToNextFloor() < 0) return;
+            elevator.arriveAtNextFloor();
+        }
+    }
+
+    @Override
+    public void schedule(long time, Runnable task) {
+        task.run();
+    }
+}
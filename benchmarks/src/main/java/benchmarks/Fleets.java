@@ -0,0 +1,52 @@
+package main.java.benchmarks;
+
+import main.java.model.ElevatorSnapshot;
+import main.java.model.IntRoute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic elevator states shared by the benchmarks
+ */
+final class Fleets {
+
+    static final int FLOORS = 50;
+
+    private Fleets() {}
+
+    /**
+     * @return snapshots of 'elevators' cars at random floors, each with a random route of 'depth' floors
+     */
+    static List<ElevatorSnapshot> randomFleet(int elevators, int depth, Random random) {
+        List<ElevatorSnapshot> fleet = new ArrayList<>(elevators);
+        for (int i = 0; i < elevators; i++) {
+            fleet.add(randomSnapshot(i, depth, random));
+        }
+        return fleet;
+    }
+
+    static ElevatorSnapshot randomSnapshot(int ID, int depth, Random random) {
+        IntRoute route = new IntRoute();
+        for (int i = 0; i < depth; i++) {
+            route.add(random.nextInt(FLOORS));
+        }
+        int currentFloor = random.nextInt(FLOORS);
+        int nextFloor = depth > 0 ? route.peekFirst() : currentFloor;
+        return new ElevatorSnapshot(ID, 0, currentFloor, nextFloor, depth > 0, route);
+    }
+
+    /**
+     * @return pairs of floors (from, to) with from != to, flattened as [from0, to0, from1, to1, ...]
+     */
+    static int[] randomCalls(int count, Random random) {
+        int[] calls = new int[2 * count];
+        for (int i = 0; i < count; i++) {
+            int from = random.nextInt(FLOORS);
+            calls[2 * i] = from;
+            calls[2 * i + 1] = (from + 1 + random.nextInt(FLOORS - 1)) % FLOORS;
+        }
+        return calls;
+    }
+}
@@ -0,0 +1,141 @@
+package main.java.benchmarks;
+
+import main.java.model.IntRoute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes of a fleet of ELEVATORS cars: IntRoute against the LinkedList<Integer> route the elevators had before,
+ * published to snapshots as an int[] scanned linearly
+ *  - queries: total distance and whether a floor will be visited, which strategies ask for every candidate
+ *  - commit: insertion of a floor and the copy of the route published in the new snapshot
+ * RouteCopyBenchmark measures the copy alone
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteBenchmark {
+
+    static final int ELEVATORS = 16;
+
+    @Param({"8", "64", "256"})
+    int depth;
+
+    private final IntRoute[] routes = new IntRoute[ELEVATORS];
+    private final LinkedListRoute[] lists = new LinkedListRoute[ELEVATORS];
+    private final int[] currentFloors = new int[ELEVATORS];
+    private final Random random = new Random(1);
+    private int floor = 0;
+    private int car = 0;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < ELEVATORS; i++) {
+            routes[i] = new IntRoute();
+            lists[i] = new LinkedListRoute();
+            for (int j = 0; j < depth; j++) {
+                int stop = random.nextInt(Fleets.FLOORS);
+                routes[i].add(stop);
+                lists[i].queue.add(stop);
+            }
+            lists[i].publish();
+            currentFloors[i] = random.nextInt(Fleets.FLOORS);
+        }
+    }
+
+    @Benchmark
+    public long fleetQueriesIntRoute() {
+        floor = floor + 1 == Fleets.FLOORS ? 0 : floor + 1;
+        long result = 0;
+        for (int i = 0; i < ELEVATORS; i++) {
+            result += routes[i].totalDistance(currentFloors[i]);
+            if (routes[i].contains(floor)) result++;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long fleetQueriesLinkedList() {
+        floor = floor + 1 == Fleets.FLOORS ? 0 : floor + 1;
+        long result = 0;
+        for (int i = 0; i < ELEVATORS; i++) {
+            result += lists[i].totalDistance(currentFloors[i]);
+            if (lists[i].willBeVisited(floor)) result++;
+        }
+        return result;
+    }
+
+    /**
+     * Inserts a floor in the middle of the route of the next car, publishes the route and serves its first floor,
+     * so the depth stays the same
+     */
+    @Benchmark
+    public IntRoute commitIntRoute() {
+        car = car + 1 == ELEVATORS ? 0 : car + 1;
+        IntRoute route = routes[car];
+        route.add(route.size() / 2, random.nextInt(Fleets.FLOORS));
+        IntRoute published = route.copy();
+        route.pollFirst();
+        return published;
+    }
+
+    @Benchmark
+    public int[] commitLinkedList() {
+        car = car + 1 == ELEVATORS ? 0 : car + 1;
+        LinkedListRoute route = lists[car];
+        route.queue.add(route.queue.size() / 2, random.nextInt(Fleets.FLOORS));
+        int[] published = route.publish();
+        route.queue.pollFirst();
+        return published;
+    }
+
+    /**
+     * Route as Elevator kept it before IntRoute: the queue of the elevator and the array published in its snapshot
+     */
+    private static class LinkedListRoute {
+        private final LinkedList<Integer> queue = new LinkedList<>();
+        private int[] snapshot = new int[0];
+
+        private int[] publish() {
+            int[] route = new int[queue.size()];
+            int i = 0;
+            for (int floor: queue) {
+                route[i++] = floor;
+            }
+            snapshot = route;
+            return route;
+        }
+
+        private int totalDistance(int currentFloor) {
+            int distance = 0, lastFloor = currentFloor;
+            for (int floor: snapshot) {
+                distance += Math.abs(floor - lastFloor);
+                lastFloor = floor;
+            }
+            return distance;
+        }
+
+        private boolean willBeVisited(int floor) {
+            for (int routeFloor: snapshot) {
+                if (routeFloor == floor) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package main.java.benchmarks;
+
+import main.java.model.IntRoute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntRoute#copy, made for every published snapshot: besides the floors it clones the visit counter of every floor
+ * up to the highest one in the route, so in tall buildings it costs more than the route is long
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteCopyBenchmark {
+
+    @Param({"8", "64"})
+    int depth;
+
+    @Param({"50", "500", "5000"})
+    int floors;
+
+    private final IntRoute route = new IntRoute();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < depth; i++) {
+            route.add(random.nextInt(floors));
+        }
+    }
+
+    @Benchmark
+    public IntRoute copy() {
+        return route.copy();
+    }
+}
@@ -0,0 +1,61 @@
+package main.java.benchmarks;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.dispatch.DispatchStrategy;
+import main.java.model.Assignment;
+import main.java.model.FleetSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Choosing an elevator (DispatchStrategy.assign) on a frozen FleetSnapshot, for fleets of different size and load
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StrategyBenchmark {
+
+    @Param({"1", "4", "16", "64", "256"})
+    int elevators;
+
+    @Param({"0", "8", "32"})
+    int depth;
+
+    @Param({"greedy", "nearest", "joint"})
+    String strategy;
+
+    private DispatchStrategy dispatchStrategy;
+    private FleetSnapshot fleet;
+    private int[] calls;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        dispatchStrategy = DispatchStrategies.byName(strategy);
+        fleet = FleetSnapshot.of(Fleets.randomFleet(elevators, depth, random));
+        calls = Fleets.randomCalls(1024, random);
+    }
+
+    @Benchmark
+    public Assignment assign() {
+        int i = next;
+        next = (i + 2) & (calls.length - 1);
+        return dispatchStrategy.assign(calls[i], calls[i + 1], fleet);
+    }
+}
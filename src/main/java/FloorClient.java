@@ -1,55 +1,93 @@
 package main.java;
 
+import main.java.loadgen.LoadGenerator;
+import main.java.model.MessageType;
 import main.java.model.Params;
 import main.java.model.Message;
+import main.java.protocol.MessageChannel;
+import main.java.protocol.MessageCodec;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Paweł Marszał
  * Client process that represents device on given floor designed to pickup elevators
+ * Optional argument is the floor of the device; without it (or with "any") server assigns the next floor without client
+ * The second optional argument is the building of the device, for servers hosting many of them
+ * The third optional argument is the list of servers, host:port,... (localhost:14141 by default); the client connects
+ * to the first one that accepts it and, when the connection breaks, to the next one that does (e.g. the standby server
+ * that took over), then sends again the pickups without answers and follows the same elevators; a server that leaves
+ * pickups without answers for ANSWER_MILLIS is treated as lost too
+ * Pickups are sent again only to another server: the lost one may have dispatched them already, so if it is the only one
+ * that accepts the client again, the pickups without answers are reported to the user instead
+ * With the first argument "load" it runs LoadGenerator with the remaining arguments instead
  */
 public class FloorClient {
 
+    // how long the client looks for a server after losing the connection, and how often it tries them all
+    private static final long RECONNECT_MILLIS = 10_000;
+    private static final long RETRY_MILLIS = 100;
+    // a server that does not answer the HELLO or any pending pickup in that time is lost, even if connected
+    private static final int ANSWER_MILLIS = 500;
+    // how often the watchdog checks whether the server answers
+    private static final long WATCHDOG_MILLIS = 100;
+
     private static final AtomicBoolean processStillRunning = new AtomicBoolean(true);
-    private static int ID;
+    private static volatile int ID;
+    private static volatile int protocolVersion;
+    // ID of the next pickup; answers may come in any order, so they carry the ID of their pickup
+    private static int nextCorrelation = 0;
+    private static List<InetSocketAddress> servers;
+    // index of the server the client is connected to; after losing it, the others are tried first
+    private static int current;
+    private static int building;
+    // connection to the current server; replaced, together with sending the pending pickups, while holding 'sending'
+    private static final Object sending = new Object();
+    private static volatile MessageChannel channel;
+    // pickups sent but not answered yet, by correlation, and since when the server did not answer any of them;
+    // guarded by 'sending'
+    private static final Map<Integer, Message> pending = new LinkedHashMap<>();
+    private static long waitingSince;
+    // set by the watchdog when it closes the connection to a silent server
+    private static volatile boolean serverSilent;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && "load".equals(args[0])) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // floor may be given explicitly, so many clients can work on the same floor
+        int requestedFloor = args.length > 0 && !"any".equals(args[0]) ? Integer.parseInt(args[0]) : -1;
+        building = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        servers = parseServers(args.length > 2 ? args[2] : "localhost:" + Params.serverCommunicationPort);
 
-    public static void main(String[] args) {
-        Socket socket = null;
-        ObjectOutputStream out = null;
         try {
-            // connect to unidirectional connection (server -> channel) and obtain ID
-            socket = new Socket("localhost", Params.serverCommunicationPort);
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-            out = new ObjectOutputStream(socket.getOutputStream());
-            try {
-                Message idMsg = (Message) in.readObject();
-                if (!"ID".equals(idMsg.type)) {
-                    throw new IllegalStateException("First message from server must contain \"ID\"");
-                }
-                if (idMsg.number < 0) {
-                    throw new IllegalStateException("Server didn't accept this client; assigned ID: " + idMsg.number);
-                }
-                ID = idMsg.number;
-            } catch (ClassNotFoundException e) {
-                throw new IllegalStateException("Unrecognizable message from server");
-            }
+            // connect to the server, negotiate version of the protocol and obtain ID
+            channel = connect(requestedFloor, 0, 0);
         } catch (Exception e) {
             e.printStackTrace();
-            try {
-                if (socket != null) socket.close();
-            } catch (IOException ignored) {}
             System.out.println("Program exits");
             System.exit(1);
         }
 
-        Listener listener = new Listener(socket);
+        Listener listener = new Listener();
         listener.start();
+        Thread watchdog = new Thread(FloorClient::watchServer, "Watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
 
         Scanner scanner = new Scanner(System.in);
 
@@ -61,82 +99,285 @@ public class FloorClient {
 
             try {
                 if ("pickup".equals(tokens[0])) {
-                    if (tokens.length != 2) throw new IllegalArgumentException("Command \"pickup\" gets 1 argument");
-                    int newFloor = Integer.parseInt(tokens[1]);
-                    if (newFloor < 0) {
-                        throw new IllegalArgumentException("Floor ID cannot be negative");
+                    if (tokens.length < 2) throw new IllegalArgumentException("Command \"pickup\" gets at least 1 argument");
+                    List<Message> pickups = new ArrayList<>();
+                    for (int i = 1; i < tokens.length; i++) {
+                        pickups.add(protocolVersion >= 2
+                                ? Message.pickup(Integer.parseInt(tokens[i]), nextCorrelation++)
+                                : Message.pickup(Integer.parseInt(tokens[i])));
+                    }
+                    synchronized (sending) {
+                        if (pending.isEmpty()) waitingSince = System.currentTimeMillis();
+                        for (Message pickup: pickups) {
+                            if (pickup.correlation >= 0) pending.put(pickup.correlation, pickup);
+                        }
+                        try {
+                            sendPickups(channel, pickups);
+                        } catch (IOException e) {
+                            // the listener connects again and sends the pending pickups
+                        }
                     }
-
-                    out.writeObject(new Message("pickup", newFloor));
                 } else {
                     throw new IllegalArgumentException("Unrecognized command: " + tokens[0]);
                 }
-            } catch (IOException | IllegalArgumentException e) {
+            } catch (IllegalArgumentException e) {
                 e.printStackTrace();
             }
         }
 
         try {
-            socket.close();
+            channel.close();
         } catch (IOException ignored) {}
     }
 
+    private static List<InetSocketAddress> parseServers(String list) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String server: list.split(",")) {
+            String[] address = server.split(":");
+            if (address.length != 2) throw new IllegalArgumentException("Expected host:port: " + server);
+            addresses.add(new InetSocketAddress(address[0], Integer.parseInt(address[1])));
+        }
+        return addresses;
+    }
+
+    /**
+     * Tries the servers in order until one of them accepts the client
+     * @param floor floor of the client, -1 if the server assigns it
+     * @param retryMillis how long to keep trying, 0 to try every server once
+     * @param first index of the server tried first
+     * @throws IOException if no server could be reached in that time
+     * @throws IllegalStateException if a server rejected the client
+     */
+    private static MessageChannel connect(int floor, long retryMillis, int first) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + retryMillis;
+        while (true) {
+            IOException failure = null;
+            for (int i = 0; i < servers.size(); i++) {
+                int index = (first + i) % servers.size();
+                InetSocketAddress server = servers.get(index);
+                Socket socket = new Socket();
+                boolean accepted = false;
+                try {
+                    socket.connect(server, (int) RETRY_MILLIS);
+                    socket.setSoTimeout(ANSWER_MILLIS);
+                    MessageChannel connection = new MessageChannel(socket);
+                    connection.send(Message.hello(MessageCodec.MIN_SUPPORTED_VERSION, MessageCodec.PROTOCOL_VERSION, floor, building));
+
+                    Message idMsg = connection.receive();
+                    if (idMsg.type == MessageType.REJECTED) {
+                        throw new IllegalStateException(idMsg.reason.description);
+                    }
+                    if (idMsg.type != MessageType.WELCOME) {
+                        throw new IllegalStateException("First message from server must be WELCOME");
+                    }
+                    // the stream must not time out in the middle of a frame; the watchdog checks the answers from now on
+                    socket.setSoTimeout(0);
+                    ID = idMsg.floor;
+                    protocolVersion = idMsg.version;
+                    current = index;
+                    accepted = true;
+                    return connection;
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    try {
+                        if (!accepted) socket.close();
+                    } catch (IOException ignored) {}
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) throw failure;
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * Many floors are requested in batches, older servers get them one by one without waiting for answers
+     */
+    private static void sendPickups(MessageChannel channel, List<Message> pickups) throws IOException {
+        if (pickups.size() == 1) {
+            channel.send(pickups.get(0));
+        } else if (protocolVersion >= 2) {
+            for (int i = 0; i < pickups.size(); i += Message.MAX_BATCH_SIZE) {
+                channel.send(Message.pickupBatch(pickups.subList(i, Math.min(pickups.size(), i + Message.MAX_BATCH_SIZE))));
+            }
+        } else {
+            for (int i = 0; i < pickups.size(); i++) {
+                channel.send(pickups.get(i), i == pickups.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection to a server that leaves pickups without answers for ANSWER_MILLIS,
+     * so the listener, blocked in receive(), connects to the next one
+     */
+    private static void watchServer() {
+        try {
+            while (processStillRunning.get()) {
+                Thread.sleep(WATCHDOG_MILLIS);
+                synchronized (sending) {
+                    if (!pending.isEmpty() && System.currentTimeMillis() - waitingSince >= ANSWER_MILLIS) {
+                        serverSilent = true;
+                        try {
+                            channel.close();
+                        } catch (IOException ignored) {}
+                    }
+                }
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
     private static void printPrompt() {
         System.out.print("[Floor " + ID + "] ");
     }
 
     /**
      * Secondary thread that listens to messages from server
-     *  - "exit" causes FloorClient to stop and shutdown
-     *  - "result" contain answer for user's request
+     *  - EXIT causes FloorClient to stop and shutdown
+     *  - ASSIGNMENT and REFUSED contain answer for user's request, RESULT_BATCH - answers for many floors
+     *  - POSITION shows where an assigned elevator is; since version 3 the panel follows every assigned elevator
+     *    until it stops at this floor
+     * When the connection breaks, the listener connects to the next server that accepts the client
      */
     private static class Listener extends Thread {
 
-        private final Socket socket;
-
-        public Listener(Socket socket) {
-            this.socket = socket;
-        }
+        // elevators this panel subscribed to
+        private final Set<Integer> followed = new HashSet<>();
 
         @Override
         public void run() {
             try {
-                ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-
                 while (processStillRunning.get()) {
                     try {
-                        Message msg = (Message) in.readObject();
-                        if (msg == null || msg.type == null)
-                            throw new IllegalArgumentException("Received monolog message is empty");
+                        Message msg = channel.receive();
 
-                        if ("exit".equals(msg.type)) {
+                        if (msg.type == MessageType.EXIT) {
                             System.out.println("\n[Server] exit");
                             processStillRunning.set(false);
                             try {
-                                socket.close();
+                                channel.close();
                             } catch (IOException ignored) {}
                             System.exit(0);
                         }
-                        else if ("result".equals(msg.type)) {
-                            System.out.println("\n[Server] " + msg.text);
+                        else if (msg.type == MessageType.RESULT_BATCH) {
+                            for (Message result: msg.entries) {
+                                answered(result);
+                            }
+                        }
+                        else if (msg.type == MessageType.ASSIGNMENT || msg.type == MessageType.REFUSED) {
+                            answered(msg);
+                        }
+                        else if (msg.type == MessageType.POSITION) {
+                            printPosition(msg);
                         }
                         else {
                             throw new IllegalArgumentException("Unrecognized message type: " + msg.type);
                         }
-                    } catch (ClassNotFoundException | IllegalArgumentException e) {
+                    } catch (IllegalArgumentException e) {
                         e.printStackTrace();
                         System.out.println();
                         printPrompt();
+                    } catch (IOException e) {
+                        reconnect(serverSilent ? new SocketTimeoutException("No answers for " + ANSWER_MILLIS + " ms") : e);
                     }
                 }
-            } catch (IOException e) {
+            } catch (IOException | InterruptedException | IllegalStateException e) {
+                // no server accepted the client again
                 e.printStackTrace();
                 processStillRunning.set(false);
             }
 
             try {
-                socket.close();
+                channel.close();
             } catch (IOException ignored) {}
         }
+
+        /**
+         * Connects to the next server that accepts the client, as the same floor, and sends again
+         * the pickups without answers (if it is another server) and the subscriptions
+         * @throws IOException if no server accepted the client in RECONNECT_MILLIS
+         */
+        private void reconnect(IOException cause) throws IOException, InterruptedException {
+            if (!processStillRunning.get()) return;
+            System.out.println("\n[Floor " + ID + "] Connection lost (" + cause + "), reconnecting");
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+
+            int lost = current;
+            MessageChannel next = connect(ID, RECONNECT_MILLIS, lost + 1);
+            int resent = 0;
+            List<Message> unanswered = new ArrayList<>();
+            // if the new connection breaks too, the next receive connects again
+            try {
+                synchronized (sending) {
+                    channel = next;
+                    serverSilent = false;
+                    waitingSince = System.currentTimeMillis();
+                    if (current != lost) {
+                        resent = pending.size();
+                        if (resent > 0) sendPickups(next, new ArrayList<>(pending.values()));
+                    } else {
+                        // the same server may have dispatched them before the connection broke
+                        unanswered.addAll(pending.values());
+                        pending.clear();
+                    }
+                }
+                if (protocolVersion >= 3) {
+                    for (int elevator: followed) {
+                        next.send(Message.subscribe(elevator));
+                    }
+                }
+            } catch (IOException e) {
+                return;
+            }
+            System.out.println("[Floor " + ID + "] Reconnected, " + resent + " pickups sent again");
+            for (Message pickup: unanswered) {
+                System.out.println("[Server] #" + pickup.correlation + " No answer for floor " + pickup.floor
+                        + ", call again if the elevator does not come");
+            }
+            printPrompt();
+        }
+
+        private void answered(Message result) throws IOException {
+            synchronized (sending) {
+                pending.remove(result.correlation);
+                waitingSince = System.currentTimeMillis();
+            }
+            printResult(result);
+            follow(result);
+        }
+
+        private void follow(Message result) throws IOException {
+            if (protocolVersion < 3 || result.type != MessageType.ASSIGNMENT) return;
+            if (followed.add(result.elevator)) channel.send(Message.subscribe(result.elevator));
+        }
+
+        private void printPosition(Message position) throws IOException {
+            String elevator = "\n[Elevator " + position.elevator + "] ";
+            if (position.eta == 0) {
+                System.out.println(elevator + "is here");
+                // passengers board now; later pickups subscribe again
+                if (followed.remove(position.elevator)) channel.send(Message.unsubscribe(position.elevator));
+            } else if (position.moving) {
+                System.out.println(elevator + "is moving from floor " + position.floor + " to floor " + position.nextFloor + eta(position));
+            } else {
+                System.out.println(elevator + "is at floor " + position.floor + eta(position));
+            }
+            printPrompt();
+        }
+
+        private static String eta(Message position) {
+            return position.eta > 0 ? String.format(", arrives in %.0f s", position.eta / 1000.0) : "";
+        }
+
+        private static void printResult(Message msg) {
+            String pickup = msg.correlation >= 0 ? "[Server] #" + msg.correlation + " " : "[Server] ";
+            if (msg.type == MessageType.ASSIGNMENT) {
+                System.out.println("\n" + pickup + "To get to floor " + msg.floor + " head to elevator " + msg.elevator);
+            } else {
+                System.out.println("\n" + pickup + "Cannot get to floor " + msg.floor + ": " + msg.reason.description);
+            }
+        }
     }
 }
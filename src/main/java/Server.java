@@ -1,61 +1,187 @@
 package main.java;
 
+import main.java.dispatch.DispatchStrategies;
+import main.java.dispatch.DispatchStrategy;
+import main.java.dispatch.JointInsertionStrategy;
+import main.java.events.EventLog;
+import main.java.journal.ReplicaJournal;
+import main.java.journal.RouteJournal;
+import main.java.model.BatchDispatcher;
+import main.java.model.CarKinematics;
+import main.java.model.DemandModel;
 import main.java.model.ElevatorManager;
-import main.java.model.ElevatorStatus;
-import main.java.model.Message;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.ElevatorSystemMetrics;
+import main.java.model.FleetSnapshot;
 import main.java.model.Params;
+import main.java.network.BuildingDirectory;
+import main.java.network.FloorGateway;
+import main.java.network.IoMode;
+import main.java.network.PositionBroadcaster;
+import main.java.network.RequestHandler;
+import main.java.network.SelectorServer;
+import main.java.protocol.MessageChannel;
+import main.java.replication.ReplicationPrimary;
+import main.java.replication.StandbyReplica;
+import main.java.simulation.RealTimeScheduler;
 import main.java.threads.FloorConnectionThread;
 
+import javax.management.JMException;
 import java.io.IOException;
-import java.io.InterruptedIOException;
-import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Paweł Marszał
  * Main class of this project
  * Process running Server::main registers client processes, communicates with them and calculate state of the system
  * It does so using many different threads, such like Elevators, RegisteringThread and FloorConnections
+ *
+ * Optional arguments, in any order:
+ *  - the way connections are handled (see IoMode): threads (default), virtual or nio
+ *  - dispatch engine: immediate (default) or batch[:window in milliseconds] (see BatchDispatcher)
+ *  - strategy:name - dispatch strategy (see DispatchStrategies); greedy by default, joint for batches
+ *  - cars:floor/start-stop/dwell,... - speed and stop times of the elevators in milliseconds (see CarKinematics)
+ *  - building:FLOORSxELEVATORS[:cars] - building hosted by the server, once for every building (IDs follow the order);
+ *    without it the server asks for the floors and elevators of its only building
+ *  - parking - idle elevators are parked at the floors where calls are expected, learned from the pickups
+ *    of every building (see DemandModel); by default they stay where they stopped
+ *  - journal:directory - routes are recorded in RouteJournal (subdirectory building-ID for every building)
+ *    and continued from it after a restart
+ *  - port:N - port on which floor clients connect, 14141 by default
+ *  - events:file - every event (assignments, rides, connections) is also written to the rolling file (see EventLog);
+ *    the console shows arrivals and ends of connections either way
+ *  - replicate:PORT - standby servers connect on the port and receive the routes (see ReplicationPrimary);
+ *    pickups are answered when the standby has them
+ *  - standby:HOST:PORT - the server follows the primary on HOST:PORT and starts serving clients only when it is lost
+ *    (see StandbyReplica); it needs the same buildings as the primary. Both roles require journal:directory
  */
 public class Server {
 
     private static final AtomicBoolean serverStillRunning = new AtomicBoolean(true);
-    private static final AtomicInteger floorCounter = new AtomicInteger(0);
-    private static final FloorConnectionThread[] floorConnections = new FloorConnectionThread[Params.MAX_FLOORS];
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        IoMode ioMode = IoMode.THREADS;
+        // 0 if every pickup is dispatched immediately
+        long batchWindow = 0;
+        String strategyName = null;
+        String cars = CarKinematics.DEFAULT.toString();
+        // null if routes are kept only in memory
+        Path journalDirectory = null;
+        int port = Params.serverCommunicationPort;
+        // 0 without standby servers
+        int replicationPort = 0;
+        // address of the primary server if this one is its standby
+        InetSocketAddress primary = null;
+        // null if events are only printed in the console
+        Path eventFile = null;
+        boolean parking = false;
+        List<String> buildingArgs = new ArrayList<>();
+        for (String arg: args) {
+            if (arg.startsWith("building:")) {
+                buildingArgs.add(arg.substring("building:".length()));
+            } else if ("immediate".equals(arg)) {
+                batchWindow = 0;
+            } else if (arg.startsWith("strategy:")) {
+                strategyName = arg.substring("strategy:".length());
+            } else if (arg.startsWith("cars:")) {
+                cars = arg.substring("cars:".length());
+            } else if ("parking".equals(arg)) {
+                parking = true;
+            } else if (arg.startsWith("journal:")) {
+                journalDirectory = Paths.get(arg.substring("journal:".length()));
+            } else if (arg.startsWith("events:")) {
+                eventFile = Paths.get(arg.substring("events:".length()));
+            } else if (arg.startsWith("port:")) {
+                port = Integer.parseInt(arg.substring("port:".length()));
+            } else if (arg.startsWith("replicate:")) {
+                replicationPort = Integer.parseInt(arg.substring("replicate:".length()));
+            } else if (arg.startsWith("standby:")) {
+                String[] address = arg.substring("standby:".length()).split(":");
+                if (address.length != 2) throw new IllegalArgumentException("Expected standby:HOST:PORT: " + arg);
+                primary = new InetSocketAddress(address[0], Integer.parseInt(address[1]));
+            } else if ("batch".equals(arg) || arg.startsWith("batch:")) {
+                batchWindow = arg.startsWith("batch:")
+                        ? Long.parseLong(arg.substring("batch:".length())) : BatchDispatcher.DEFAULT_WINDOW_MILLIS;
+            } else {
+                ioMode = IoMode.parse(arg);
+            }
+        }
+        if ((replicationPort > 0 || primary != null) && journalDirectory == null) {
+            throw new IllegalArgumentException("Replication requires journal:directory");
+        }
+        if (strategyName == null) {
+            strategyName = batchWindow > 0 ? JointInsertionStrategy.NAME : DispatchStrategies.DEFAULT;
+        }
         Scanner scanner = new Scanner(System.in);
-
-        // parse limit on the number of floors
-        System.out.print("[Server] Insert limit on number of floors: ");
-        Params.MAX_FLOORS = scanner.nextInt();
-        if (Params.MAX_FLOORS <= 0) {
-            throw new IllegalArgumentException("Number of floors must be positive");
+        List<BuildingConfig> configs = new ArrayList<>();
+        for (String building: buildingArgs) {
+            configs.add(BuildingConfig.parse(building, cars));
+        }
+        if (configs.isEmpty()) {
+            configs.add(BuildingConfig.ask(scanner, cars));
         }
 
-        // parse number of elevators in the system
-        int numberOfElevators;
-        System.out.print("[Server] Insert number of elevators in the building: ");
-        numberOfElevators = scanner.nextInt();
-        if (numberOfElevators <= 0 || numberOfElevators > Params.MAX_ELEVATORS) {
-            throw new IllegalArgumentException("Number of elevators must be between 1 and " + Params.MAX_ELEVATORS);
+        // the standby keeps the journals of the primary until it is lost, then continues from them as a primary
+        if (primary != null) {
+            List<ReplicaJournal> replicas = new ArrayList<>();
+            for (int id = 0; id < configs.size(); id++) {
+                replicas.add(ReplicaJournal.open(journalDirectory.resolve("building-" + id), configs.get(id).cars.size()));
+            }
+            System.out.println("[Server] Standby of " + primary + ", waiting for the primary");
+            new StandbyReplica(primary, replicas).awaitTakeover();
         }
 
-        // clear scanner's buffer
-        if (scanner.hasNextLine()) {System.out.println(scanner.nextLine());}
+        // elevators and connections never print themselves; the last events are written when the process ends
+        EventLog events = EventLog.start(EventLog.DEFAULT_CAPACITY, eventFile, EventLog.DEFAULT_FILE_BYTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(events::close, "Event log shutdown"));
 
-        // create Issuer
-        ElevatorManager manager = new ElevatorManager(numberOfElevators, serverStillRunning);
+        // every building gets its own manager, elevator threads and, with selectors, its own dispatch threads
+        int dispatchThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / configs.size());
+        List<RouteJournal> journals = new ArrayList<>();
+        for (int id = 0; id < configs.size(); id++) {
+            journals.add(journalDirectory != null
+                    ? RouteJournal.open(journalDirectory.resolve("building-" + id), configs.get(id).cars.size()) : null);
+        }
+        ReplicationPrimary replication = replicationPort > 0 ? new ReplicationPrimary(replicationPort, journals, events) : null;
+        List<Building> buildings = new ArrayList<>();
+        for (int id = 0; id < configs.size(); id++) {
+            buildings.add(new Building(id, configs.get(id), DispatchStrategies.byName(strategyName), batchWindow, parking,
+                    ioMode == IoMode.NIO ? dispatchThreads : 0, journals.get(id), replication, events.forBuilding(id)));
+        }
+        if (replication != null) replication.start();
+        List<RequestHandler> handlers = new ArrayList<>();
+        for (Building building: buildings) {
+            handlers.add(building.handler);
+        }
+        BuildingDirectory directory = new BuildingDirectory(handlers);
 
         // start registering new FloorClient processes
-        RegisteringThread registeringThread = new RegisteringThread(manager);
-        registeringThread.start();
+        FloorGateway gateway;
+        switch (ioMode) {
+            case NIO:
+                gateway = new SelectorServer(serverStillRunning, directory, port,
+                        Runtime.getRuntime().availableProcessors(), events);
+                break;
+            case VIRTUAL:
+                gateway = new RegisteringThread(directory, port, virtualThreadExecutor(), events);
+                break;
+            default:
+                gateway = new RegisteringThread(directory, port, null, events);
+        }
+        gateway.start();
 
         // wait for user's input and react to it
         while (serverStillRunning.get()) {
@@ -73,20 +199,16 @@ public class Server {
             switch (cmd) {
                 case "exit":
                     serverStillRunning.set(false);
+                    buildings.forEach(Building::shutdown);
+                    if (replication != null) replication.close();
 
-                    // kill registering thread
-                    registeringThread.kill();
-
-                    // order clients to exit
-                    for (int i = 0; i < floorCounter.get(); i++) {
-                        floorConnections[i].killClient();
-                    }
+                    // stop registering and order clients to exit
+                    gateway.shutdown();
                     break;
                 case "status":
-                    List<ElevatorStatus> status = manager.getStatus();
-                    System.out.println("Status of the elevators");
-                    for (ElevatorStatus elevatorStatus: status) {
-                        System.out.println(elevatorStatus);
+                    for (Building building: buildings) {
+                        if (buildings.size() > 1) System.out.println("Building " + building.ID);
+                        building.printStatus();
                     }
                     break;
                 default:
@@ -96,23 +218,164 @@ public class Server {
     }
 
     /**
-     * Thread that listens for new FloorClient processes and registers them
-     * When limit of floors is reached, new clients will be rejected by receiving negative ID
+     * Floors and elevators of one building
      */
-    private static class RegisteringThread extends Thread {
+    private static class BuildingConfig {
 
-        private ServerSocket serverSocket= null;
+        private final int floors;
+        private final List<CarKinematics> cars;
+
+        private BuildingConfig(int floors, int elevators, String cars) {
+            if (floors <= 0) {
+                throw new IllegalArgumentException("Number of floors must be positive");
+            }
+            if (elevators <= 0) {
+                throw new IllegalArgumentException("Number of elevators must be positive");
+            }
+            this.floors = floors;
+            this.cars = CarKinematics.parseFleet(cars, elevators);
+        }
+
+        /**
+         * @param description FLOORSxELEVATORS, optionally followed by :kinematics of the cars
+         * @param defaultCars kinematics used if the description has none
+         */
+        private static BuildingConfig parse(String description, String defaultCars) {
+            String[] parts = description.split(":", 2);
+            String[] size = parts[0].split("x");
+            if (size.length != 2) throw new IllegalArgumentException("Expected FLOORSxELEVATORS: " + description);
+            return new BuildingConfig(Integer.parseInt(size[0]), Integer.parseInt(size[1]), parts.length > 1 ? parts[1] : defaultCars);
+        }
+
+        /**
+         * Asks the user in the console, as the server does when it hosts one building
+         */
+        private static BuildingConfig ask(Scanner scanner, String cars) {
+            // parse limit on the number of floors
+            System.out.print("[Server] Insert limit on number of floors: ");
+            int floors = scanner.nextInt();
+
+            // parse number of elevators in the system
+            System.out.print("[Server] Insert number of elevators in the building: ");
+            int elevators = scanner.nextInt();
+
+            // clear scanner's buffer
+            if (scanner.hasNextLine()) {System.out.println(scanner.nextLine());}
+            return new BuildingConfig(floors, elevators, cars);
+        }
+    }
+
+    /**
+     * Everything that serves one building; nothing is shared with other buildings
+     */
+    private static class Building {
+
+        private final int ID;
         private final ElevatorManager manager;
+        private final RequestHandler handler;
+        // runs dispatches of the building; null if they run in the threads of the connections
+        private final ExecutorService dispatchExecutor;
 
-        private RegisteringThread(ElevatorManager manager) {
-            this.manager = manager;
+        /**
+         * @param parking whether idle elevators are parked where calls are expected
+         * @param dispatchThreads number of threads dispatching pickups of the building, 0 for none
+         * @param journal records routes of the building, null if they are kept only in memory
+         * @param replication streams the journal to the standby server, null without one
+         * @param events logs events of the building
+         */
+        private Building(int ID, BuildingConfig config, DispatchStrategy strategy, long batchWindow, boolean parking,
+                         int dispatchThreads, RouteJournal journal, ReplicationPrimary replication, EventLog events) {
+            this.ID = ID;
+            this.manager = new ElevatorManager(config.cars, serverStillRunning, new RealTimeScheduler(events), strategy,
+                    new ElevatorManager.Options()
+                            .journal(journal)
+                            .events(events)
+                            .demand(parking ? new DemandModel(config.floors) : null));
+            if (journal != null) {
+                int continued = 0;
+                for (int id = 0; id < config.cars.size(); id++) {
+                    ElevatorSnapshot recovered = journal.recovered(id);
+                    if (recovered != null && (recovered.isMoving() || !recovered.hasEmptyRoute())) continued++;
+                }
+                System.out.println("[Server] Building " + ID + ": " + continued + " elevators continue routes from the journal");
+            }
+            try {
+                ElevatorSystemMetrics.register(manager, ID);
+            } catch (JMException e) {
+                // the server works without metrics
+                e.printStackTrace();
+            }
+
+            BatchDispatcher dispatcher = batchWindow > 0 ? new BatchDispatcher(manager, batchWindow) : null;
+            PositionBroadcaster broadcaster = new PositionBroadcaster(manager.getFleetStatus(), PositionBroadcaster.DEFAULT_INTERVAL_MILLIS,
+                    events);
+            broadcaster.start();
+            this.dispatchExecutor = dispatchThreads > 0 ? Executors.newFixedThreadPool(dispatchThreads, task -> {
+                Thread thread = new Thread(task, "Building " + ID + " dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+            this.handler = new RequestHandler(manager, config.floors, dispatcher, broadcaster, dispatchExecutor, replication);
+        }
+
+        private void printStatus() {
+            FleetSnapshot fleet = manager.getFleetSnapshot();
+            System.out.println("Status of the elevators");
+            for (ElevatorSnapshot elevator: fleet.asList()) {
+                System.out.println(elevator.toStatus());
+            }
+            System.out.println(manager.getDepartureLatency());
+            System.out.println(manager.getPassengerTracker());
+            System.out.println("Coalesced calls: " + manager.getCoalescedCalls());
+        }
+
+        private void shutdown() {
+            manager.shutdown();
+            if (dispatchExecutor != null) dispatchExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Called only if IoMode.parse accepted VIRTUAL, i.e. on Java 21 or newer; the project is compiled for Java 17,
+     * so the factory is looked up when the server runs
+     * @return executor that runs every task in a new virtual thread
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Java " + Runtime.version().feature() + " has no virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Thread that listens for new FloorClient processes and registers them
+     * Each connection is served by its own FloorConnectionThread, run in a new platform or virtual thread,
+     * which rejects redundant clients
+     */
+    private static class RegisteringThread extends Thread implements FloorGateway {
+
+        private ServerSocket serverSocket = null;
+        private final BuildingDirectory buildings;
+        private final int port;
+        // runs connections in virtual threads; null if they run as platform threads
+        private final ExecutorService virtualThreads;
+        private final Set<FloorConnectionThread> connections = ConcurrentHashMap.newKeySet();
+        private final EventLog events;
+
+        private RegisteringThread(BuildingDirectory buildings, int port, ExecutorService virtualThreads, EventLog events) {
+            this.buildings = buildings;
+            this.port = port;
+            this.virtualThreads = virtualThreads;
+            this.events = events;
         }
 
         @Override
         public void run() {
             try {
-                serverSocket = new ServerSocket(Params.serverCommunicationPort);
+                serverSocket = new ServerSocket(port);
             } catch (IOException e) {
+                events.acceptFailed(port, e);
                 serverStillRunning.set(false);
                 try {
                     if (serverSocket != null) serverSocket.close();
@@ -120,38 +383,27 @@ public class Server {
                 return;
             }
 
-            int newID;
             while (serverStillRunning.get()) {
                 Socket socket = null;
-
-                newID = floorCounter.intValue();
                 try {
-                    serverSocket.setSoTimeout(5000);
                     try {
+                        // blocks until new client comes or shutdown() closes the socket
                         socket = serverSocket.accept();
-                    } catch (InterruptedIOException | SocketException ignored) {
+                    } catch (SocketException ignored) {
                         continue;
                     }
-                    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-
-                    // reject redundant clients
-                    if (newID >= Params.MAX_FLOORS) {
-                        out.writeObject(new Message("ID", -1));
-                        try {
-                            socket.close();
-                        } catch (IOException ignored) {}
-                        continue;
-                    }
-
-                    out.writeObject(new Message("ID", newID));
 
-                    floorConnections[newID] = new FloorConnectionThread(
-                            serverStillRunning, newID, socket, this.manager);
-                    floorConnections[newID].start();
-                    floorCounter.incrementAndGet();
+                    FloorConnectionThread connection = new FloorConnectionThread(
+                            serverStillRunning, new MessageChannel(socket), this.buildings, this.connections, this.events);
+                    connections.add(connection);
+                    if (virtualThreads != null) {
+                        virtualThreads.execute(connection);
+                    } else {
+                        new Thread(connection).start();
+                    }
                 }
                 catch (IOException e) {
-                    e.printStackTrace();
+                    events.connectionFailed(-1, e);
                     try {
                         if (socket != null) socket.close();
                     } catch (IOException ignored) {}
@@ -159,12 +411,21 @@ public class Server {
             }
 
             this.kill();
-            System.out.println("[Registering thread] ends");
+            events.registeringStopped();
+        }
+
+        @Override
+        public void shutdown() {
+            kill();
+            for (FloorConnectionThread connection: connections) {
+                connection.killClient();
+            }
+            if (virtualThreads != null) virtualThreads.shutdown();
         }
 
         public void kill() {
             try {
-                serverSocket.close();
+                if (serverSocket != null) serverSocket.close();
             } catch (IOException ignored) {}
         }
     }
@@ -0,0 +1,331 @@
+package main.java.dispatch;
+
+import main.java.model.Assignment;
+import main.java.model.CarLoad;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorSnapshot;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joint assignment of many calls to all elevators, used by JointInsertionStrategy
+ *
+ * Every call is a pair of stops - pickup and drop-off - inserted into the route of one elevator, pickup first
+ * Cost of the route is the sum of arrival times at its stops: stops that were already in the route weigh 1 each
+ * and every call adds the arrival time of its drop-off, i.e. waiting plus riding time of its passenger
+ *
+ * Calls are first inserted one by one at their cheapest positions, then local search takes every call out
+ * and inserts it again at the cheapest position over all elevators, as long as the total cost decreases
+ *
+ * Every route also keeps the number of passengers leaving each stop (see CarLoad); an insertion that puts
+ * the passenger in a full car costs OVERFLOW_PENALTY more than any route could, so it is chosen only when
+ * no car has room
+ */
+final class BatchOptimizer {
+
+    // local search stops after that many passes over all calls, even if the cost still decreases
+    private static final int MAX_PASSES = 8;
+    // far above any real cost, yet adding it to one cannot overflow a long
+    private static final long OVERFLOW_PENALTY = Long.MAX_VALUE / 4;
+
+    private final Route[] routes;
+    private final int[] from;
+    private final int[] to;
+    // index in routes and ID of the elevator chosen for every call
+    private final int[] routeOfCall;
+    private final int[] elevatorOfCall;
+
+    // best insertion found by findBestInsertion
+    private long bestCost;
+    private int bestRoute;
+    private int bestPickup;
+    private int bestDropOff;
+
+    /**
+     * @param elevators candidate elevators
+     * @param from floor of every call
+     * @param to destination of every call
+     */
+    BatchOptimizer(List<ElevatorSnapshot> elevators, int[] from, int[] to) {
+        if (from.length != to.length) throw new IllegalArgumentException("Every call needs its destination");
+        this.from = from;
+        this.to = to;
+        this.routeOfCall = new int[from.length];
+        this.elevatorOfCall = new int[from.length];
+        this.routes = new Route[elevators.size()];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new Route(elevators.get(i), 2 * from.length);
+        }
+    }
+
+    /**
+     * @return ID of the elevator chosen for every call and assignments of elevators, indexed by ID
+     */
+    BatchPlan solve() {
+        for (int call = 0; call < from.length; call++) {
+            findBestInsertion(call);
+            insertBest(call);
+        }
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean improved = false;
+            for (int call = 0; call < from.length; call++) {
+                Route route = routes[routeOfCall[call]];
+                long costBefore = route.cost();
+                route.removeCall(call);
+                long saving = costBefore - route.cost();
+
+                // the old position is one of the candidates, so the cost never increases
+                findBestInsertion(call);
+                if (bestCost < saving) improved = true;
+                insertBest(call);
+            }
+            if (!improved) break;
+        }
+
+        int maxID = -1;
+        for (Route route: routes) {
+            maxID = Math.max(maxID, route.snapshot.getID());
+        }
+        Assignment[] assignments = new Assignment[maxID + 1];
+        for (Route route: routes) {
+            assignments[route.snapshot.getID()] = route.toAssignment();
+        }
+        return new BatchPlan(elevatorOfCall, assignments);
+    }
+
+    private void findBestInsertion(int call) {
+        bestCost = Long.MAX_VALUE;
+        for (int i = 0; i < routes.length; i++) {
+            routes[i].findBestInsertion(i, from[call], to[call]);
+        }
+    }
+
+    private void insertBest(int call) {
+        Route route = routes[bestRoute];
+        if (bestPickup >= 0) route.insert(bestPickup, from[call], call, 0);
+        route.insert(bestDropOff, to[call], call, 1);
+        route.addPassenger(bestPickup, bestDropOff, 1);
+        routeOfCall[call] = bestRoute;
+        elevatorOfCall[call] = route.snapshot.getID();
+    }
+
+    /**
+     * Route of one elevator with the stops of the calls inserted so far
+     */
+    private final class Route {
+
+        private final ElevatorSnapshot snapshot;
+        private final CarKinematics kinematics;
+        // first floor at which the elevator stops: next floor if it is moving, current floor otherwise
+        private final int origin;
+        private final long originTime;
+
+        private int size;
+        private final int[] floors;
+        // call that inserted the stop, or -1 if the stop comes from the snapshot
+        private final int[] owners;
+        private final int[] weights;
+        // arrival[i] - time of arrival at stop i; suffixWeight[i] - total weight of stops from i to the end
+        private final long[] arrival;
+        private final long[] suffixWeight;
+        // cost of inserting the pickup at given index, computed before the pickup is inserted
+        private final long[] pickupCost;
+        private final int capacity;
+        // passengers in the car when it leaves the origin and every stop
+        private int originLoad;
+        private final int[] loads;
+
+        private Route(ElevatorSnapshot snapshot, int extraStops) {
+            this.snapshot = snapshot;
+            this.kinematics = snapshot.getKinematics();
+            this.origin = snapshot.isMoving() ? snapshot.getNextFloor() : snapshot.getCurrentFloor();
+            this.originTime = snapshot.isMoving() ? leg(snapshot.getCurrentFloor(), snapshot.getNextFloor()) : 0;
+
+            // one more for the pickup inserted temporarily while searching
+            int length = snapshot.getRouteLength() + extraStops + 1;
+            this.floors = new int[length];
+            this.owners = new int[length];
+            this.weights = new int[length];
+            this.arrival = new long[length];
+            this.suffixWeight = new long[length + 1];
+            this.pickupCost = new long[length + 1];
+            this.loads = new int[length];
+            this.capacity = snapshot.getCapacity();
+            this.originLoad = snapshot.getPassengersLeaving(CarLoad.ORIGIN);
+            for (int i = 0; i < snapshot.getRouteLength(); i++) {
+                floors[i] = snapshot.getRouteFloor(i);
+                owners[i] = -1;
+                weights[i] = 1;
+                loads[i] = snapshot.getPassengersLeaving(i);
+            }
+            this.size = snapshot.getRouteLength();
+        }
+
+        /**
+         * @return time needed to get from floor a to floor b by this elevator, including the stop at b
+         */
+        private long leg(int a, int b) {
+            return kinematics.legMillis(a, b);
+        }
+
+        private long cost() {
+            long time = originTime, cost = 0;
+            int last = origin;
+            for (int i = 0; i < size; i++) {
+                time += leg(last, floors[i]);
+                cost += weights[i] * time;
+                last = floors[i];
+            }
+            return cost;
+        }
+
+        private void computeProfile() {
+            long time = originTime;
+            int last = origin;
+            for (int i = 0; i < size; i++) {
+                time += leg(last, floors[i]);
+                arrival[i] = time;
+                last = floors[i];
+            }
+            suffixWeight[size] = 0;
+            for (int i = size - 1; i >= 0; i--) {
+                suffixWeight[i] = suffixWeight[i + 1] + weights[i];
+            }
+        }
+
+        /**
+         * Requires computeProfile() of the current route
+         * @return increase of the cost after inserting the stop at given index
+         */
+        private long insertionCost(int index, int floor, int weight) {
+            int last = index == 0 ? origin : floors[index - 1];
+            long lastTime = index == 0 ? originTime : arrival[index - 1];
+            long cost = weight * (lastTime + leg(last, floor));
+            if (index < size) {
+                long detour = leg(last, floor) + leg(floor, floors[index]) - leg(last, floors[index]);
+                cost += detour * suffixWeight[index];
+            }
+            return cost;
+        }
+
+        /**
+         * Updates the best insertion of the optimizer if a cheaper one is found in this route
+         */
+        private void findBestInsertion(int index, int from, int to) {
+            computeProfile();
+            // passenger is already at the floor where the elevator stands or is about to stop
+            if (origin == from) {
+                int peak = originLoad;
+                for (int dropOff = 0; dropOff <= size; dropOff++) {
+                    if (dropOff > 0) peak = Math.max(peak, loads[dropOff - 1]);
+                    offer(insertionCost(dropOff, to, 1) + overflowCost(peak), index, -1, dropOff);
+                }
+            }
+
+            for (int pickup = 0; pickup <= size; pickup++) {
+                pickupCost[pickup] = insertionCost(pickup, from, 0);
+            }
+            for (int pickup = 0, length = size; pickup <= length; pickup++) {
+                // drop-off cannot make the insertion cheaper
+                if (pickupCost[pickup] >= bestCost) continue;
+                insert(pickup, from, -2, 0);
+                computeProfile();
+                // the most passengers in the car between the pickup and the drop-off
+                int peak = loads[pickup];
+                for (int dropOff = pickup + 1; dropOff <= size; dropOff++) {
+                    peak = Math.max(peak, loads[dropOff - 1]);
+                    offer(pickupCost[pickup] + insertionCost(dropOff, to, 1) + overflowCost(peak), index, pickup, dropOff);
+                }
+                removeAt(pickup);
+            }
+        }
+
+        /**
+         * @param peak passengers in the car at some point of the ride, before the passenger boards
+         */
+        private long overflowCost(int peak) {
+            return peak >= capacity ? OVERFLOW_PENALTY : 0;
+        }
+
+        /**
+         * Adds (or removes, for -1) the passenger riding from the pickup (ORIGIN if there is no pickup stop)
+         * to the drop-off, both already in the route
+         */
+        private void addPassenger(int pickup, int dropOff, int passengers) {
+            if (pickup == CarLoad.ORIGIN) originLoad += passengers;
+            for (int i = Math.max(0, pickup); i < dropOff; i++) {
+                loads[i] += passengers;
+            }
+        }
+
+        private void offer(long cost, int route, int pickup, int dropOff) {
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestRoute = route;
+                bestPickup = pickup;
+                bestDropOff = dropOff;
+            }
+        }
+
+        private void insert(int index, int floor, int owner, int weight) {
+            System.arraycopy(floors, index, floors, index + 1, size - index);
+            System.arraycopy(owners, index, owners, index + 1, size - index);
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+            System.arraycopy(loads, index, loads, index + 1, size - index);
+            floors[index] = floor;
+            owners[index] = owner;
+            weights[index] = weight;
+            // nobody boards or leaves there yet
+            loads[index] = index > 0 ? loads[index - 1] : originLoad;
+            size++;
+        }
+
+        private void removeAt(int index) {
+            System.arraycopy(floors, index + 1, floors, index, size - index - 1);
+            System.arraycopy(owners, index + 1, owners, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            System.arraycopy(loads, index + 1, loads, index, size - index - 1);
+            size--;
+        }
+
+        private void removeCall(int call) {
+            int pickup = CarLoad.ORIGIN, dropOff = 0;
+            for (int i = 0; i < size; i++) {
+                if (owners[i] == call && weights[i] == 0) pickup = i;
+                if (owners[i] == call && weights[i] == 1) dropOff = i;
+            }
+            addPassenger(pickup, dropOff, -1);
+            for (int i = size - 1; i >= 0; i--) {
+                if (owners[i] == call) removeAt(i);
+            }
+        }
+
+        /**
+         * New stops at the floor of the neighbouring stop are skipped - the elevator stops there anyway
+         * @return null if the elevator serves none of the calls; empty assignment if it serves them without new stops
+         */
+        private Assignment toAssignment() {
+            int[] indices = new int[size];
+            int[] newFloors = new int[size];
+            int count = 0, position = 0;
+            int last = origin;
+            boolean servesCalls = false;
+            for (int i = 0; i < size; i++) {
+                boolean inserted = owners[i] >= 0;
+                servesCalls |= inserted;
+                boolean redundant = floors[i] == last || (i + 1 < size && owners[i + 1] < 0 && floors[i + 1] == floors[i]);
+                if (inserted && redundant) continue;
+                if (inserted) {
+                    indices[count] = position;
+                    newFloors[count++] = floors[i];
+                }
+                position++;
+                last = floors[i];
+            }
+            if (!servesCalls) return null;
+            return Assignment.insertAll(snapshot, Arrays.copyOf(indices, count), Arrays.copyOf(newFloors, count));
+        }
+    }
+}
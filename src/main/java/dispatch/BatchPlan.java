@@ -0,0 +1,18 @@
+package main.java.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import main.java.model.Assignment;
+
+/**
+ * Result of DispatchStrategy.assignAll
+ */
+@AllArgsConstructor
+@Getter
+public class BatchPlan {
+
+    // ID of the elevator chosen for every call, in the order of the calls
+    private final int[] elevators;
+    // assignment for every elevator, indexed by ID; null if the elevator serves none of the calls
+    private final Assignment[] assignments;
+}
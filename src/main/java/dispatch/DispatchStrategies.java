@@ -0,0 +1,44 @@
+package main.java.dispatch;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Finds dispatch strategies by name: the ones shipped with the project and those registered for ServiceLoader
+ */
+public final class DispatchStrategies {
+
+    public static final String DEFAULT = GreedyInsertionStrategy.NAME;
+
+    private DispatchStrategies() {}
+
+    /**
+     * @throws IllegalArgumentException if there is no strategy with such name
+     */
+    public static DispatchStrategy byName(@NonNull String name) {
+        for (DispatchStrategy strategy: all()) {
+            if (strategy.name().equals(name)) return strategy;
+        }
+        throw new IllegalArgumentException("Unrecognized dispatch strategy: " + name + " (available: " + String.join(", ", names()) + ")");
+    }
+
+    public static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (DispatchStrategy strategy: all()) {
+            names.add(strategy.name());
+        }
+        return names;
+    }
+
+    private static List<DispatchStrategy> all() {
+        List<DispatchStrategy> strategies = new ArrayList<>(List.of(
+                new GreedyInsertionStrategy(), new NearestCarStrategy(), new JointInsertionStrategy()));
+        for (DispatchStrategy strategy: ServiceLoader.load(DispatchStrategy.class)) {
+            strategies.add(strategy);
+        }
+        return strategies;
+    }
+}
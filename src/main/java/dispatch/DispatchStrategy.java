@@ -0,0 +1,61 @@
+package main.java.dispatch;
+
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.FleetSnapshot;
+
+import java.util.List;
+
+/**
+ * Algorithm that decides which elevator serves a call and where its floors go in the route of that elevator
+ * Strategies see only immutable snapshots and return assignments that ElevatorManager commits,
+ * so they never block elevators; the same instance may be used by many threads at once
+ *
+ * Strategies are selected by name (see DispatchStrategies); new ones can be added without changing this project
+ * by registering them for ServiceLoader in META-INF/services/main.java.dispatch.DispatchStrategy
+ */
+public interface DispatchStrategy {
+
+    /**
+     * @return name under which the strategy can be selected
+     */
+    String name();
+
+    /**
+     * @param elevators candidates - usually all elevators, but the manager may pass only some of them
+     * @return floors to insert into the route of the chosen elevator, planned on its snapshot; the manager adds
+     * the call itself (see Assignment#withCall), so strategies should check that the passenger fits
+     * (see ElevatorSnapshot#canTake)
+     */
+    Assignment assign(int from, int to, List<ElevatorSnapshot> elevators);
+
+    /**
+     * Same as assign(int, int, List) for the whole fleet; strategies may search its FleetIndex
+     * instead of looking at every elevator
+     */
+    default Assignment assign(int from, int to, FleetSnapshot fleet) {
+        return assign(from, to, fleet.asList());
+    }
+
+    /**
+     * Plans many calls on the same snapshots; by default one by one, every call seeing the floors added for previous ones
+     * @param from floor of every call
+     * @param to destination of every call
+     * @param elevators snapshots of all elevators, indexed by ID
+     */
+    default BatchPlan assignAll(int[] from, int[] to, List<ElevatorSnapshot> elevators) {
+        if (from.length != to.length) throw new IllegalArgumentException("Every call needs its destination");
+        FleetSnapshot planned = FleetSnapshot.of(elevators);
+        Assignment[] assignments = new Assignment[elevators.size()];
+        int[] elevatorOfCall = new int[from.length];
+        for (int call = 0; call < from.length; call++) {
+            Assignment assignment = assign(from[call], to[call], planned);
+            int id = assignment.getElevatorID();
+            // the planned snapshot also counts the passenger, so later calls see the load
+            planned = planned.with(planned.get(id).withAssignment(assignment.withCall(from[call], to[call])));
+            assignments[id] = assignments[id] == null ? assignment : assignments[id].followedBy(assignment);
+            elevatorOfCall[call] = id;
+        }
+        return new BatchPlan(elevatorOfCall, assignments);
+    }
+}
@@ -0,0 +1,135 @@
+package main.java.dispatch;
+
+import lombok.NonNull;
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.FleetIndex;
+import main.java.model.FleetSnapshot;
+
+import java.util.List;
+
+/**
+ * Default strategy: prefers elevators that stand at the floor of the passenger or already ride through it
+ * in the direction of the passenger; stops are placed in the sweeps of the chosen elevator (see SweepRoute),
+ * so the pickup always comes before the drop-off
+ * Costs are times computed from the kinematics of every elevator, so a slow elevator or one with many stops
+ * loses with a fast one that has the same distance to go
+ * Elevators in which the passenger would not fit somewhere along the ride are skipped (see CarLoad)
+ */
+public class GreedyInsertionStrategy implements DispatchStrategy {
+
+    public static final String NAME = "greedy";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Assignment assign(int from, int to, @NonNull List<ElevatorSnapshot> elevators) {
+        return assign(from, to, FleetSnapshot.of(elevators));
+    }
+
+    /**
+     * Candidates are found in the FleetIndex, so only elevators standing at floor 'from', passing it
+     * or idle near it are looked at; all of them only if none of those exists
+     */
+    @Override
+    public Assignment assign(int from, int to, @NonNull FleetSnapshot fleet) {
+        FleetIndex index = fleet.getIndex();
+        ElevatorSnapshot chosenElevator = null;
+        Assignment chosen = null;
+
+        // elevators that are currently staying on floor 'from' - the passenger boards one of them at once;
+        // one that is planning to ride to floor 'to' needs no change at all
+        for (int id = index.nextStanding(from, 0); id >= 0; id = index.nextStanding(from, id + 1)) {
+            ElevatorSnapshot elevator = fleet.get(id);
+            boolean unchanged = elevator.willBeVisited(to);
+            if (!unchanged && cheaper(chosenElevator, elevator) != elevator) continue;
+            Assignment assignment = unchanged ? Assignment.unchanged(elevator) : elevator.getSweeps().dropOff(to);
+            // full elevators are skipped
+            if (!elevator.canTake(assignment, from, to)) continue;
+            if (unchanged) return assignment;
+            chosenElevator = elevator;
+            chosen = assignment;
+        }
+        if (chosen != null) return chosen;
+
+        // if not, take those that are riding through floor 'from' in the direction of the passenger
+        int direction = Integer.signum(to - from);
+        for (int id = index.nextPassing(from, direction, 0); id >= 0; id = index.nextPassing(from, direction, id + 1)) {
+            ElevatorSnapshot elevator = fleet.get(id);
+            if (cheaper(chosenElevator, elevator) != elevator) continue;
+            Assignment assignment = elevator.getSweeps().assign(from, to);
+            if (!elevator.canTake(assignment, from, to)) continue;
+            chosenElevator = elevator;
+            chosen = assignment;
+        }
+        if (chosen != null) return chosen;
+
+        // if not, take elevator without requested floors - it is empty, so the passenger always fits
+        chosenElevator = findIdleElevatorArrivingFirst(fleet, from);
+        if (chosenElevator != null) return Assignment.appendBoth(chosenElevator, from, to);
+
+        // if not, take elevator that gets to floor 'from' first after finishing its route;
+        // when its sweeps are too full, the passenger rides at the end of the route, when the car is empty
+        chosenElevator = findElevatorArrivingFirst(fleet, from);
+        Assignment assignment = chosenElevator.getSweeps().assign(from, to);
+        if (chosenElevator.canTake(assignment, from, to)) return assignment;
+        if (chosenElevator.getLastFloor() == from) return Assignment.insert(chosenElevator, chosenElevator.getRouteLength(), to);
+        return Assignment.appendBoth(chosenElevator, from, to);
+    }
+
+    // ---------------
+
+    /**
+     * @return elevator with the lowest remaining time; the first one (with lower ID) wins a tie
+     */
+    private ElevatorSnapshot cheaper(ElevatorSnapshot best, ElevatorSnapshot elevator) {
+        return best == null || elevator.getRemainingMillis() < best.getRemainingMillis() ? elevator : best;
+    }
+
+    /**
+     * Idle elevators are searched floor by floor away from 'floor', until even the fastest elevator of the fleet
+     * could not arrive sooner from farther floors
+     * @return idle elevator that gets to the floor first (the lowest ID wins a tie), or null if there is none
+     */
+    private ElevatorSnapshot findIdleElevatorArrivingFirst(FleetSnapshot fleet, int floor) {
+        FleetIndex index = fleet.getIndex();
+        ElevatorSnapshot result = null;
+        long lowestTime = Long.MAX_VALUE;
+        for (int distance = 0; floor - distance >= 0 || floor + distance < index.getFloors(); distance++) {
+            if (result != null && (long) distance * index.getMinFloorMillis() > lowestTime) break;
+            for (int side = -1; side <= 1; side += 2) {
+                int start = floor + side * distance;
+                if (start < 0 || (distance == 0 && side > 0)) continue;
+                for (int id = index.nextIdle(start, 0); id >= 0; id = index.nextIdle(start, id + 1)) {
+                    ElevatorSnapshot elevator = fleet.get(id);
+                    long time = elevator.appendedEtaMillis(floor);
+                    if (time < lowestTime || (time == lowestTime && id < result.getID())) {
+                        lowestTime = time;
+                        result = elevator;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private ElevatorSnapshot findElevatorArrivingFirst(FleetSnapshot fleet, int floor) {
+        long lowestTime = Long.MAX_VALUE;
+        ElevatorSnapshot result = null;
+        for (int id = 0; id < fleet.size(); id++) {
+            ElevatorSnapshot elevator = fleet.get(id);
+            if (elevator == null) continue;
+            long time = elevator.appendedEtaMillis(floor);
+            if (time < lowestTime) {
+                lowestTime = time;
+                result = elevator;
+            }
+            if (time == 0) break;
+        }
+        if (result == null) throw new IllegalArgumentException("No elevators to choose from");
+        return result;
+    }
+}
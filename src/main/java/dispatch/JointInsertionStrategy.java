@@ -0,0 +1,32 @@
+package main.java.dispatch;
+
+import lombok.NonNull;
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+
+import java.util.List;
+
+/**
+ * Strategy that minimises the total waiting and riding time of all passengers (see BatchOptimizer)
+ * Calls planned together with assignAll are assigned jointly, so it suits BatchDispatcher best
+ */
+public class JointInsertionStrategy implements DispatchStrategy {
+
+    public static final String NAME = "joint";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Assignment assign(int from, int to, @NonNull List<ElevatorSnapshot> elevators) {
+        BatchPlan plan = new BatchOptimizer(elevators, new int[] {from}, new int[] {to}).solve();
+        return plan.getAssignments()[plan.getElevators()[0]];
+    }
+
+    @Override
+    public BatchPlan assignAll(int[] from, int[] to, @NonNull List<ElevatorSnapshot> elevators) {
+        return new BatchOptimizer(elevators, from, to).solve();
+    }
+}
@@ -0,0 +1,69 @@
+package main.java.dispatch;
+
+import lombok.NonNull;
+import main.java.model.Assignment;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorSnapshot;
+
+import java.util.List;
+
+/**
+ * Baseline strategy: the elevator that reaches the floor of the passenger first, counted in time along its route
+ * The destination is visited right after the pickup, or appended when the route does not pass the floor of the passenger
+ * or the passenger would not fit in the elevator on the way
+ */
+public class NearestCarStrategy implements DispatchStrategy {
+
+    public static final String NAME = "nearest";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Assignment assign(int from, int to, @NonNull List<ElevatorSnapshot> elevators) {
+        if (elevators.isEmpty()) throw new IllegalArgumentException("No elevators to choose from");
+        ElevatorSnapshot nearest = null;
+        long lowestTime = Long.MAX_VALUE;
+        int pickupIndex = -1;
+        for (ElevatorSnapshot elevator: elevators) {
+            CarKinematics kinematics = elevator.getKinematics();
+            long time = 0;
+            int last = elevator.getCurrentFloor(), index = -1;
+            boolean passes = !elevator.isMoving() && last == from;
+            if (!passes && elevator.isMoving()) {
+                time = kinematics.rideMillis(elevator.getNextFloor() - last);
+                last = elevator.getNextFloor();
+                passes = last == from;
+            }
+            for (int i = 0; !passes && i < elevator.getRouteLength(); i++) {
+                // the stop at the previous floor; a standing elevator leaves its floor at once
+                if (i > 0 || elevator.isMoving()) time += kinematics.getDwellMillis();
+                time += kinematics.rideMillis(elevator.getRouteFloor(i) - last);
+                last = elevator.getRouteFloor(i);
+                passes = last == from;
+                index = i;
+            }
+            // a full elevator takes the passenger after finishing the whole route, when it is empty
+            if (passes && time < lowestTime && !elevator.canTake(Assignment.insert(elevator, index + 1, to), from, to)) {
+                passes = false;
+            }
+            if (!passes) {
+                // the whole route is finished first, in constant time
+                time = elevator.appendedEtaMillis(from);
+                index = Integer.MAX_VALUE;
+            }
+
+            if (time < lowestTime) {
+                lowestTime = time;
+                nearest = elevator;
+                pickupIndex = index;
+            }
+        }
+
+        // route does not pass the floor of the passenger - both floors go at its end
+        if (pickupIndex == Integer.MAX_VALUE) return Assignment.appendBoth(nearest, from, to);
+        return Assignment.insert(nearest, pickupIndex + 1, to);
+    }
+}
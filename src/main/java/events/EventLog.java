@@ -0,0 +1,268 @@
+package main.java.events;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log of events of the server (assignments, parking, departures, arrivals, connections, failures) that never makes
+ * its callers wait for the console or the disk
+ *
+ * A call only writes a record of four longs (time, type and building, three numbers) into a preallocated EventRing,
+ * without locks or allocation; a background thread drains the ring every DRAIN_MILLIS, prints the events meant
+ * for the console (as the server printed them before) and writes all of them to a RollingFile, if there is one.
+ * When the writer falls a whole ring behind, new events are dropped and their number is written instead
+ * A failure also passes its cause with the record: the console gets its message, the file its stack trace
+ *
+ * Every instance logs for one building (see forBuilding); all of them share the ring and the writer.
+ * DISABLED drops everything, e.g. in simulations, except failures, which it prints to System.err at once
+ */
+public class EventLog implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final long DEFAULT_FILE_BYTES = 16L << 20;
+    public static final int KEPT_FILES = 4;
+    private static final long DRAIN_MILLIS = 2;
+
+    public static final EventLog DISABLED = new EventLog(null, 0);
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    // null if disabled
+    private final Writer writer;
+    private final int building;
+
+    private EventLog(Writer writer, int building) {
+        this.writer = writer;
+        this.building = building;
+    }
+
+    /**
+     * Starts the writer thread
+     * @param file every event is also written there, or null if only the console events are printed
+     */
+    public static EventLog start(int capacity, Path file, long maxFileBytes) throws IOException {
+        Writer writer = new Writer(new EventRing(capacity), file != null ? new RollingFile(file, maxFileBytes, KEPT_FILES) : null);
+        writer.start();
+        return new EventLog(writer, 0);
+    }
+
+    /**
+     * @return log that records events of given building into the same ring
+     */
+    public EventLog forBuilding(int building) {
+        return writer == null ? this : new EventLog(writer, building);
+    }
+
+    public void assigned(int elevator, int from, int to) {
+        record(EventType.ASSIGNED, elevator, from, to);
+    }
+
+    public void parked(int elevator, int from, int to) {
+        record(EventType.PARKED, elevator, from, to);
+    }
+
+    public void departed(int elevator, int from, int to) {
+        record(EventType.DEPARTED, elevator, from, to);
+    }
+
+    public void arrived(int elevator, int floor) {
+        record(EventType.ARRIVED, elevator, floor, 0);
+    }
+
+    public void elevatorStopped(int elevator) {
+        record(EventType.ELEVATOR_STOPPED, elevator, 0, 0);
+    }
+
+    public void connected(int floor) {
+        record(EventType.CONNECTED, floor, 0, 0);
+    }
+
+    public void disconnected(int floor) {
+        record(EventType.DISCONNECTED, floor, 0, 0);
+    }
+
+    /**
+     * @param floor floor of the client, -1 before the handshake
+     */
+    public void malformedMessage(int floor, Throwable cause) {
+        failed(EventType.MALFORMED_MESSAGE, floor, 0, cause);
+    }
+
+    public void dispatchFailed(int floor, Throwable cause) {
+        failed(EventType.DISPATCH_FAILED, floor, 0, cause);
+    }
+
+    /**
+     * @param floor floor of the client, -1 before the handshake
+     */
+    public void connectionFailed(int floor, Throwable cause) {
+        failed(EventType.CONNECTION_FAILED, floor, 0, cause);
+    }
+
+    public void acceptFailed(int port, Throwable cause) {
+        failed(EventType.ACCEPT_FAILED, port, 0, cause);
+    }
+
+    public void selectorFailed(int thread, Throwable cause) {
+        failed(EventType.SELECTOR_FAILED, thread, 0, cause);
+    }
+
+    public void selectorStopped(int thread) {
+        record(EventType.SELECTOR_STOPPED, thread, 0, 0);
+    }
+
+    public void registeringStopped() {
+        record(EventType.REGISTERING_STOPPED, 0, 0, 0);
+    }
+
+    /**
+     * @param floor floor of the subscription the POSITION was meant for
+     */
+    public void pushFailed(int elevator, int floor, Throwable cause) {
+        failed(EventType.PUSH_FAILED, elevator, floor, cause);
+    }
+
+    public void taskFailed(Throwable cause) {
+        failed(EventType.TASK_FAILED, 0, 0, cause);
+    }
+
+    public void standbyTooSlow() {
+        record(EventType.STANDBY_TOO_SLOW, 0, 0, 0);
+    }
+
+    public void standbyLost(Throwable cause) {
+        failed(EventType.STANDBY_LOST, 0, 0, cause);
+    }
+
+    public void journalStopped(Throwable cause) {
+        failed(EventType.JOURNAL_STOPPED, 0, 0, cause);
+    }
+
+    public void record(@NonNull EventType type, int first, int second, int third) {
+        if (writer == null) return;
+        offer(type, first, second, third, null);
+    }
+
+    private void failed(EventType type, int first, int second, @NonNull Throwable cause) {
+        if (writer == null) {
+            System.err.println(type.describe(first, second, 0) + ": " + cause);
+            return;
+        }
+        offer(type, first, second, 0, cause);
+    }
+
+    private void offer(EventType type, int first, int second, int third, Object detail) {
+        writer.ring.offer(System.currentTimeMillis(), (long) type.ordinal() << 32 | (building & 0xFFFFFFFFL),
+                (long) first << 32 | (second & 0xFFFFFFFFL), third, detail);
+    }
+
+    /**
+     * Stops the writer after it has written every event recorded so far
+     */
+    @Override
+    public void close() {
+        if (writer != null) writer.close();
+    }
+
+    /**
+     * The thread that drains the ring
+     */
+    private static class Writer extends Thread {
+
+        private final EventRing ring;
+        // null if events are printed only in the console
+        private final RollingFile file;
+        private final long[] record = new long[EventRing.RECORD_LONGS];
+        private final Object[] detail = new Object[1];
+        private volatile boolean closed = false;
+
+        private Writer(EventRing ring, RollingFile file) {
+            super("Event log");
+            setDaemon(true);
+            this.ring = ring;
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                if (!drain()) LockSupport.parkNanos(DRAIN_MILLIS * 1_000_000);
+            }
+        }
+
+        /**
+         * @return false if there was nothing to write
+         */
+        private boolean drain() {
+            boolean any = false;
+            try {
+                long dropped = ring.takeDropped();
+                if (dropped > 0) {
+                    any = true;
+                    String line = "[Event log] " + dropped + " events dropped, the log does not keep up";
+                    System.out.println(line);
+                    if (file != null) file.writeLine(TIME.format(Instant.now()) + " " + line);
+                }
+                while (ring.poll(record, detail)) {
+                    any = true;
+                    write(record, detail[0]);
+                    detail[0] = null;
+                }
+                if (any && file != null) file.flush();
+            } catch (IOException e) {
+                System.err.println("[Event log] cannot write the file: " + e);
+            }
+            return any;
+        }
+
+        /**
+         * @param detail cause of a failure, or null
+         */
+        private void write(long[] record, Object detail) throws IOException {
+            EventType type = EventType.of((int) (record[1] >>> 32));
+            int building = (int) record[1];
+            String event = type.describe((int) (record[2] >>> 32), (int) record[2], (int) record[3]);
+            if (detail != null) event += ": " + detail;
+            if (type.console) {
+                System.out.println("\n" + (building > 0 ? "[Building " + building + "] " : "") + event);
+                System.out.print("[Server] ");
+            }
+            if (file != null) {
+                file.writeLine(TIME.format(Instant.ofEpochMilli(record[0])) + " " + type + " building " + building + " " + event);
+                if (detail instanceof Throwable) file.writeLine(stackTrace((Throwable) detail));
+            }
+        }
+
+        private static String stackTrace(Throwable cause) {
+            StringWriter trace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(trace));
+            return trace.toString().stripTrailing();
+        }
+
+        private synchronized void close() {
+            if (closed) return;
+            closed = true;
+            LockSupport.unpark(this);
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drain();
+            try {
+                if (file != null) file.close();
+            } catch (IOException e) {
+                System.err.println("[Event log] cannot write the file: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package main.java.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Preallocated ring of fixed-size records (RECORD_LONGS longs each), written by many threads and read by one
+ * A record may also carry a reference to an object its writer already has, e.g. the exception of a failure
+ *
+ * A writer claims the next sequence number with a CAS, fills the slot with plain writes and publishes it
+ * by storing the sequence number + 1 in 'published' (release); the reader takes slots in order once they are
+ * published. Writers never wait: when the reader is a whole ring behind, the record is dropped and counted
+ */
+final class EventRing {
+
+    static final int RECORD_LONGS = 4;
+
+    private final int mask;
+    private final long[] records;
+    // object passed with the record in every slot, or null
+    private final Object[] details;
+    // sequence number + 1 of the record in every slot, once it is completely written
+    private final AtomicLongArray published;
+    // next sequence number to claim by writers
+    private final AtomicLong claimed = new AtomicLong();
+    // next sequence number to read; written only by the reader
+    private volatile long consumed = 0;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity number of records, rounded up to a power of two
+     */
+    EventRing(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = slots - 1;
+        this.records = new long[slots * RECORD_LONGS];
+        this.details = new Object[slots];
+        this.published = new AtomicLongArray(slots);
+    }
+
+    /**
+     * @param detail object read with the record, or null
+     * @return false if the ring is full and the record has been dropped
+     */
+    boolean offer(long first, long second, long third, long fourth, Object detail) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        int at = slot * RECORD_LONGS;
+        records[at] = first;
+        records[at + 1] = second;
+        records[at + 2] = third;
+        records[at + 3] = fourth;
+        details[slot] = detail;
+        published.lazySet(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Copies the next published record; called by the reader only
+     * @param detail its first element is set to the object passed with the record
+     * @return false if the next record is not published yet
+     */
+    boolean poll(long[] into, Object[] detail) {
+        long sequence = consumed;
+        int slot = (int) sequence & mask;
+        if (published.get(slot) != sequence + 1) return false;
+        System.arraycopy(records, slot * RECORD_LONGS, into, 0, RECORD_LONGS);
+        detail[0] = details[slot];
+        // the ring does not keep the object alive
+        details[slot] = null;
+        consumed = sequence + 1;
+        return true;
+    }
+
+    /**
+     * @return number of records dropped since the last call
+     */
+    long takeDropped() {
+        return dropped.sumThenReset();
+    }
+}
@@ -0,0 +1,155 @@
+package main.java.events;
+
+/**
+ * Kinds of records of the EventLog; every record has the same three numbers, their meaning depends on the kind
+ * Failures also carry their cause, which is written after the description
+ */
+public enum EventType {
+    // elevator, pickup floor, destination
+    ASSIGNED(false) {
+        @Override
+        String describe(int elevator, int from, int to) {
+            return "[Elevator " + elevator + "] takes passenger from floor " + from + " to floor " + to;
+        }
+    },
+    // elevator, floor it leaves idle, floor at which demand is expected
+    PARKED(false) {
+        @Override
+        String describe(int elevator, int from, int to) {
+            return "[Elevator " + elevator + "] parks at floor " + to + " instead of floor " + from;
+        }
+    },
+    // elevator, floor it leaves, floor it rides to
+    DEPARTED(false) {
+        @Override
+        String describe(int elevator, int from, int to) {
+            return "[Elevator " + elevator + "] departs from floor " + from + " to floor " + to;
+        }
+    },
+    // elevator, floor
+    ARRIVED(true) {
+        @Override
+        String describe(int elevator, int floor, int unused) {
+            return "[Elevator " + elevator + "] arrived at floor " + floor;
+        }
+    },
+    // elevator
+    ELEVATOR_STOPPED(true) {
+        @Override
+        String describe(int elevator, int unused, int unused2) {
+            return "[Elevator " + elevator + "] thread ends";
+        }
+    },
+    // floor of the client
+    CONNECTED(false) {
+        @Override
+        String describe(int floor, int unused, int unused2) {
+            return "[Connection " + floor + "] client connected";
+        }
+    },
+    // floor of the client
+    DISCONNECTED(true) {
+        @Override
+        String describe(int floor, int unused, int unused2) {
+            return "[Connection " + floor + "] ends";
+        }
+    },
+    // floor of the client, -1 before the handshake; the frame has been skipped
+    MALFORMED_MESSAGE(true) {
+        @Override
+        String describe(int floor, int unused, int unused2) {
+            return connection(floor) + " malformed message skipped";
+        }
+    },
+    // floor of the client; the pickup has been refused
+    DISPATCH_FAILED(true) {
+        @Override
+        String describe(int floor, int unused, int unused2) {
+            return connection(floor) + " dispatch failed, pickup refused";
+        }
+    },
+    // floor of the client, -1 before the handshake
+    CONNECTION_FAILED(true) {
+        @Override
+        String describe(int floor, int unused, int unused2) {
+            return connection(floor) + " failed";
+        }
+    },
+    // port
+    ACCEPT_FAILED(true) {
+        @Override
+        String describe(int port, int unused, int unused2) {
+            return "[Server] cannot accept connections on port " + port;
+        }
+    },
+    // selector thread
+    SELECTOR_FAILED(true) {
+        @Override
+        String describe(int thread, int unused, int unused2) {
+            return "[Selector thread " + thread + "] failed";
+        }
+    },
+    // selector thread
+    SELECTOR_STOPPED(true) {
+        @Override
+        String describe(int thread, int unused, int unused2) {
+            return "[Selector thread " + thread + "] ends";
+        }
+    },
+    REGISTERING_STOPPED(true) {
+        @Override
+        String describe(int unused, int unused2, int unused3) {
+            return "[Registering thread] ends";
+        }
+    },
+    // elevator, floor of the subscription
+    PUSH_FAILED(true) {
+        @Override
+        String describe(int elevator, int floor, int unused) {
+            return "[Position broadcaster] POSITION of elevator " + elevator + " not pushed to floor " + floor;
+        }
+    },
+    TASK_FAILED(true) {
+        @Override
+        String describe(int unused, int unused2, int unused3) {
+            return "[Scheduler] scheduled task failed";
+        }
+    },
+    STANDBY_TOO_SLOW(true) {
+        @Override
+        String describe(int unused, int unused2, int unused3) {
+            return "[Replication] standby does not keep up, disconnected";
+        }
+    },
+    STANDBY_LOST(true) {
+        @Override
+        String describe(int unused, int unused2, int unused3) {
+            return "[Replication] standby lost";
+        }
+    },
+    JOURNAL_STOPPED(true) {
+        @Override
+        String describe(int unused, int unused2, int unused3) {
+            return "[Journal] stopped, routes are no longer recorded";
+        }
+    };
+
+    private static final EventType[] TYPES = values();
+
+    // shown in the console of the server; the others only in the file of the log
+    final boolean console;
+
+    EventType(boolean console) {
+        this.console = console;
+    }
+
+    abstract String describe(int first, int second, int third);
+
+    static EventType of(int ordinal) {
+        return TYPES[ordinal];
+    }
+
+    private static String connection(int floor) {
+        return floor >= 0 ? "[Connection " + floor + "]" : "[Connection]";
+    }
+}
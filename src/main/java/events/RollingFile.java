@@ -0,0 +1,73 @@
+package main.java.events;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Text file of the EventLog; when it grows beyond the limit it is renamed to file.1 (file.1 to file.2 and so on,
+ * the oldest one is deleted) and a new one is started. Used by the writer thread only
+ */
+final class RollingFile {
+
+    private final Path path;
+    private final long maxBytes;
+    private final int keptFiles;
+    private BufferedWriter writer;
+    private long written;
+
+    /**
+     * @param keptFiles number of older files kept next to the current one
+     */
+    RollingFile(Path path, long maxBytes, int keptFiles) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.keptFiles = keptFiles;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        open();
+    }
+
+    void writeLine(String line) throws IOException {
+        if (written >= maxBytes) roll();
+        writer.write(line);
+        writer.newLine();
+        // close enough for the limit; the file has one byte per character unless names are not ASCII
+        written += line.length() + 1;
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        written = Files.size(path);
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        Files.deleteIfExists(older(keptFiles));
+        for (int i = keptFiles - 1; i >= 1; i--) {
+            if (Files.exists(older(i))) Files.move(older(i), older(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (keptFiles > 0) {
+            Files.move(path, older(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        open();
+    }
+
+    private Path older(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+}
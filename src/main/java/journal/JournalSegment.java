@@ -0,0 +1,155 @@
+package main.java.journal;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the RouteJournal, mapped into memory, so appending a record is a copy into the page cache
+ * and survives a crash of the process; the OS writes it to the disk when the segment is flushed
+ *
+ * Records are appended without locks - every writer reserves its place by moving the end of the segment.
+ * A record is its length, the body and the CRC32C of the body; the length is written first, so after a crash
+ * a record torn in the middle is recognised by its checksum and skipped, and a zero length marks the end
+ */
+final class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+    private static final int MAGIC = 0x4A524E4C;
+    // magic number and sequence number of the segment
+    private static final int HEADER = 12;
+
+    @Getter
+    private final long sequence;
+    @Getter
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // where the next record will be written; may grow past the capacity when the segment is full
+    private final AtomicInteger end = new AtomicInteger(HEADER);
+    // end of the segment at the last flush, and whether it was the same at the flush before; flushing thread only
+    private int flushed = HEADER;
+    private boolean settled = true;
+
+    private JournalSegment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates an empty segment; the file gets its full size at once, filled with zeros
+     */
+    static JournalSegment create(Path directory, long sequence, int capacity) throws IOException {
+        Path path = directory.resolve(String.format("%016d%s", sequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(4, sequence);
+        return new JournalSegment(sequence, path, channel, buffer);
+    }
+
+    /**
+     * @return sequence number of the segment stored in the file, or -1 if the file is not a segment
+     */
+    static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return segments in the directory, in the order they were written
+     */
+    static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> sequenceOf(path) >= 0)
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param record body of the record, between its position and limit
+     * @return false if the record does not fit in the segment
+     */
+    boolean append(ByteBuffer record, CRC32C checksum) {
+        int length = record.remaining();
+        int size = align(4 + length + 4);
+        int at = end.getAndAdd(size);
+        if (at + size > buffer.capacity() || at < 0) return false;
+
+        checksum.reset();
+        checksum.update(record.array(), record.arrayOffset() + record.position(), length);
+        buffer.putInt(at, length);
+        buffer.put(at + 4, record.array(), record.arrayOffset() + record.position(), length);
+        buffer.putInt(at + 4 + length, (int) checksum.getValue());
+        return true;
+    }
+
+    /**
+     * Forces appended records to the disk; one call covers all records appended since the previous one
+     * Called only by the thread that flushes the journal
+     */
+    void flush() {
+        int written = Math.min(end.get(), buffer.capacity());
+        if (written == flushed && settled) return;
+        buffer.force(0, written);
+        // records reserved before this flush may be finished after it, so they are forced once more in the next one
+        settled = written == flushed;
+        flushed = written;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Passes the body of every valid record of the file to 'records', in the order of the file
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    static void read(Path path, Consumer<ByteBuffer> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) throw new IOException("Not a journal segment: " + path);
+            CRC32C checksum = new CRC32C();
+            for (int at = HEADER; at + 8 <= buffer.capacity(); ) {
+                int length = buffer.getInt(at);
+                int size = align(4 + length + 4);
+                if (length <= 0 || at + size > buffer.capacity()) return;
+
+                ByteBuffer body = buffer.slice(at + 4, length);
+                checksum.reset();
+                checksum.update(body.duplicate());
+                if ((int) checksum.getValue() == buffer.getInt(at + 4 + length)) records.accept(body);
+                at += size;
+            }
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+}
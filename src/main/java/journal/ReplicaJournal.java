@@ -0,0 +1,115 @@
+package main.java.journal;
+
+import lombok.NonNull;
+import main.java.model.ElevatorSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal of one building kept by a standby server: records of the RouteJournal of the primary server
+ * (see ReplicationPrimary) are appended to segments of the same format, so after a takeover RouteJournal#open
+ * in the same directory continues the routes from them
+ *
+ * The records are also replayed in memory; when a segment is full, the next one starts with the state of every
+ * known elevator and the older segments are deleted. Used by one thread
+ */
+public class ReplicaJournal implements AutoCloseable {
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final RouteReplay replay;
+    private final CRC32C checksum = new CRC32C();
+    // segments older than the active one, deleted when a new segment holds the state of every elevator
+    private List<Path> older;
+    private JournalSegment active;
+    private long nextSequence;
+
+    private ReplicaJournal(Path directory, int segmentBytes, RouteReplay replay, List<Path> older, long nextSequence)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.replay = replay;
+        this.older = older;
+        this.nextSequence = nextSequence;
+        this.active = JournalSegment.create(directory, this.nextSequence++, segmentBytes);
+    }
+
+    public static ReplicaJournal open(@NonNull Path directory, int elevators) throws IOException {
+        return open(directory, elevators, RouteJournal.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Replays the segments in the directory (created if missing), e.g. from an earlier session with the primary,
+     * and starts a new one for the replicated records
+     */
+    public static ReplicaJournal open(@NonNull Path directory, int elevators, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = JournalSegment.list(directory);
+        RouteReplay replay = new RouteReplay(elevators);
+        for (Path file: files) {
+            JournalSegment.read(file, replay::apply);
+        }
+        long next = files.isEmpty() ? 0 : JournalSegment.sequenceOf(files.get(files.size() - 1)) + 1;
+        return new ReplicaJournal(directory, segmentBytes, replay, files, next);
+    }
+
+    /**
+     * @param record body of a record of RouteJournal, between its position and limit; not consumed
+     * @throws IOException if a new segment cannot be created or the record does not fit in it
+     */
+    public void append(@NonNull ByteBuffer record) throws IOException {
+        if (!active.append(record, checksum)) {
+            rotate();
+            if (!active.append(record, checksum)) throw new IOException("Replicated record does not fit in a segment");
+        }
+        replay.apply(record.duplicate());
+    }
+
+    /**
+     * Forces appended records to the disk
+     * @throws IOException if they cannot be written
+     */
+    public void flush() throws IOException {
+        try {
+            active.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Starts the next segment with the state of every known elevator, then deletes the older ones
+     */
+    private void rotate() throws IOException {
+        JournalSegment next = JournalSegment.create(directory, nextSequence++, segmentBytes);
+        for (ElevatorSnapshot elevator: replay.snapshots()) {
+            if (elevator != null && !next.append(RouteRecords.encode(elevator, RouteRecords.STATE, null), checksum)) {
+                throw new IOException("States of the elevators do not fit in a segment");
+            }
+        }
+        next.flush();
+
+        JournalSegment full = active;
+        active = next;
+        full.delete();
+        for (Path file: older) {
+            Files.deleteIfExists(file);
+        }
+        older = List.of();
+    }
+
+    /**
+     * Flushes the records and closes the segment, so RouteJournal can open the directory
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        active.close();
+    }
+}
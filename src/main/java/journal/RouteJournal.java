@@ -0,0 +1,313 @@
+package main.java.journal;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+import main.java.threads.Elevator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of the routes of elevators of one building, so a restarted server continues
+ * the routes it promised to passengers
+ *
+ * Every elevator appends a record after every change of its state, while holding its lock: the assignment,
+ * the departure or the arrival, with the version of its new snapshot. Appending is a copy into a memory-mapped
+ * JournalSegment; a background thread forces the records to the disk every FLUSH_MILLIS, one flush for all records
+ * appended in that time (group commit), so dispatching never waits for the disk
+ *
+ * The first record of every elevator in a segment is its whole state, so a segment does not need the older ones.
+ * When a segment is full, the journal switches to the next one (prepared in advance by the background thread),
+ * which writes the state of elevators that did not change since then and deletes the older segments
+ *
+ * On startup (open) the segments are replayed in order, giving the state of every elevator at the moment
+ * the server stopped; elevators continue from it, a ride interrupted by the crash is repeated
+ * Every record may also be passed to a replica (see replicateTo), which streams it to a standby server
+ */
+public class RouteJournal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 8 << 20;
+    public static final long FLUSH_MILLIS = 10;
+
+    private final Path directory;
+    private final int segmentBytes;
+    // state of every elevator when the journal was opened; null for elevators the journal knew nothing about
+    private final ElevatorSnapshot[] recovered;
+    // segment that holds the latest state of every elevator, guarded by the lock of the elevator
+    private final JournalSegment[] segmentOf;
+    private volatile JournalSegment active;
+    // guarded by this: the next segment, created by the background thread, and the older ones, still to be deleted
+    private JournalSegment spare;
+    private final List<JournalSegment> retired = new ArrayList<>();
+    private long nextSequence;
+    // files replayed by open; deleted when every elevator has its state in the new segment
+    private final List<Path> replayed;
+    // set when the journal cannot be written; the server works on without it
+    private volatile boolean failed = false;
+    // reports that the journal stopped; until start, EventLog.DISABLED prints it to System.err
+    private volatile EventLog events = EventLog.DISABLED;
+
+    // receives copies of the records for the standby server; null if there is none
+    private volatile Consumer<ByteBuffer> replica;
+
+    private final ThreadLocal<CRC32C> checksums = ThreadLocal.withInitial(CRC32C::new);
+    private List<Elevator> elevators;
+    private Thread flusher;
+
+    private RouteJournal(Path directory, int segmentBytes, ElevatorSnapshot[] recovered, List<Path> replayed,
+                         long nextSequence) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.recovered = recovered;
+        this.segmentOf = new JournalSegment[recovered.length];
+        this.replayed = replayed;
+        this.nextSequence = nextSequence;
+        this.active = JournalSegment.create(directory, this.nextSequence++, segmentBytes);
+    }
+
+    public static RouteJournal open(@NonNull Path directory, int elevators) throws IOException {
+        return open(directory, elevators, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Replays the journal in the directory (created if missing) and starts a new segment for the following records
+     * @param elevators number of elevators of the building; states of elevators beyond it are dropped
+     */
+    public static RouteJournal open(@NonNull Path directory, int elevators, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = JournalSegment.list(directory);
+        RouteReplay replay = new RouteReplay(elevators);
+        for (Path file: files) {
+            JournalSegment.read(file, replay::apply);
+        }
+        long next = files.isEmpty() ? 0 : JournalSegment.sequenceOf(files.get(files.size() - 1)) + 1;
+        return new RouteJournal(directory, segmentBytes, replay.snapshots(), files, next);
+    }
+
+    /**
+     * @return state of the elevator when the journal was opened, or null if the journal knew nothing about it
+     */
+    public ElevatorSnapshot recovered(int elevatorID) {
+        return elevatorID < recovered.length ? recovered[elevatorID] : null;
+    }
+
+    /**
+     * Starts writing in the background, once every elevator has been created (and so recorded its state)
+     * @param events log of the building, to which the journal reports that it stopped
+     */
+    public void start(@NonNull List<Elevator> elevators, @NonNull EventLog events) {
+        this.elevators = elevators;
+        this.events = events;
+        compact();
+        for (Path file: replayed) {
+            try {
+                if (!failed) Files.deleteIfExists(file);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        flusher = new Thread(this::flushLoop, "Journal " + directory.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // ---------------
+    // called by the elevator while holding its lock, right after publishing the snapshot
+
+    /**
+     * Records the state of an elevator that has just been created
+     */
+    public void started(@NonNull ElevatorSnapshot elevator) {
+        record(elevator, RouteRecords.STATE, null);
+    }
+
+    public void assigned(@NonNull ElevatorSnapshot elevator, @NonNull Assignment assignment) {
+        record(elevator, RouteRecords.ASSIGNED, assignment);
+    }
+
+    public void departed(@NonNull ElevatorSnapshot elevator) {
+        record(elevator, RouteRecords.DEPARTED, null);
+    }
+
+    public void arrived(@NonNull ElevatorSnapshot elevator) {
+        record(elevator, RouteRecords.ARRIVED, null);
+    }
+
+    private void record(ElevatorSnapshot elevator, byte type, Assignment assignment) {
+        ByteBuffer record = append(elevator, type, assignment);
+        Consumer<ByteBuffer> replica = this.replica;
+        if (replica != null) replica.accept(record != null ? record : RouteRecords.encode(elevator, type, assignment));
+    }
+
+    /**
+     * @return the appended record, or null if the journal is not written
+     */
+    private ByteBuffer append(ElevatorSnapshot elevator, byte type, Assignment assignment) {
+        if (failed) return null;
+        int id = elevator.getID();
+        JournalSegment segment = active;
+        // the first record of the elevator in a segment is its whole state
+        boolean state = type == RouteRecords.STATE || segmentOf[id] != segment;
+        CRC32C checksum = checksums.get();
+        ByteBuffer record = RouteRecords.encode(elevator, state ? RouteRecords.STATE : type, assignment);
+        if (!segment.append(record, checksum)) {
+            segment = next(segment);
+            record = RouteRecords.encode(elevator, RouteRecords.STATE, null);
+            if (segment == null || !segment.append(record, checksum)) {
+                fail(new IOException("Record of elevator " + id + " does not fit in a segment"));
+                return null;
+            }
+        }
+        segmentOf[id] = segment;
+        return record;
+    }
+
+    // ---------------
+    // replication
+
+    /**
+     * @param replica receives every record right after it is appended, while the lock of its elevator is held,
+     * so the records of one elevator come in order; the buffer is reused afterwards. Null stops the replication
+     */
+    public void replicateTo(Consumer<ByteBuffer> replica) {
+        this.replica = replica;
+    }
+
+    /**
+     * Passes the whole state of every elevator to the replica, e.g. when a new standby server connects;
+     * records of an elevator sent before its state are ignored by the standby
+     */
+    public void replicateStates() {
+        Consumer<ByteBuffer> replica = this.replica;
+        if (replica == null || elevators == null) return;
+        for (Elevator elevator: elevators) {
+            try {
+                elevator.getLock().lock();
+                replica.accept(RouteRecords.encode(elevator.getSnapshot(), RouteRecords.STATE, null));
+            } finally {
+                elevator.getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Switches to the next segment, unless another elevator already did it
+     * @return segment active after the switch, or null if it could not be created
+     */
+    private synchronized JournalSegment next(JournalSegment full) {
+        if (active != full) return active;
+        try {
+            JournalSegment next = spare != null ? spare : JournalSegment.create(directory, nextSequence++, segmentBytes);
+            spare = null;
+            retired.add(full);
+            active = next;
+            return next;
+        } catch (IOException e) {
+            fail(e);
+            return null;
+        }
+    }
+
+    // ---------------
+    // background thread
+
+    private void flushLoop() {
+        while (!failed && !Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush();
+            try {
+                synchronized (this) {
+                    if (spare == null) spare = JournalSegment.create(directory, nextSequence++, segmentBytes);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            if (hasRetired()) compact();
+        }
+        flush();
+    }
+
+    private synchronized boolean hasRetired() {
+        return !retired.isEmpty();
+    }
+
+    private void flush() {
+        List<JournalSegment> segments;
+        synchronized (this) {
+            segments = new ArrayList<>(retired);
+        }
+        segments.add(active);
+        for (JournalSegment segment: segments) {
+            try {
+                segment.flush();
+            } catch (UncheckedIOException e) {
+                fail(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Writes the state of every elevator that has none in the active segment yet, then deletes older segments
+     */
+    private void compact() {
+        JournalSegment target = active;
+        for (Elevator elevator: elevators) {
+            try {
+                elevator.getLock().lock();
+                if (segmentOf[elevator.getID()] != target) record(elevator.getSnapshot(), RouteRecords.STATE, null);
+            } finally {
+                elevator.getLock().unlock();
+            }
+        }
+        if (failed) return;
+        target.flush();
+
+        List<JournalSegment> obsolete = new ArrayList<>();
+        synchronized (this) {
+            for (JournalSegment segment: retired) {
+                if (segment.getSequence() < target.getSequence()) obsolete.add(segment);
+            }
+            retired.removeAll(obsolete);
+        }
+        for (JournalSegment segment: obsolete) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (failed) return;
+        failed = true;
+        events.journalStopped(cause);
+    }
+
+    /**
+     * Stops the background thread after the last flush
+     */
+    @Override
+    public void close() {
+        if (flusher == null) return;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
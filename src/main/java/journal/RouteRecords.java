@@ -0,0 +1,69 @@
+package main.java.journal;
+
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format of the records of RouteJournal, also sent to the standby server by ReplicationPrimary
+ *
+ * Every record starts with its type, the ID of the elevator and the version of its snapshot after the change:
+ *  - STATE: current floor, next floor, one byte 'moving', length of the route and its floors
+ *  - ASSIGNED: number of inserted floors, then index in the route and floor of each of them
+ *  - DEPARTED: floor the elevator rides to
+ *  - ARRIVED: floor the elevator stopped at
+ */
+final class RouteRecords {
+
+    static final byte STATE = 1;
+    static final byte ASSIGNED = 2;
+    static final byte DEPARTED = 3;
+    static final byte ARRIVED = 4;
+    // type, elevator and version
+    private static final int HEADER = 1 + 4 + 8;
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+
+    private RouteRecords() {}
+
+    /**
+     * @param assignment applied assignment, only for ASSIGNED
+     * @return the record in a buffer of the calling thread, valid until its next call
+     */
+    static ByteBuffer encode(ElevatorSnapshot elevator, byte type, Assignment assignment) {
+        int size = HEADER;
+        if (type == STATE) size += 4 + 4 + 1 + 4 + 4 * elevator.getRouteLength();
+        else if (type == ASSIGNED) size += 4 + 8 * assignment.getFloors().length;
+        else size += 4;
+
+        ByteBuffer record = buffers.get();
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+            buffers.set(record);
+        }
+        record.clear();
+        record.put(type).putInt(elevator.getID()).putLong(elevator.getVersion());
+        switch (type) {
+            case STATE:
+                record.putInt(elevator.getCurrentFloor()).putInt(elevator.getNextFloor()).put((byte) (elevator.isMoving() ? 1 : 0));
+                record.putInt(elevator.getRouteLength());
+                for (int i = 0; i < elevator.getRouteLength(); i++) {
+                    record.putInt(elevator.getRouteFloor(i));
+                }
+                break;
+            case ASSIGNED:
+                record.putInt(assignment.getFloors().length);
+                for (int i = 0; i < assignment.getFloors().length; i++) {
+                    record.putInt(assignment.getIndices()[i]).putInt(assignment.getFloors()[i]);
+                }
+                break;
+            case DEPARTED:
+                record.putInt(elevator.getNextFloor());
+                break;
+            default:
+                record.putInt(elevator.getCurrentFloor());
+        }
+        return record.flip();
+    }
+}
@@ -0,0 +1,88 @@
+package main.java.journal;
+
+import main.java.model.ElevatorSnapshot;
+import main.java.model.IntRoute;
+
+import java.nio.ByteBuffer;
+
+/**
+ * State of the elevators rebuilt from the records of RouteRecords, in the order they were written
+ */
+final class RouteReplay {
+
+    private final long[] versions;
+    private final int[] currentFloors;
+    private final int[] nextFloors;
+    private final boolean[] moving;
+    private final IntRoute[] routes;
+
+    RouteReplay(int elevators) {
+        versions = new long[elevators];
+        currentFloors = new int[elevators];
+        nextFloors = new int[elevators];
+        moving = new boolean[elevators];
+        routes = new IntRoute[elevators];
+    }
+
+    /**
+     * Applies the record between the position and the limit of the buffer; consumes it
+     */
+    void apply(ByteBuffer record) {
+        byte type = record.get();
+        int id = record.getInt();
+        long version = record.getLong();
+        if (id < 0 || id >= routes.length) return;
+
+        if (type == RouteRecords.STATE) {
+            currentFloors[id] = record.getInt();
+            nextFloors[id] = record.getInt();
+            moving[id] = record.get() != 0;
+            IntRoute route = new IntRoute();
+            for (int i = record.getInt(); i > 0; i--) {
+                route.add(record.getInt());
+            }
+            routes[id] = route;
+            versions[id] = version;
+            return;
+        }
+        // changes are applied only in order to a known state
+        if (routes[id] == null || version != versions[id] + 1) return;
+        IntRoute route = routes[id];
+        switch (type) {
+            case RouteRecords.ASSIGNED:
+                // the same rule as in Elevator - standing elevator heads to the floor inserted at the front
+                for (int i = record.getInt(); i > 0; i--) {
+                    int index = record.getInt();
+                    int floor = record.getInt();
+                    if (index == 0 && !moving[id]) nextFloors[id] = floor;
+                    route.add(index, floor);
+                }
+                break;
+            case RouteRecords.DEPARTED:
+                nextFloors[id] = route.pollFirst();
+                moving[id] = true;
+                break;
+            case RouteRecords.ARRIVED:
+                moving[id] = false;
+                currentFloors[id] = nextFloors[id];
+                if (!route.isEmpty()) nextFloors[id] = route.peekFirst();
+                break;
+            default:
+                return;
+        }
+        versions[id] = version;
+    }
+
+    /**
+     * @return the current state of the elevators, copied so replaying may go on; null for unknown elevators
+     */
+    ElevatorSnapshot[] snapshots() {
+        ElevatorSnapshot[] snapshots = new ElevatorSnapshot[routes.length];
+        for (int id = 0; id < routes.length; id++) {
+            if (routes[id] != null) {
+                snapshots[id] = new ElevatorSnapshot(id, versions[id], currentFloors[id], nextFloors[id], moving[id], routes[id].copy());
+            }
+        }
+        return snapshots;
+    }
+}
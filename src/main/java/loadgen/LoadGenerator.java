@@ -0,0 +1,211 @@
+package main.java.loadgen;
+
+import lombok.NonNull;
+import main.java.model.LatencyHistogram;
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Params;
+import main.java.protocol.MessageChannel;
+import main.java.protocol.MessageCodec;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless FloorClient: opens a connection for every floor of the traffic and replays its calls in one JVM
+ * Calls are sent at their planned times no matter how fast the server answers (open loop),
+ * and round-trip latency is counted from the planned time, so a slow server cannot hide its delays
+ * by slowing the generator down
+ *
+ * Arguments:
+ *  - profile (up-peak, down-peak, lunch or inter-floor) [floors] [calls] [calls per second] [seed] [file to save the trace], or
+ *  - trace file [speed] (see Traffic)
+ */
+public class LoadGenerator {
+
+    // time given to the server to answer the last calls
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+    // time for reader threads to start before the first call
+    private static final long START_DELAY_MILLIS = 100;
+
+    private final Traffic traffic;
+    // System.nanoTime() at which every call is planned; its index is the correlation ID of the pickup
+    private final long[] plannedAt;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final CountDownLatch unanswered;
+    private final AtomicLong lastAnswerAt = new AtomicLong();
+    private final Map<Integer, MessageChannel> channels = new HashMap<>();
+    private volatile boolean closing = false;
+
+    public LoadGenerator(@NonNull Traffic traffic) {
+        this.traffic = traffic;
+        this.plannedAt = new long[traffic.size()];
+        this.unanswered = new CountDownLatch(traffic.size());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: load profile [floors] [calls] [calls per second] [seed] [trace] | load trace [speed]");
+        }
+        Traffic traffic;
+        if (isProfile(args[0])) {
+            int floors = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+            int calls = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+            double rate = args.length > 3 ? Double.parseDouble(args[3]) : 100;
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+            traffic = Traffic.synthetic(TrafficProfile.parse(args[0]), floors, calls, rate, seed);
+            if (args.length > 5) traffic.write(Path.of(args[5]));
+        } else {
+            traffic = Traffic.read(Path.of(args[0]));
+            if (args.length > 1) traffic = traffic.scaled(Double.parseDouble(args[1]));
+        }
+        new LoadGenerator(traffic).run("localhost", Params.serverCommunicationPort);
+    }
+
+    private static boolean isProfile(String arg) {
+        try {
+            TrafficProfile.parse(arg);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replays the traffic and prints the report
+     */
+    public void run(String host, int port) throws IOException, InterruptedException {
+        try {
+            connect(host, port);
+            System.out.printf("[Load] %d calls from %d floors over %.1f s%n", traffic.size(), channels.size(),
+                    traffic.size() > 0 ? traffic.getTimes()[traffic.size() - 1] / 1000.0 : 0.0);
+
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_DELAY_MILLIS);
+            Thread progress = startProgress(start);
+            send(start);
+            boolean drained = unanswered.await(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            progress.interrupt();
+
+            report(start, drained);
+        } finally {
+            closing = true;
+            for (MessageChannel channel: channels.values()) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Opens a connection for every floor with calls; each connection gets a thread reading its answers
+     */
+    private void connect(String host, int port) throws IOException {
+        for (int floor: traffic.getFrom()) {
+            if (channels.containsKey(floor)) continue;
+            MessageChannel channel = new MessageChannel(new Socket(host, port));
+            channels.put(floor, channel);
+            channel.send(Message.hello(MessageCodec.MIN_SUPPORTED_VERSION, MessageCodec.PROTOCOL_VERSION, floor));
+            Message welcome = channel.receive();
+            if (welcome.type == MessageType.REJECTED) {
+                throw new IllegalStateException("Floor " + floor + ": " + welcome.reason.description);
+            }
+            if (welcome.type != MessageType.WELCOME) {
+                throw new IllegalStateException("First message from server must be WELCOME");
+            }
+            // answers are matched with calls by correlation IDs
+            if (welcome.version < 2) {
+                throw new IllegalStateException("Load generator needs version 2 of the protocol, server uses " + welcome.version);
+            }
+
+            Thread reader = new Thread(() -> readAnswers(channel), "load-reader-" + floor);
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void send(long start) throws IOException {
+        long[] times = traffic.getTimes();
+        for (int i = 0; i < traffic.size(); i++) {
+            plannedAt[i] = start + TimeUnit.MILLISECONDS.toNanos(times[i]);
+            long delay;
+            while ((delay = plannedAt[i] - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            channels.get(traffic.getFrom()[i]).send(Message.pickup(traffic.getTo()[i], i));
+            sent.increment();
+        }
+    }
+
+    private void readAnswers(MessageChannel channel) {
+        try {
+            while (true) {
+                try {
+                    Message msg = channel.receive();
+                    if (msg.type == MessageType.EXIT) return;
+                    if (msg.type == MessageType.RESULT_BATCH) {
+                        msg.entries.forEach(this::answered);
+                    } else {
+                        answered(msg);
+                    }
+                } catch (IllegalArgumentException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            if (!closing) System.out.println("[Load] Connection lost: " + e);
+        }
+    }
+
+    private void answered(Message answer) {
+        long now = System.nanoTime();
+        if (answer.correlation < 0 || answer.correlation >= plannedAt.length) {
+            throw new IllegalArgumentException("Answer to unknown call: " + answer.correlation);
+        }
+        latency.record(now - plannedAt[answer.correlation]);
+        if (answer.type == MessageType.REFUSED) refused.increment();
+        lastAnswerAt.accumulateAndGet(now, Math::max);
+        unanswered.countDown();
+    }
+
+    /**
+     * Prints the number of calls answered in every second of the test
+     */
+    private Thread startProgress(long start) {
+        Thread progress = new Thread(() -> {
+            long previous = 0;
+            try {
+                for (int second = 1; ; second++) {
+                    long now = System.nanoTime();
+                    long next = start + TimeUnit.SECONDS.toNanos(second);
+                    if (next > now) TimeUnit.NANOSECONDS.sleep(next - now);
+                    long answered = latency.getCount();
+                    System.out.printf("[Load] %3d s: %d sent, %d answered, %d/s%n", second, sent.sum(), answered, answered - previous);
+                    previous = answered;
+                }
+            } catch (InterruptedException ignored) {}
+        }, "load-progress");
+        progress.setDaemon(true);
+        progress.start();
+        return progress;
+    }
+
+    private void report(long start, boolean drained) {
+        long answered = latency.getCount();
+        double seconds = (lastAnswerAt.get() - start) / 1e9;
+        System.out.printf("[Load] %d sent, %d answered (%d refused), %d unanswered%s%n", sent.sum(), answered,
+                refused.sum(), unanswered.getCount(), drained ? "" : " after " + DRAIN_TIMEOUT_MILLIS + " ms");
+        System.out.printf("[Load] Sustained %.1f pickups/s%n", seconds > 0 ? answered / seconds : 0.0);
+        System.out.println("[Load] Round-trip latency: " + latency);
+    }
+}
@@ -0,0 +1,120 @@
+package main.java.loadgen;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Calls to replay, sorted by the time they are made (in milliseconds from the start of the test)
+ * Trace files have one call per line: "time from to"; empty lines and lines starting with # are skipped
+ */
+@Getter
+public class Traffic {
+
+    private final long[] times;
+    private final int[] from;
+    private final int[] to;
+
+    private Traffic(long[] times, int[] from, int[] to) {
+        this.times = times;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Calls come as a Poisson process, i.e. in exponentially distributed intervals
+     * The same arguments always give the same traffic
+     * @param rate average number of calls per second
+     */
+    public static Traffic synthetic(@NonNull TrafficProfile profile, int floors, int calls, double rate, long seed) {
+        if (rate <= 0) throw new IllegalArgumentException("Rate must be positive");
+        Random random = new Random(seed);
+        long[] times = new long[calls];
+        int[] from = new int[calls];
+        int[] to = new int[calls];
+        double time = 0;
+        for (int i = 0; i < calls; i++) {
+            time += -Math.log(1 - random.nextDouble()) * 1000 / rate;
+            int[] call = profile.randomCall(random, floors);
+            times[i] = (long) time;
+            from[i] = call[0];
+            to[i] = call[1];
+        }
+        return new Traffic(times, from, to);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line of the trace is malformed
+     */
+    public static Traffic read(@NonNull Path trace) throws IOException {
+        long[] times = new long[64];
+        int[] from = new int[64];
+        int[] to = new int[64];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(trace)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] tokens = line.split("\\s+");
+                if (tokens.length != 3) throw new IllegalArgumentException("Line " + lineNumber + " of the trace must be \"time from to\"");
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, 2 * size);
+                    from = Arrays.copyOf(from, 2 * size);
+                    to = Arrays.copyOf(to, 2 * size);
+                }
+                times[size] = Long.parseLong(tokens[0]);
+                from[size] = Integer.parseInt(tokens[1]);
+                to[size] = Integer.parseInt(tokens[2]);
+                if (size > 0 && times[size] < times[size - 1]) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the trace is earlier than the previous one");
+                }
+                size++;
+            }
+        }
+        return new Traffic(Arrays.copyOf(times, size), Arrays.copyOf(from, size), Arrays.copyOf(to, size));
+    }
+
+    /**
+     * Saves the calls as a trace, e.g. to replay synthetic traffic against another version of the server
+     */
+    public void write(@NonNull Path trace) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(trace))) {
+            writer.println("# time[ms] from to");
+            for (int i = 0; i < size(); i++) {
+                writer.println(times[i] + " " + from[i] + " " + to[i]);
+            }
+        }
+    }
+
+    /**
+     * @param speed e.g. 2 replays the calls twice as fast
+     * @return the same calls in shorter (or longer) time
+     */
+    public Traffic scaled(double speed) {
+        if (speed <= 0) throw new IllegalArgumentException("Speed must be positive");
+        return new Traffic(Arrays.stream(times).map(time -> (long) (time / speed)).toArray(), from, to);
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * @return the highest floor used by any call, plus one
+     */
+    public int floors() {
+        int floors = 0;
+        for (int i = 0; i < size(); i++) floors = Math.max(floors, Math.max(from[i], to[i]) + 1);
+        return floors;
+    }
+}
@@ -0,0 +1,45 @@
+package main.java.loadgen;
+
+import java.util.Random;
+
+/**
+ * Synthetic traffic patterns of an office building; floor 0 is the lobby
+ * Every profile mixes three kinds of calls: up from the lobby, down to the lobby and between two other floors
+ */
+public enum TrafficProfile {
+    // morning: almost everybody arrives at the lobby and goes up
+    UP_PEAK(0.85, 0.10),
+    // evening: almost everybody goes down to the lobby
+    DOWN_PEAK(0.10, 0.85),
+    // lunch: people leave and come back at the same time
+    LUNCH(0.45, 0.45),
+    // during the day: calls between random floors
+    INTER_FLOOR(0, 0);
+
+    private final double fromLobby;
+    private final double toLobby;
+
+    TrafficProfile(double fromLobby, double toLobby) {
+        this.fromLobby = fromLobby;
+        this.toLobby = toLobby;
+    }
+
+    /**
+     * @return floors of a random call as {from, to}, from != to
+     */
+    public int[] randomCall(Random random, int floors) {
+        if (floors < 2) throw new IllegalArgumentException("Traffic needs at least 2 floors");
+        double kind = random.nextDouble();
+        if (kind < fromLobby) return new int[] {0, 1 + random.nextInt(floors - 1)};
+        if (kind < fromLobby + toLobby) return new int[] {1 + random.nextInt(floors - 1), 0};
+        int from = random.nextInt(floors);
+        return new int[] {from, (from + 1 + random.nextInt(floors - 1)) % floors};
+    }
+
+    /**
+     * @param name e.g. up-peak or UP_PEAK
+     */
+    public static TrafficProfile parse(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,97 @@
+package main.java.model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Decision of ElevatorManager: floors to insert into the route of given elevator
+ * Indices refer to the route of the snapshot with given version and are applied in order,
+ * so the assignment can be committed only if the elevator has not changed since then
+ *
+ * Strategies plan only the floors; ElevatorManager adds the calls they serve (see withCall),
+ * so the elevator counts their passengers along its route (see CarLoad)
+ */
+@Getter
+public class Assignment {
+
+    private final int elevatorID;
+    private final long version;
+    private final int[] indices;
+    private final int[] floors;
+    // pickup and destination of every call served by the assignment
+    private final int[] callFrom;
+    private final int[] callTo;
+
+    private Assignment(int elevatorID, long version, int[] indices, int[] floors) {
+        this(elevatorID, version, indices, floors, new int[0], new int[0]);
+    }
+
+    private Assignment(int elevatorID, long version, int[] indices, int[] floors, int[] callFrom, int[] callTo) {
+        this.elevatorID = elevatorID;
+        this.version = version;
+        this.indices = indices;
+        this.floors = floors;
+        this.callFrom = callFrom;
+        this.callTo = callTo;
+    }
+
+    /**
+     * Elevator already plans to visit both floors, so its route stays the same
+     */
+    public static Assignment unchanged(ElevatorSnapshot elevator) {
+        return new Assignment(elevator.getID(), elevator.getVersion(), new int[0], new int[0]);
+    }
+
+    public static Assignment insert(ElevatorSnapshot elevator, int atIndex, int floor) {
+        return new Assignment(elevator.getID(), elevator.getVersion(), new int[] {atIndex}, new int[] {floor});
+    }
+
+    public static Assignment appendBoth(ElevatorSnapshot elevator, int from, int to) {
+        int length = elevator.getRouteLength();
+        return new Assignment(elevator.getID(), elevator.getVersion(), new int[] {length, length + 1}, new int[] {from, to});
+    }
+
+    /**
+     * @param indices positions in the route, applied in order - each refers to the route already changed by the previous ones
+     */
+    public static Assignment insertAll(ElevatorSnapshot elevator, int[] indices, int[] floors) {
+        if (indices.length != floors.length) throw new IllegalArgumentException("Every floor needs its index");
+        return new Assignment(elevator.getID(), elevator.getVersion(), indices, floors);
+    }
+
+    public int getCallCount() {
+        return callFrom.length;
+    }
+
+    /**
+     * @return the same floors, also serving the passenger from floor 'from' to floor 'to'
+     */
+    public Assignment withCall(int from, int to) {
+        return new Assignment(elevatorID, version, indices, floors, append(callFrom, from), append(callTo, to));
+    }
+
+    /**
+     * @param next assignment planned on the snapshot already changed by this one (see ElevatorSnapshot#withAssignment)
+     * @return single assignment that applies both, one after another
+     */
+    public Assignment followedBy(Assignment next) {
+        if (next.elevatorID != elevatorID || next.version != version) {
+            throw new IllegalArgumentException("Assignments of different snapshots cannot be joined");
+        }
+        return new Assignment(elevatorID, version, concat(indices, next.indices), concat(floors, next.floors),
+                concat(callFrom, next.callFrom), concat(callTo, next.callTo));
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
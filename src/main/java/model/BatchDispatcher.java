@@ -0,0 +1,106 @@
+package main.java.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Alternative to ElevatorManager.askForElevator: calls are collected for a short window
+ * and then assigned together by the manager's strategy (JointInsertionStrategy plans them jointly)
+ * The result is committed to all elevators atomically; callers learn their elevators when the window closes
+ */
+public class BatchDispatcher {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    private final ElevatorManager manager;
+    @Getter
+    private final long windowMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // calls of the current window, waiting for the flush
+    private List<Call> pending = new ArrayList<>();
+
+    /**
+     * @param windowMillis time (in the milliseconds of the manager's scheduler) for which calls are collected
+     */
+    public BatchDispatcher(@NonNull ElevatorManager manager, long windowMillis) {
+        if (windowMillis <= 0) throw new IllegalArgumentException("Window must be positive");
+        this.manager = manager;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @return future completed with ID of the elevator that will take the passenger from floor 'from' to floor 'to'
+     */
+    public CompletableFuture<Integer> dispatch(int from, int to) {
+        Call call = new Call(from, to, manager.getScheduler().now());
+        boolean firstInWindow;
+        try {
+            lock.lock();
+            firstInWindow = pending.isEmpty();
+            pending.add(call);
+        } finally {
+            lock.unlock();
+        }
+        if (firstInWindow) {
+            manager.getScheduler().schedule(manager.getScheduler().now() + windowMillis, this::flush);
+        }
+        return call.elevator;
+    }
+
+    /**
+     * @return future completed with IDs of the elevators, in the order of floors in 'to'
+     */
+    public CompletableFuture<int[]> dispatchAll(int from, @NonNull int[] to) {
+        List<CompletableFuture<Integer>> elevators = new ArrayList<>(to.length);
+        for (int floor: to) {
+            elevators.add(dispatch(from, floor));
+        }
+        return CompletableFuture.allOf(elevators.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> elevators.stream().mapToInt(CompletableFuture::join).toArray());
+    }
+
+    /**
+     * Ends the window: assigns all collected calls and completes their futures
+     */
+    private void flush() {
+        List<Call> calls;
+        try {
+            lock.lock();
+            calls = pending;
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            int[] from = calls.stream().mapToInt(call -> call.from).toArray();
+            int[] to = calls.stream().mapToInt(call -> call.to).toArray();
+            long[] acceptedAt = calls.stream().mapToLong(call -> call.acceptedAt).toArray();
+            int[] elevators = manager.askForElevators(from, to, acceptedAt);
+            for (int i = 0; i < calls.size(); i++) {
+                calls.get(i).elevator.complete(elevators[i]);
+            }
+        } catch (RuntimeException e) {
+            calls.forEach(call -> call.elevator.completeExceptionally(e));
+        }
+    }
+
+    private static class Call {
+        private final int from;
+        private final int to;
+        private final long acceptedAt;
+        private final CompletableFuture<Integer> elevator = new CompletableFuture<>();
+
+        private Call(int from, int to, long acceptedAt) {
+            this.from = from;
+            this.to = to;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
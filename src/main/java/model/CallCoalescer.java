@@ -0,0 +1,171 @@
+package main.java.model;
+
+import lombok.NonNull;
+import main.java.threads.Elevator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the last assignment of every (from, to) call, so the same call made again - e.g. a lobby rush
+ * of people going to the same floor - joins the elevator that already takes it instead of running the strategy
+ *
+ * An assignment stays valid only as long as its elevator has not changed: the cache keeps the version
+ * of the snapshot published by the commit, and any later change of the elevator (another call, a departure,
+ * an arrival) makes it stale; departures and arrivals also clear the entries of the elevator (see forget).
+ * A valid assignment means the route still visits 'from' and then 'to', so the call is committed without new floors,
+ * under the lock of the elevator and only if the passenger fits in the car; calls joining together take the lock
+ * in turns, each refreshing the entry for the next one
+ *
+ * The same call made while the first one is still being dispatched does not run the strategy either: it waits
+ * for the pending dispatch of the call and then joins its elevator, so a burst of identical calls is dispatched once
+ *
+ * Both the cache and the pending dispatches are direct-mapped - SLOTS entries, a call replaces whatever other call
+ * shares its slot, and a call whose slot is taken by another pending dispatch is dispatched on its own
+ */
+final class CallCoalescer {
+
+    static final int SLOTS = 256;
+
+    private final List<Elevator> elevators;
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(SLOTS);
+    // call being dispatched in every slot; null if there is none
+    private final AtomicReferenceArray<Pending> pending = new AtomicReferenceArray<>(SLOTS);
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param elevators all elevators of the manager, indexed by ID
+     */
+    CallCoalescer(@NonNull List<Elevator> elevators) {
+        this.elevators = elevators;
+    }
+
+    /**
+     * Joins the elevator of the same call made before or being dispatched, otherwise dispatches the call
+     * @param whileLocked executed with the joined elevator while it is still locked, e.g. to register the passenger
+     * @param dispatch runs the strategy and commits the call, remembering its elevator (see remember)
+     * @return elevator that takes the passenger
+     */
+    Elevator coalesce(int from, int to, @NonNull Consumer<Elevator> whileLocked, @NonNull Supplier<Elevator> dispatch) {
+        int slot = slot(from, to);
+        Pending mine = null;
+        while (mine == null) {
+            Elevator joined = join(from, to, whileLocked);
+            if (joined != null) return joined;
+            Pending current = pending.get(slot);
+            if (current == null) {
+                Pending created = new Pending(from, to);
+                if (pending.compareAndSet(slot, null, created)) mine = created;
+            } else if (current.from == from && current.to == to) {
+                // its elevator is joined once the dispatch is committed; if it cannot be, the call is dispatched again
+                current.done.join();
+            } else {
+                return dispatch.get();
+            }
+        }
+        try {
+            // the dispatch that was pending before may have been committed after the last look at the cache
+            Elevator joined = join(from, to, whileLocked);
+            return joined != null ? joined : dispatch.get();
+        } finally {
+            pending.compareAndSet(slot, mine, null);
+            mine.done.complete(null);
+        }
+    }
+
+    /**
+     * Adds the call to the elevator of the same call made before, if that assignment is still valid
+     * @param whileLocked executed with the joined elevator while it is still locked
+     * @return elevator that takes the passenger, or null if the call must be dispatched
+     */
+    private Elevator join(int from, int to, Consumer<Elevator> whileLocked) {
+        int slot = slot(from, to);
+        Entry entry = entries.get(slot);
+        if (entry == null || entry.from != from || entry.to != to) return null;
+
+        Elevator elevator = elevators.get(entry.elevatorID);
+        try {
+            elevator.getLock().lock();
+            // a call that joined in the meantime has refreshed the entry
+            entry = entries.get(slot);
+            if (entry == null || entry.from != from || entry.to != to || entry.elevatorID != elevator.getID()) return null;
+            ElevatorSnapshot car = elevator.getSnapshot();
+            if (car.getVersion() != entry.version) {
+                entries.compareAndSet(slot, entry, null);
+                return null;
+            }
+            Assignment same = Assignment.unchanged(car);
+            if (!car.canTake(same, from, to)) return null;
+            elevator.apply(same.withCall(from, to));
+            whileLocked.accept(elevator);
+            remember(from, to, elevator);
+        } finally {
+            elevator.getLock().unlock();
+        }
+        coalesced.increment();
+        return elevator;
+    }
+
+    /**
+     * Must be called while the elevator is still locked by the commit that gave it the call,
+     * so the version is that of the snapshot published by the commit
+     */
+    void remember(int from, int to, Elevator elevator) {
+        entries.set(slot(from, to), new Entry(from, to, elevator.getID(), elevator.getSnapshot().getVersion()));
+    }
+
+    /**
+     * Clears the entries of the elevator made before its departure or arrival
+     * @param moved snapshot published by the departure or the arrival
+     */
+    void forget(@NonNull ElevatorSnapshot moved) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            Entry entry = entries.get(slot);
+            if (entry != null && entry.elevatorID == moved.getID() && entry.version < moved.getVersion()) {
+                entries.compareAndSet(slot, entry, null);
+            }
+        }
+    }
+
+    /**
+     * @return number of calls that joined a cached assignment instead of being dispatched
+     */
+    long getCoalescedCalls() {
+        return coalesced.sum();
+    }
+
+    private static int slot(int from, int to) {
+        return (from * 0x9E3779B9 + to) * 0x85EBCA6B >>> 24 & (SLOTS - 1);
+    }
+
+    private static final class Entry {
+        private final int from;
+        private final int to;
+        private final int elevatorID;
+        // version of the elevator's snapshot right after the call was committed
+        private final long version;
+
+        private Entry(int from, int to, int elevatorID, long version) {
+            this.from = from;
+            this.to = to;
+            this.elevatorID = elevatorID;
+            this.version = version;
+        }
+    }
+
+    private static final class Pending {
+        private final int from;
+        private final int to;
+        // completed when the dispatch is committed or has failed
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
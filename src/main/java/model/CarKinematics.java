@@ -0,0 +1,91 @@
+package main.java.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How fast specific elevator moves: time per floor at full speed, penalty for accelerating and braking
+ * on every ride and time spent with open doors at every stop; also how many passengers fit in it
+ * Immutable, so snapshots and planning threads share it
+ */
+@Getter
+public class CarKinematics {
+
+    /**
+     * Kinematics of the original system: no acceleration penalty, see Params
+     */
+    public static final CarKinematics DEFAULT = new CarKinematics(Params.TIME_TO_MOVE_ONE_FLOOR, 0, Params.SLEEP_AFTER_ARRIVAL);
+
+    // time (in milliseconds) needed to move 1 floor at full speed
+    private final int floorMillis;
+    // time added to every ride that leaves a floor, for accelerating and braking
+    private final int startStopMillis;
+    // time that elevator must spend still after arriving at given floor
+    private final int dwellMillis;
+    // number of passengers that fit in the car
+    private final int capacity;
+
+    public CarKinematics(int floorMillis, int startStopMillis, int dwellMillis) {
+        this(floorMillis, startStopMillis, dwellMillis, Params.CAR_CAPACITY);
+    }
+
+    public CarKinematics(int floorMillis, int startStopMillis, int dwellMillis, int capacity) {
+        if (floorMillis <= 0) throw new IllegalArgumentException("Time to move one floor must be positive");
+        if (startStopMillis < 0 || dwellMillis < 0) throw new IllegalArgumentException("Times cannot be negative");
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.floorMillis = floorMillis;
+        this.startStopMillis = startStopMillis;
+        this.dwellMillis = dwellMillis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return time of the ride through given number of floors, 0 if the elevator does not move
+     */
+    public long rideMillis(int floors) {
+        if (floors == 0) return 0;
+        return (long) Math.abs(floors) * floorMillis + startStopMillis;
+    }
+
+    /**
+     * @return time needed to get from floor a to floor b, including the stop at b (no stop if b is a)
+     */
+    public long legMillis(int a, int b) {
+        if (a == b) return 0;
+        return rideMillis(b - a) + dwellMillis;
+    }
+
+    /**
+     * @param description floorMillis/startStopMillis/dwellMillis[/capacity], e.g. 1500/1000/4000 or 1500/1000/4000/20
+     */
+    public static CarKinematics parse(@NonNull String description) {
+        String[] parts = description.split("/");
+        if (parts.length != 3 && parts.length != 4) {
+            throw new IllegalArgumentException("Expected floor/start-stop/dwell milliseconds and optional capacity: " + description);
+        }
+        return new CarKinematics(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                parts.length > 3 ? Integer.parseInt(parts[3]) : Params.CAR_CAPACITY);
+    }
+
+    /**
+     * @param description kinematics of consecutive elevators separated by commas (see parse());
+     *                    the last one is repeated for the remaining elevators
+     * @return kinematics of every elevator, indexed by ID
+     */
+    public static List<CarKinematics> parseFleet(@NonNull String description, int numberOfElevators) {
+        String[] cars = description.split(",");
+        List<CarKinematics> result = new ArrayList<>(numberOfElevators);
+        for (int i = 0; i < numberOfElevators; i++) {
+            result.add(parse(cars[Math.min(i, cars.length - 1)]));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return floorMillis + "/" + startStopMillis + "/" + dwellMillis + "/" + capacity;
+    }
+}
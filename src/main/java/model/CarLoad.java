@@ -0,0 +1,170 @@
+package main.java.model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Projected occupancy of an elevator along its route: number of passengers in the car when it leaves
+ * every stop, kept next to the route and updated with it - a new stop takes the load of the stop before it,
+ * every call adds one passenger between its pickup and its drop-off, departures and arrivals shift the profile
+ *
+ * Passengers leave at the first stop at their destination after boarding, the same way PassengerTracker
+ * follows them, and board at the first stop at their floor from which the whole ride fits in the car -
+ * e.g. a passenger appended to the route of a full elevator boards when it comes back empty;
+ * if the car is too full everywhere, at the first stop at their floor. The origin is the floor
+ * at which the elevator stands, or the next floor of a moving one (position -1)
+ *
+ * Not thread-safe: Elevator modifies it under its lock and publishes copies in snapshots
+ */
+public class CarLoad {
+
+    public static final int ORIGIN = -1;
+    private static final int ABSENT = -2;
+
+    @Getter
+    private final int capacity;
+    private boolean moving;
+    // passengers in the car now
+    @Getter
+    private int passengers;
+    // passengers in the car when it leaves the origin; the same as 'passengers' if it stands
+    private int leavingOrigin;
+    // leaving[i] - passengers in the car when it leaves stop i of the route
+    private int[] leaving;
+    private int size;
+
+    /**
+     * Empty car
+     * @param stops length of the route
+     */
+    public CarLoad(int capacity, int stops, boolean moving) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.moving = moving;
+        this.leaving = new int[Math.max(8, stops)];
+        this.size = stops;
+    }
+
+    private CarLoad(CarLoad other) {
+        this.capacity = other.capacity;
+        this.moving = other.moving;
+        this.passengers = other.passengers;
+        this.leavingOrigin = other.leavingOrigin;
+        this.leaving = Arrays.copyOf(other.leaving, Math.max(8, other.size));
+        this.size = other.size;
+    }
+
+    /**
+     * @param index position in the route, or ORIGIN
+     * @return passengers in the car when it leaves the stop
+     */
+    public int leaving(int index) {
+        if (index == ORIGIN) return leavingOrigin;
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of route of length " + size);
+        return leaving[index];
+    }
+
+    /**
+     * @return passengers over the capacity, summed over the ride to the origin and every stop
+     */
+    public int overflow() {
+        int overflow = Math.max(0, leavingOrigin - capacity);
+        if (moving) overflow += Math.max(0, passengers - capacity);
+        for (int i = 0; i < size; i++) {
+            overflow += Math.max(0, leaving[i] - capacity);
+        }
+        return overflow;
+    }
+
+    /**
+     * Mirrors IntRoute#add: nobody boards or leaves at the new stop yet
+     */
+    public void stopAdded(int index) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index " + index + " out of route of length " + size);
+        if (size == leaving.length) leaving = Arrays.copyOf(leaving, 2 * leaving.length);
+        System.arraycopy(leaving, index, leaving, index + 1, size - index);
+        leaving[index] = index > 0 ? leaving[index - 1] : leavingOrigin;
+        size++;
+    }
+
+    /**
+     * Adds the passenger between the stops chosen by the rule above; the stops must already be in the route
+     * @param origin floor at which the elevator stands, or the next floor of a moving one
+     * @return false if the route does not visit both floors in order, so the passenger is not counted
+     */
+    public boolean passengerAdded(int from, int to, IntRoute route, int origin) {
+        int pickup = ABSENT, dropOff = ABSENT;
+        int candidate = origin == from ? ORIGIN : indexOf(route, from, 0);
+        while (candidate != ABSENT) {
+            int candidateDropOff = indexOf(route, to, candidate + 1);
+            if (candidateDropOff == ABSENT) break;
+            boolean fits = peak(candidate, candidateDropOff) < capacity;
+            if (pickup == ABSENT || fits) {
+                pickup = candidate;
+                dropOff = candidateDropOff;
+            }
+            if (fits) break;
+            candidate = indexOf(route, from, candidate + 1);
+        }
+        if (pickup == ABSENT) return false;
+
+        if (pickup == ORIGIN) {
+            leavingOrigin++;
+            if (!moving) passengers++;
+        }
+        for (int i = Math.max(0, pickup); i < dropOff; i++) {
+            leaving[i]++;
+        }
+        return true;
+    }
+
+    /**
+     * @return the most passengers in the car when it leaves the stops in [first, last)
+     */
+    private int peak(int first, int last) {
+        int peak = first == ORIGIN ? leavingOrigin : 0;
+        for (int i = Math.max(0, first); i < last; i++) {
+            peak = Math.max(peak, leaving[i]);
+        }
+        return peak;
+    }
+
+    /**
+     * The elevator leaves the origin towards the first stop of the route, which becomes the new origin
+     */
+    public void departed() {
+        if (size == 0) return;
+        passengers = leavingOrigin;
+        leavingOrigin = leaving[0];
+        System.arraycopy(leaving, 1, leaving, 0, size - 1);
+        size--;
+        moving = true;
+    }
+
+    /**
+     * The elevator stops at the origin; passengers leave and board it there
+     */
+    public void arrived() {
+        passengers = leavingOrigin;
+        moving = false;
+    }
+
+    /**
+     * @return independent copy, e.g. for a snapshot
+     */
+    public CarLoad copy() {
+        return new CarLoad(this);
+    }
+
+    /**
+     * @return first index not lower than 'start' at which the route visits the floor, ABSENT if there is none
+     */
+    private static int indexOf(IntRoute route, int floor, int start) {
+        if (!route.contains(floor)) return ABSENT;
+        for (int i = start; i < route.size(); i++) {
+            if (route.get(i) == floor) return i;
+        }
+        return ABSENT;
+    }
+}
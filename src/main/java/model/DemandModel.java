@@ -0,0 +1,92 @@
+package main.java.model;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Learned demand of a building: how many calls start at every floor at every time of the day
+ *
+ * The day is split into SLOT_MILLIS slots and every (slot, floor) cell keeps a weight that grows by one with every call
+ * and is multiplied by DAILY_DECAY for every day that passed since its last call, so recent days count more and
+ * the model follows changes in the traffic. The memory is fixed - one long per cell, packing the day of the last
+ * update with the weight - and recording is a compare-and-set on that long, without locks or allocation
+ *
+ * Times are those of the ElevatorScheduler; the days of the real-time one are UTC days
+ */
+public class DemandModel {
+
+    public static final long SLOT_MILLIS = 15 * 60 * 1000;
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    public static final int SLOTS = (int) (DAY_MILLIS / SLOT_MILLIS);
+    // weight left from yesterday; the same slot a week ago counts about 8% of today's
+    public static final double DAILY_DECAY = 0.7;
+
+    @Getter
+    private final int floors;
+    // cells[slot * floors + floor] = day of the last update << 32 | bits of the float weight at that day
+    private final AtomicLongArray cells;
+    @Getter
+    private final LongAdder recordedCalls = new LongAdder();
+
+    public DemandModel(int floors) {
+        if (floors <= 0) throw new IllegalArgumentException("Number of floors must be positive");
+        this.floors = floors;
+        this.cells = new AtomicLongArray(SLOTS * floors);
+    }
+
+    /**
+     * Counts a call from the floor; calls from floors outside of the building are ignored
+     * @param time moment of the call, as returned by ElevatorScheduler#now()
+     */
+    public void record(int floor, long time) {
+        if (floor < 0 || floor >= floors) return;
+        int cell = cell(floor, time);
+        int day = day(time);
+        long current, updated;
+        do {
+            current = cells.get(cell);
+            updated = pack(day, (float) (weightAt(current, day) + 1));
+        } while (!cells.compareAndSet(cell, current, updated));
+        recordedCalls.increment();
+    }
+
+    /**
+     * @return calls expected from the floor in the slot of the given time, averaged over the past days with decay
+     */
+    public double expectedCalls(int floor, long time) {
+        if (floor < 0 || floor >= floors) return 0;
+        // steady weight of n calls every day is n / (1 - DAILY_DECAY)
+        return weightAt(cells.get(cell(floor, time)), day(time)) * (1 - DAILY_DECAY);
+    }
+
+    /**
+     * @return calls expected from the floor in the slot of the given time and in the next one
+     */
+    public double expectedCallsSoon(int floor, long time) {
+        return expectedCalls(floor, time) + expectedCalls(floor, time + SLOT_MILLIS);
+    }
+
+    private int cell(int floor, long time) {
+        int slot = (int) (Math.floorMod(time, DAY_MILLIS) / SLOT_MILLIS);
+        return slot * floors + floor;
+    }
+
+    private static int day(long time) {
+        return (int) Math.floorDiv(time, DAY_MILLIS);
+    }
+
+    private static long pack(int day, float weight) {
+        return (long) day << 32 | (Float.floatToRawIntBits(weight) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return weight of the packed cell decayed to the given day; cells updated later than that day are not decayed
+     */
+    private static double weightAt(long cell, int day) {
+        float weight = Float.intBitsToFloat((int) cell);
+        int age = day - (int) (cell >>> 32);
+        return age <= 0 ? weight : weight * Math.pow(DAILY_DECAY, age);
+    }
+}
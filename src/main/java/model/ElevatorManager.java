@@ -2,185 +2,312 @@ package main.java.model;
 
 import lombok.Getter;
 import lombok.NonNull;
+import main.java.dispatch.BatchPlan;
+import main.java.dispatch.DispatchStrategy;
+import main.java.events.EventLog;
+import main.java.journal.RouteJournal;
+import main.java.simulation.ElevatorScheduler;
 import main.java.threads.Elevator;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 
 /**
- * Class that decides where to send elevators
+ * Class that sends elevators where its DispatchStrategy decides
  */
 public class ElevatorManager {
 
-    @Getter
-    private final ReentrantLock lock = new ReentrantLock();
+    // number of times the assignment is planned on fresh snapshots before the chosen elevator is locked for planning
+    private static final int OPTIMISTIC_ATTEMPTS = 8;
+
     private final List<Elevator> elevators = new ArrayList<>();
+    @Getter
+    private final ElevatorScheduler scheduler;
+    @Getter
+    private final DispatchStrategy strategy;
+    // time from assigning a floor to an elevator waiting for requests until it departs, on the clock of the scheduler
+    @Getter
+    private final LatencyMetric departureLatency = new LatencyMetric("Idle elevator departure latency");
+    // wait and journey times of passengers, dispatch latency and utilization of elevators
+    @Getter
+    private final PassengerTracker passengerTracker;
+    // snapshots of all elevators, published by them after every change
+    @Getter
+    private final FleetStatus fleetStatus;
+    // null if routes are not recorded
+    private final RouteJournal journal;
+    // assignments, rides and connections of the building
+    @Getter
+    private final EventLog events;
+    // calls per floor and time of the day, learned from the pickups; null if idle elevators are not parked
+    @Getter
+    private final DemandModel demand;
+    // last valid assignment of every call, joined by the same call made again
+    private final CallCoalescer coalescer = new CallCoalescer(elevators);
+
+    /**
+     * Manager without journal, event log or parking (see Options)
+     * @param kinematics speed and stop times of every elevator, indexed by ID
+     * @param scheduler decides whether elevators move in real time or in simulated one
+     * @param strategy decides which elevator serves every call
+     */
+    public ElevatorManager(@NonNull List<CarKinematics> kinematics, AtomicBoolean serverStillRunning,
+                           @NonNull ElevatorScheduler scheduler, @NonNull DispatchStrategy strategy) {
+        this(kinematics, serverStillRunning, scheduler, strategy, new Options());
+    }
 
-    public ElevatorManager(int numberOfElevators, AtomicBoolean serverStillRunning) {
+    /**
+     * @param options journal, event log and parking of the building
+     */
+    public ElevatorManager(@NonNull List<CarKinematics> kinematics, AtomicBoolean serverStillRunning,
+                           @NonNull ElevatorScheduler scheduler, @NonNull DispatchStrategy strategy, @NonNull Options options) {
+        int numberOfElevators = kinematics.size();
+        this.scheduler = scheduler;
+        this.strategy = strategy;
+        this.passengerTracker = new PassengerTracker(numberOfElevators, scheduler::now);
+        this.fleetStatus = new FleetStatus(numberOfElevators);
+        this.journal = options.journal;
+        this.events = options.events;
+        this.demand = options.demand;
+        IdleParking parking = demand != null ? new IdleParking(demand, scheduler, fleetStatus, events) : null;
+        Elevator.Context context = new Elevator.Context(serverStillRunning, departureLatency, passengerTracker, fleetStatus)
+                .journal(journal)
+                .events(events)
+                .idleListener(parking != null ? parking::elevatorIdle : null)
+                .rideListener(coalescer::forget)
+                .clock(scheduler::nanoTime);
         for (int i = 0; i < numberOfElevators; i++) {
-            elevators.add(i, new Elevator(i, serverStillRunning, this.lock));
+            elevators.add(i, new Elevator(i, kinematics.get(i), context));
         }
+        if (journal != null) journal.start(elevators, events);
 
-        elevators.forEach(Elevator::start);
+        scheduler.start(elevators);
     }
 
+    /**
+     * Chooses elevator for the passenger; planning never blocks elevators or other calls
+     * The same call made again, or while it is still being dispatched, joins the elevator assigned to it,
+     * if that elevator has not changed since (see CallCoalescer); otherwise the assignment is planned on snapshots
+     * of all elevators and committed only to the chosen one; if it changed in the meantime, planning is repeated
+     * @return ID of the elevator that will take the passenger from floor 'from' to floor 'to'
+     */
     public int askForElevator(int from, int to) {
-        int chosenElevator = -1;
+        long acceptedAt = passengerTracker.now();
+        if (demand != null) demand.record(from, acceptedAt);
+        long started = System.nanoTime();
+        Elevator elevator = coalescer.coalesce(from, to, joined -> passengerTracker.assigned(from, to, joined, acceptedAt),
+                () -> chooseElevator(from, to, acceptedAt));
+        passengerTracker.dispatched(System.nanoTime() - started);
+        events.assigned(elevator.getID(), from, to);
+        return elevator.getID();
+    }
+
+    /**
+     * The passenger is registered in PassengerTracker while the elevator is still locked by the commit,
+     * so the elevator cannot leave the passenger's floor before the tracker knows about the passenger
+     */
+    private Elevator chooseElevator(int from, int to, long acceptedAt) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            Assignment assignment = strategy.assign(from, to, fleetStatus.current()).withCall(from, to);
+            Elevator elevator = elevators.get(assignment.getElevatorID());
+            if (elevator.commit(assignment, () -> registered(from, to, elevator, acceptedAt))) {
+                scheduler.floorAdded(elevator);
+                return elevator;
+            }
+        }
+
+        // heavy contention on the chosen elevator - lock it, so its snapshot cannot change while planning
+        Elevator elevator = elevators.get(strategy.assign(from, to, fleetStatus.current()).getElevatorID());
         try {
-            this.lock.lock();
-            chosenElevator = chooseElevator(from, to);
+            elevator.getLock().lock();
+            // the lock is held, so the snapshot the assignment is planned on stays current until it is applied
+            Assignment assignment = strategy.assign(from, to, List.of(elevator.getSnapshot())).withCall(from, to);
+            elevator.apply(assignment);
+            registered(from, to, elevator, acceptedAt);
         } finally {
-            this.lock.unlock();
+            elevator.getLock().unlock();
         }
+        scheduler.floorAdded(elevator);
+        return elevator;
+    }
 
-        return chosenElevator;
+    /**
+     * Registers the committed call while the elevator is still locked, in PassengerTracker and in the CallCoalescer
+     */
+    private void registered(int from, int to, Elevator elevator, long acceptedAt) {
+        passengerTracker.assigned(from, to, elevator, acceptedAt);
+        coalescer.remember(from, to, elevator);
     }
 
-    public List<ElevatorStatus> getStatus() {
-        List<ElevatorStatus> status = new LinkedList<>();
-        try {
-            lock.lock();
-            for (var elevator : elevators) {
-                status.add(new ElevatorStatus(elevator.getID(), elevator.getCurrentFloor(), elevator.getNextFloor(), elevator.isMoving()));
-            }
-        } finally {
-            lock.unlock();
-        }
-        return status;
+    /**
+     * @return number of calls that joined the elevator assigned to the same call before, without dispatching
+     */
+    public long getCoalescedCalls() {
+        return coalescer.getCoalescedCalls();
     }
 
-    // ---------------
-
-    private Elevator findElevatorWithLowestCost(@NonNull List<Elevator> list) {
-        if (list.isEmpty()) throw new IllegalArgumentException("Empty list cannot have smallest element");
-        int lowestCost = Integer.MAX_VALUE;
-        Elevator result = null;
-        for (Elevator elevator: list) {
-            int cost = elevator.totalDistance();
-            if (cost < lowestCost) {
-                lowestCost = cost;
-                result = elevator;
-            }
-            if (cost == 0) break;
-        }
-        return result;
+    /**
+     * Chooses elevators for many passengers waiting on the same floor (see askForElevators(int[], int[]))
+     * @return IDs of the elevators, in the order of floors in 'to'
+     */
+    public int[] askForElevators(int from, @NonNull int[] to) {
+        int[] fromFloors = new int[to.length];
+        Arrays.fill(fromFloors, from);
+        return askForElevators(fromFloors, to);
+    }
+
+    /**
+     * Plans all calls together on one set of snapshots and commits them to all elevators atomically;
+     * if any of the elevators changed in the meantime, planning is repeated
+     * @param from floor of every call
+     * @param to destination of every call
+     * @return IDs of the elevators, in the order of the calls
+     */
+    public int[] askForElevators(@NonNull int[] from, @NonNull int[] to) {
+        long[] acceptedAt = new long[to.length];
+        Arrays.fill(acceptedAt, passengerTracker.now());
+        return askForElevators(from, to, acceptedAt);
     }
 
-    private Elevator findElevatorClosestToFloor(@NonNull List<Elevator> list, int floor) {
-        if (list.isEmpty()) throw new IllegalArgumentException("Empty list");
-        int lowestDistance = Integer.MAX_VALUE;
-        Elevator result = null;
-        for (Elevator elevator: list) {
-            int dist = Math.abs(elevator.getCurrentFloor() - floor);
-            if (dist < lowestDistance) {
-                lowestDistance = dist;
-                result = elevator;
+    /**
+     * @param acceptedAt time at which every call was accepted, e.g. before a BatchDispatcher window
+     */
+    int[] askForElevators(int[] from, int[] to, long[] acceptedAt) {
+        if (demand != null) {
+            for (int call = 0; call < from.length; call++) {
+                demand.record(from[call], acceptedAt[call]);
             }
-            if (dist == 0) break;
+        }
+        long started = System.nanoTime();
+        int[] result = null;
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS && result == null; attempt++) {
+            BatchPlan plan = strategy.assignAll(from, to, currentSnapshots());
+            int[] chosen = plan.getElevators();
+            Runnable track = () -> {
+                for (int call = 0; call < to.length; call++) {
+                    registered(from[call], to[call], elevators.get(chosen[call]), acceptedAt[call]);
+                }
+            };
+            if (commitAll(withCalls(plan, from, to), track)) result = chosen;
+        }
+        if (result == null) {
+            // heavy contention - calls are dispatched one by one, with the fallback of askForElevator
+            result = new int[to.length];
+            for (int call = 0; call < to.length; call++) {
+                result[call] = chooseElevator(from[call], to[call], acceptedAt[call]).getID();
+            }
+        }
+
+        passengerTracker.dispatched(System.nanoTime() - started);
+        for (int call = 0; call < to.length; call++) {
+            events.assigned(result[call], from[call], to[call]);
         }
         return result;
     }
 
-    private int findInsertionWithLowestCost(int floorToInsert, @NonNull Elevator elevator, Integer floorRequiredBefore) {
-        //if (floorRequiredBefore != null && !elevator.willBeVisited(floorRequiredBefore)) return -1;
-        int minimalAdditionalCost = Integer.MAX_VALUE;
-        int insertionIndex = -1;
-        int lastFloor = elevator.getCurrentFloor();
-
-        int i = 0;
-        for (int newFloor: elevator.getFloorsQueue()) {
-            if (floorRequiredBefore != null) {
-                if (newFloor == floorRequiredBefore)
-                    floorRequiredBefore = null;
-                else
-                    continue;
-            }
-
-            int additionalCost;
+    /**
+     * @return assignments of the plan, each serving the calls planned for its elevator
+     */
+    private static Assignment[] withCalls(BatchPlan plan, int[] from, int[] to) {
+        Assignment[] assignments = plan.getAssignments().clone();
+        for (int call = 0; call < from.length; call++) {
+            int id = plan.getElevators()[call];
+            if (assignments[id] != null) assignments[id] = assignments[id].withCall(from[call], to[call]);
+        }
+        return assignments;
+    }
 
-            // target floor above last and next floor
-            if (floorToInsert > Math.max(lastFloor, newFloor)) {
-                additionalCost = 2 * Math.abs(floorToInsert - Math.max(lastFloor, newFloor));
+    /**
+     * Commits assignments of many elevators atomically - either all of them or none
+     * @param assignments assignment for every elevator, indexed by ID; null if the elevator does not change
+     * @param whileLocked executed after the assignments are applied, before the elevators are unlocked
+     * @return false if any of the elevators changed since the snapshot its assignment was planned on
+     */
+    boolean commitAll(Assignment[] assignments, Runnable whileLocked) {
+        int locked = 0;
+        try {
+            // always in the order of IDs, so two callers never wait for each other
+            for (; locked < assignments.length; locked++) {
+                if (assignments[locked] != null) elevators.get(locked).getLock().lock();
             }
-            // target floor below last and next floor
-            else if (floorToInsert < Math.min(lastFloor, newFloor)) {
-                additionalCost = 2 * Math.abs(floorToInsert - Math.min(lastFloor, newFloor));
+            for (int id = 0; id < assignments.length; id++) {
+                if (assignments[id] != null && elevators.get(id).getSnapshot().getVersion() != assignments[id].getVersion()) {
+                    return false;
+                }
             }
-            // target floor between the two - cost is exactly zero
-            else {
-                additionalCost = 0;
+            for (int id = 0; id < assignments.length; id++) {
+                if (assignments[id] != null) elevators.get(id).apply(assignments[id]);
             }
-
-            // if better position has been found
-            if (additionalCost < minimalAdditionalCost) {
-                minimalAdditionalCost = additionalCost;
-                insertionIndex = i;
+            whileLocked.run();
+        } finally {
+            for (int id = 0; id < locked; id++) {
+                if (assignments[id] != null) elevators.get(id).getLock().unlock();
             }
-            // cost cannot get lower, so end the loop
-            if (minimalAdditionalCost == 0) break;
-
-            lastFloor = newFloor;
-            i++;
         }
 
-        // if there was no position found or the end of the list is just optimal
-        if (insertionIndex == -1 || Math.abs(floorToInsert - lastFloor) < minimalAdditionalCost) {
-            insertionIndex = i;
+        for (int id = 0; id < assignments.length; id++) {
+            if (assignments[id] != null) scheduler.floorAdded(elevators.get(id));
         }
-
-        return insertionIndex;
+        return true;
     }
 
+    /**
+     * Wakes up elevator threads waiting for requests, so they can notice that the server ends,
+     * and flushes the journal for the last time
+     */
+    public void shutdown() {
+        elevators.forEach(Thread::interrupt);
+        if (journal != null) journal.close();
+    }
 
-    private int chooseElevator(int from, int to) {
-        Elevator chosenElevator;
+    /**
+     * @return consistent state of all elevators; reading it never blocks elevators or dispatching
+     */
+    public FleetSnapshot getFleetSnapshot() {
+        return fleetStatus.current();
+    }
 
-        // get elevators that are currently staying on floor 'from'
-        List<Elevator> elevatorsThatVisitDepartureFloor = this.elevators.stream()
-                .filter(e -> !e.isMoving())
-                .filter(e -> e.getCurrentFloor() == from)
-                .collect(Collectors.toList());
+    /**
+     * @return snapshots of all elevators, indexed by ID
+     */
+    List<ElevatorSnapshot> currentSnapshots() {
+        return fleetStatus.current().asList();
+    }
 
-        // if there are elevators that are or will be on floor 'from', pick one from them
-        if (!elevatorsThatVisitDepartureFloor.isEmpty()) {
-            // check for elevator that is planning to ride to floor 'to'
-            chosenElevator = elevatorsThatVisitDepartureFloor.stream()
-                    .filter(e -> e.willBeVisited(to)).findFirst().orElse(null);
-            if (chosenElevator != null)
-                return chosenElevator.getID();
+    /**
+     * Optional parts of a manager, all of them off by default
+     */
+    public static class Options {
+        private RouteJournal journal = null;
+        private EventLog events = EventLog.DISABLED;
+        private DemandModel demand = null;
 
-            chosenElevator = findElevatorWithLowestCost(elevatorsThatVisitDepartureFloor);
-            chosenElevator.addFloor(findInsertionWithLowestCost(to, chosenElevator, null), to);
-            return chosenElevator.getID();
+        /**
+         * @param journal records routes of the elevators, which continue the routes recovered from it;
+         *                null if routes are kept only in memory
+         */
+        public Options journal(RouteJournal journal) {
+            this.journal = journal;
+            return this;
         }
 
-        // if not, take those that are coming to floor 'from'
-        elevatorsThatVisitDepartureFloor = this.elevators.stream()
-                .filter(e -> e.willBeVisited(from)).collect(Collectors.toList());
-        if (!elevatorsThatVisitDepartureFloor.isEmpty()) {
-            chosenElevator = findElevatorWithLowestCost(elevatorsThatVisitDepartureFloor);
-            chosenElevator.addFloor(findInsertionWithLowestCost(to, chosenElevator, null), to);
-            return chosenElevator.getID();
+        /**
+         * @param events logs assignments and rides of the elevators of the building
+         */
+        public Options events(@NonNull EventLog events) {
+            this.events = events;
+            return this;
         }
 
-        // if not, take elevator without requested floors
-        List<Elevator> inactiveElevators = this.elevators.stream()
-                .filter(e -> !e.isMoving() && e.getFloorsQueue().isEmpty()).collect(Collectors.toList());
-        if (!inactiveElevators.isEmpty()) {
-            chosenElevator = findElevatorClosestToFloor(inactiveElevators, from);
-            chosenElevator.addFloorLast(from);
-            chosenElevator.addFloorLast(to);
-            return chosenElevator.getID();
+        /**
+         * @param demand learns from every pickup where calls come from, and idle elevators are parked
+         *               where it expects them (see IdleParking); null if idle elevators stay where they stopped
+         */
+        public Options demand(DemandModel demand) {
+            this.demand = demand;
+            return this;
         }
-
-        // if not, take elevator with lowest cost
-        chosenElevator = findElevatorWithLowestCost(this.elevators);
-        chosenElevator.addFloorLast(from);
-        chosenElevator.addFloorLast(to);
-        return chosenElevator.getID();
     }
 }
@@ -0,0 +1,204 @@
+package main.java.model;
+
+import lombok.Getter;
+
+/**
+ * Immutable state of specific elevator, published by the elevator after every change
+ * ElevatorManager plans assignments on snapshots without blocking the elevators;
+ * version lets it detect that the elevator changed before the assignment was committed
+ */
+public class ElevatorSnapshot {
+
+    @Getter
+    private final int ID;
+    @Getter
+    private final long version;
+    @Getter
+    private final int currentFloor;
+    @Getter
+    private final int nextFloor;
+    @Getter
+    private final boolean isMoving;
+    // floors that elevator will visit after nextFloor, in order; never modified after construction
+    private final IntRoute route;
+    @Getter
+    private final CarKinematics kinematics;
+    // passengers along the route; never modified after construction
+    private final CarLoad load;
+    // time until the elevator finishes its route, computed once per snapshot from the totals kept by the route
+    @Getter
+    private final long remainingMillis;
+    // built on first use and shared by all strategies planning on this snapshot
+    private SweepRoute sweeps;
+
+    public ElevatorSnapshot(int ID, long version, int currentFloor, int nextFloor, boolean isMoving, IntRoute route) {
+        this(ID, version, currentFloor, nextFloor, isMoving, route, CarKinematics.DEFAULT);
+    }
+
+    /**
+     * @param route copy of the route owned by the snapshot from now on
+     */
+    public ElevatorSnapshot(int ID, long version, int currentFloor, int nextFloor, boolean isMoving,
+                            IntRoute route, CarKinematics kinematics) {
+        this(ID, version, currentFloor, nextFloor, isMoving, route, kinematics,
+                new CarLoad(kinematics.getCapacity(), route.size(), isMoving));
+    }
+
+    /**
+     * @param load copy of the projected occupancy owned by the snapshot from now on
+     */
+    public ElevatorSnapshot(int ID, long version, int currentFloor, int nextFloor, boolean isMoving,
+                            IntRoute route, CarKinematics kinematics, CarLoad load) {
+        this.ID = ID;
+        this.version = version;
+        this.currentFloor = currentFloor;
+        this.nextFloor = nextFloor;
+        this.isMoving = isMoving;
+        this.route = route;
+        this.kinematics = kinematics;
+        this.load = load;
+        this.remainingMillis = isMoving
+                ? kinematics.rideMillis(nextFloor - currentFloor) + kinematics.getDwellMillis() + route.totalMillis(nextFloor, kinematics)
+                : route.totalMillis(currentFloor, kinematics);
+    }
+
+    public int getRouteLength() {
+        return route.size();
+    }
+
+    public int getRouteFloor(int index) {
+        return route.get(index);
+    }
+
+    public boolean hasEmptyRoute() {
+        return route.isEmpty();
+    }
+
+    public boolean willBeVisited(int floor) {
+        return this.nextFloor == floor || route.contains(floor);
+    }
+
+    public int totalDistance() {
+        return route.totalDistance(currentFloor);
+    }
+
+    public int getCapacity() {
+        return load.getCapacity();
+    }
+
+    /**
+     * @return passengers in the car now
+     */
+    public int getPassengers() {
+        return load.getPassengers();
+    }
+
+    /**
+     * @param index position in the route, or CarLoad.ORIGIN for the floor the elevator stands at or rides to
+     * @return passengers planned to be in the car when it leaves the stop
+     */
+    public int getPassengersLeaving(int index) {
+        return load.leaving(index);
+    }
+
+    /**
+     * @return passengers over the capacity anywhere along the route, see CarLoad#overflow
+     */
+    public int getOverflow() {
+        return load.overflow();
+    }
+
+    /**
+     * Checks the whole route after the assignment, in time linear in its length
+     * @param assignment floors planned for the call from 'from' to 'to', without the call itself
+     * @return false if the passenger would not fit in the car somewhere between the pickup and the drop-off
+     */
+    public boolean canTake(Assignment assignment, int from, int to) {
+        return withAssignment(assignment.withCall(from, to)).getOverflow() <= getOverflow();
+    }
+
+    /**
+     * @return route divided into sweeps in which every call is planned
+     */
+    public SweepRoute getSweeps() {
+        SweepRoute result = sweeps;
+        // SweepRoute is immutable, so at worst another thread builds its own copy
+        if (result == null) sweeps = result = new SweepRoute(this);
+        return result;
+    }
+
+    /**
+     * @return floor at which the elevator ends its route
+     */
+    public int getLastFloor() {
+        if (!route.isEmpty()) return route.get(route.size() - 1);
+        return isMoving ? nextFloor : currentFloor;
+    }
+
+    /**
+     * Cost of sending the elevator to the floor after everything it already has to do; constant time
+     * @return estimated milliseconds until the elevator stops at the floor appended to the end of its route
+     */
+    public long appendedEtaMillis(int floor) {
+        int last = getLastFloor();
+        // the elevator already stops there - remainingMillis ends with the stop at the last floor
+        if (last == floor && (isMoving || !route.isEmpty())) return remainingMillis - kinematics.getDwellMillis();
+        return remainingMillis + kinematics.rideMillis(floor - last);
+    }
+
+    /**
+     * Follows the route from the current floor; a moving elevator is assumed to have just left it
+     * @return estimated milliseconds until the elevator stops at the floor, 0 if it stands there, -1 if it does not go there
+     */
+    public long etaMillis(int floor) {
+        if (!isMoving && currentFloor == floor) return 0;
+        long time = 0;
+        int position = currentFloor;
+        if (isMoving) {
+            time += kinematics.rideMillis(nextFloor - position);
+            if (nextFloor == floor) return time;
+            position = nextFloor;
+            time += kinematics.getDwellMillis();
+        }
+        for (int i = 0; i < route.size(); i++) {
+            int stop = route.get(i);
+            time += kinematics.rideMillis(stop - position);
+            if (stop == floor) return time;
+            position = stop;
+            time += kinematics.getDwellMillis();
+        }
+        return -1;
+    }
+
+    /**
+     * Used to plan many assignments in one pass: later requests see the floors and passengers added by earlier ones
+     * @return state the elevator will have after committing the assignment; the version stays the same
+     */
+    public ElevatorSnapshot withAssignment(Assignment assignment) {
+        if (assignment.getElevatorID() != ID || assignment.getVersion() != version) {
+            throw new IllegalArgumentException("Assignment was planned on other snapshot");
+        }
+        int[] floors = assignment.getFloors();
+        if (floors.length == 0 && assignment.getCallCount() == 0) return this;
+
+        IntRoute newRoute = route.copy();
+        CarLoad newLoad = load.copy();
+        int newNextFloor = nextFloor;
+        for (int i = 0; i < floors.length; i++) {
+            int index = assignment.getIndices()[i];
+            // the same rule as in Elevator - standing elevator heads to the floor inserted at the front
+            if (index == 0 && !isMoving) newNextFloor = floors[i];
+            newRoute.add(index, floors[i]);
+            newLoad.stopAdded(index);
+        }
+        for (int call = 0; call < assignment.getCallCount(); call++) {
+            newLoad.passengerAdded(assignment.getCallFrom()[call], assignment.getCallTo()[call], newRoute,
+                    isMoving ? nextFloor : currentFloor);
+        }
+        return new ElevatorSnapshot(ID, version, currentFloor, newNextFloor, isMoving, newRoute, kinematics, newLoad);
+    }
+
+    public ElevatorStatus toStatus() {
+        return new ElevatorStatus(ID, currentFloor, nextFloor, isMoving);
+    }
+}
@@ -0,0 +1,141 @@
+package main.java.model;
+
+import lombok.NonNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * JMX view of PassengerTracker and elevator snapshots of one ElevatorManager
+ * Every attribute is computed when it is read, so the MBean costs nothing until someone polls it
+ */
+public class ElevatorSystemMetrics implements ElevatorSystemMetricsMBean {
+
+    public static final String OBJECT_NAME = "main.java:type=ElevatorSystemMetrics";
+
+    private final ElevatorManager manager;
+    private final PassengerTracker tracker;
+
+    public ElevatorSystemMetrics(@NonNull ElevatorManager manager) {
+        this.manager = manager;
+        this.tracker = manager.getPassengerTracker();
+    }
+
+    /**
+     * Registers the metrics of the manager in the platform MBean server under OBJECT_NAME
+     */
+    public static void register(@NonNull ElevatorManager manager) throws JMException {
+        register(manager, 0);
+    }
+
+    /**
+     * Metrics of the first building keep OBJECT_NAME, the others get it with the key "building"
+     */
+    public static void register(@NonNull ElevatorManager manager, int building) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String name = building == 0 ? OBJECT_NAME : OBJECT_NAME + ",building=" + building;
+        server.registerMBean(new ElevatorSystemMetrics(manager), new ObjectName(name));
+    }
+
+    @Override
+    public long getAcceptedCalls() {
+        return tracker.getAcceptedCalls();
+    }
+
+    @Override
+    public long getDeliveredPassengers() {
+        return tracker.getDeliveredPassengers();
+    }
+
+    @Override
+    public long getPassengersInFlight() {
+        return tracker.getPassengersInFlight();
+    }
+
+    @Override
+    public long getCoalescedCalls() {
+        return manager.getCoalescedCalls();
+    }
+
+    @Override
+    public double getWaitTimeP50() {
+        return tracker.getWaitTime().getPercentileMillis(50);
+    }
+
+    @Override
+    public double getWaitTimeP99() {
+        return tracker.getWaitTime().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getWaitTimeP999() {
+        return tracker.getWaitTime().getPercentileMillis(99.9);
+    }
+
+    @Override
+    public double getWaitTimeMax() {
+        return tracker.getWaitTime().getMaxMillis();
+    }
+
+    @Override
+    public double getJourneyTimeP50() {
+        return tracker.getJourneyTime().getPercentileMillis(50);
+    }
+
+    @Override
+    public double getJourneyTimeP99() {
+        return tracker.getJourneyTime().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getJourneyTimeP999() {
+        return tracker.getJourneyTime().getPercentileMillis(99.9);
+    }
+
+    @Override
+    public double getJourneyTimeMax() {
+        return tracker.getJourneyTime().getMaxMillis();
+    }
+
+    @Override
+    public double getDispatchLatencyP50() {
+        return tracker.getDispatchLatency().getPercentileMillis(50);
+    }
+
+    @Override
+    public double getDispatchLatencyP99() {
+        return tracker.getDispatchLatency().getPercentileMillis(99);
+    }
+
+    @Override
+    public double getDispatchLatencyP999() {
+        return tracker.getDispatchLatency().getPercentileMillis(99.9);
+    }
+
+    @Override
+    public double getDispatchLatencyMax() {
+        return tracker.getDispatchLatency().getMaxMillis();
+    }
+
+    @Override
+    public double[] getUtilization() {
+        double[] utilization = new double[manager.currentSnapshots().size()];
+        for (int id = 0; id < utilization.length; id++) {
+            utilization[id] = tracker.getUtilization(id);
+        }
+        return utilization;
+    }
+
+    @Override
+    public int[] getQueueDepth() {
+        List<ElevatorSnapshot> snapshots = manager.currentSnapshots();
+        int[] depth = new int[snapshots.size()];
+        for (int id = 0; id < depth.length; id++) {
+            depth[id] = snapshots.get(id).getRouteLength();
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,44 @@
+package main.java.model;
+
+/**
+ * Metrics of the elevator system exposed over JMX (e.g. to jconsole or a JMX exporter)
+ * Times are in milliseconds; arrays are indexed by the IDs of elevators
+ */
+public interface ElevatorSystemMetricsMBean {
+
+    long getAcceptedCalls();
+
+    long getDeliveredPassengers();
+
+    long getPassengersInFlight();
+
+    long getCoalescedCalls();
+
+    double getWaitTimeP50();
+
+    double getWaitTimeP99();
+
+    double getWaitTimeP999();
+
+    double getWaitTimeMax();
+
+    double getJourneyTimeP50();
+
+    double getJourneyTimeP99();
+
+    double getJourneyTimeP999();
+
+    double getJourneyTimeMax();
+
+    double getDispatchLatencyP50();
+
+    double getDispatchLatencyP99();
+
+    double getDispatchLatencyP999();
+
+    double getDispatchLatencyMax();
+
+    double[] getUtilization();
+
+    int[] getQueueDepth();
+}
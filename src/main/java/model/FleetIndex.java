@@ -0,0 +1,202 @@
+package main.java.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Indexes of a FleetSnapshot used by dispatch strategies instead of looking at every elevator:
+ * elevators standing at every floor, idle ones (standing with empty route) and those that ride through every floor
+ * in the direction of a call (see SweepRoute#passes)
+ *
+ * Every index is a set of elevator IDs per floor, kept as bits in long words (null if the set is empty), so the
+ * searches read a few words and never allocate. Like the snapshot, the index is immutable: the copy for the next
+ * version shares the sets of all floors except the ones where the changed elevator entered or left, and the arrays
+ * of the sets themselves if none of their floors changed; only the floors the elevator could pass before or after
+ * the change are looked at
+ */
+public final class FleetIndex {
+
+    private static final long[][] NO_FLOORS = new long[0][];
+
+    private final int words;
+    // all indexed by floor; floors above the last one are known to have no standing elevators
+    private final long[][] standing;
+    private final long[][] idle;
+    private final long[][] passingUp;
+    private final long[][] passingDown;
+    // elevators that turn back down later in their route, so they pass down through every floor above the indexed ones
+    private final long[] descendingAbove;
+    // the fastest elevator of the fleet needs that much time per floor, so no elevator gets farther sooner
+    @Getter
+    private final int minFloorMillis;
+
+    private FleetIndex(int words, long[][] standing, long[][] idle, long[][] passingUp, long[][] passingDown,
+                       long[] descendingAbove, int minFloorMillis) {
+        this.words = words;
+        this.standing = standing;
+        this.idle = idle;
+        this.passingUp = passingUp;
+        this.passingDown = passingDown;
+        this.descendingAbove = descendingAbove;
+        this.minFloorMillis = minFloorMillis;
+    }
+
+    /**
+     * @param elevators snapshots indexed by ID; null for elevators that have not published any yet
+     */
+    static FleetIndex of(@NonNull ElevatorSnapshot[] elevators) {
+        FleetIndex index = new FleetIndex((elevators.length + 63) >>> 6, NO_FLOORS, NO_FLOORS, NO_FLOORS, NO_FLOORS,
+                null, Integer.MAX_VALUE);
+        for (ElevatorSnapshot elevator: elevators) {
+            if (elevator != null) index = index.with(null, elevator);
+        }
+        return index;
+    }
+
+    /**
+     * @return number of indexed floors; there are no standing elevators above them
+     */
+    public int getFloors() {
+        return standing.length;
+    }
+
+    /**
+     * @return the lowest ID not smaller than 'elevatorID' of an elevator standing at the floor, or -1 if there is none
+     */
+    public int nextStanding(int floor, int elevatorID) {
+        return floor < standing.length ? next(standing[floor], elevatorID) : -1;
+    }
+
+    /**
+     * @return the lowest ID not smaller than 'elevatorID' of an idle elevator at the floor, or -1 if there is none
+     */
+    public int nextIdle(int floor, int elevatorID) {
+        return floor < idle.length ? next(idle[floor], elevatorID) : -1;
+    }
+
+    /**
+     * @param direction 1 for calls up, -1 for calls down
+     * @return the lowest ID not smaller than 'elevatorID' of an elevator that passes the floor in given direction,
+     * or -1 if there is none
+     */
+    public int nextPassing(int floor, int direction, int elevatorID) {
+        long[][] passing = direction > 0 ? passingUp : passingDown;
+        if (floor < passing.length) return next(passing[floor], elevatorID);
+        return direction > 0 ? -1 : next(descendingAbove, elevatorID);
+    }
+
+    /**
+     * @param previous snapshot replaced by 'updated', or null if the elevator is indexed for the first time
+     * @return copy of the index in which the elevator is at the place described by 'updated'
+     */
+    FleetIndex with(ElevatorSnapshot previous, @NonNull ElevatorSnapshot updated) {
+        int id = updated.getID();
+        int floors = Math.max(standing.length, highestFloor(updated) + 1);
+        long[][] newStanding = resize(standing, floors, null);
+        long[][] newIdle = resize(idle, floors, null);
+        long[][] newPassingUp = resize(passingUp, floors, null);
+        // nothing was indexed above - only elevators turning back down later pass there
+        long[][] newPassingDown = resize(passingDown, floors, descendingAbove);
+
+        int wasStanding = previous != null && !previous.isMoving() ? previous.getCurrentFloor() : -1;
+        boolean wasIdle = wasStanding >= 0 && previous.hasEmptyRoute();
+        int isStanding = updated.isMoving() ? -1 : updated.getCurrentFloor();
+        boolean isIdle = isStanding >= 0 && updated.hasEmptyRoute();
+        if (wasStanding != isStanding) {
+            if (wasStanding >= 0) newStanding = withBit(newStanding, standing, wasStanding, id, false);
+            if (isStanding >= 0) newStanding = withBit(newStanding, standing, isStanding, id, true);
+        }
+        if (wasStanding != isStanding || wasIdle != isIdle) {
+            if (wasIdle) newIdle = withBit(newIdle, idle, wasStanding, id, false);
+            if (isIdle) newIdle = withBit(newIdle, idle, isStanding, id, true);
+        }
+
+        SweepRoute sweeps = updated.getSweeps();
+        SweepRoute previousSweeps = previous != null ? previous.getSweeps() : null;
+        newPassingUp = withPassing(newPassingUp, passingUp, id, sweeps, previousSweeps, 1);
+        newPassingDown = withPassing(newPassingDown, passingDown, id, sweeps, previousSweeps, -1);
+        return new FleetIndex(words, newStanding, newIdle, newPassingUp, newPassingDown,
+                withBit(descendingAbove, id, sweeps.turnsBackDown()),
+                Math.min(minFloorMillis, updated.getKinematics().getFloorMillis()));
+    }
+
+    /**
+     * The sets already say where the previous snapshot passed, so only the floors that either of the snapshots
+     * may pass are computed again
+     * @param original sets of this index, shared with 'sets' until one of them changes
+     */
+    private long[][] withPassing(long[][] sets, long[][] original, int id, SweepRoute sweeps, SweepRoute previous,
+                                 int direction) {
+        int low = sweeps.lowestPassed(direction);
+        int high = sweeps.highestPassed(direction);
+        if (previous != null) {
+            low = Math.min(low, previous.lowestPassed(direction));
+            high = Math.max(high, previous.highestPassed(direction));
+        }
+        for (int floor = Math.max(low, 0); floor <= Math.min(high, sets.length - 1); floor++) {
+            sets = withBit(sets, original, floor, id, sweeps.passes(floor, floor + direction));
+        }
+        return sets;
+    }
+
+    private static int highestFloor(ElevatorSnapshot elevator) {
+        int highest = Math.max(elevator.getCurrentFloor(), elevator.getNextFloor());
+        for (int i = 0; i < elevator.getRouteLength(); i++) {
+            highest = Math.max(highest, elevator.getRouteFloor(i));
+        }
+        return highest;
+    }
+
+    /**
+     * @return 'sets' if it already covers the floors, otherwise its copy in which the floors added above are 'fill'
+     */
+    private static long[][] resize(long[][] sets, int floors, long[] fill) {
+        if (sets.length == floors) return sets;
+        long[][] resized = new long[floors][];
+        System.arraycopy(sets, 0, resized, 0, sets.length);
+        if (fill != null) Arrays.fill(resized, sets.length, floors, fill);
+        return resized;
+    }
+
+    /**
+     * @param original sets of this index; they are copied before the first change, other sets are changed in place
+     * @return sets in which the set of the floor has the bit of the elevator changed
+     */
+    private long[][] withBit(long[][] sets, long[][] original, int floor, int id, boolean value) {
+        long[] changed = withBit(sets[floor], id, value);
+        if (changed == sets[floor]) return sets;
+        if (sets == original) sets = original.clone();
+        sets[floor] = changed;
+        return sets;
+    }
+
+    /**
+     * @return 'set' if the bit already has given value, otherwise its copy with the bit changed (null if empty)
+     */
+    private long[] withBit(long[] set, int id, boolean value) {
+        int word = id >>> 6;
+        long mask = 1L << id;
+        if (((set != null && (set[word] & mask) != 0)) == value) return set;
+
+        long[] changed = set != null ? set.clone() : new long[words];
+        changed[word] ^= mask;
+        for (long bits: changed) {
+            if (bits != 0) return changed;
+        }
+        return null;
+    }
+
+    private static int next(long[] set, int elevatorID) {
+        if (set == null || elevatorID < 0) return -1;
+        int word = elevatorID >>> 6;
+        if (word >= set.length) return -1;
+        long bits = set[word] & (-1L << elevatorID);
+        while (bits == 0) {
+            if (++word == set.length) return -1;
+            bits = set[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,105 @@
+package main.java.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable state of all elevators at one moment, assembled by FleetStatus for every version it is read at
+ * Readers get a consistent view of the whole fleet without locking anything and without allocating;
+ * FleetIndex of the same version lets them find elevators by floor without looking at every elevator
+ */
+public final class FleetSnapshot {
+
+    // number of changes of all elevators published before this snapshot
+    @Getter
+    private final long version;
+    // indexed by ID; never modified after construction
+    private final ElevatorSnapshot[] elevators;
+    private final List<ElevatorSnapshot> view;
+    @Getter
+    private final FleetIndex index;
+
+    FleetSnapshot(long version, ElevatorSnapshot[] elevators) {
+        this(version, elevators, FleetIndex.of(elevators));
+    }
+
+    private FleetSnapshot(long version, ElevatorSnapshot[] elevators, FleetIndex index) {
+        this.version = version;
+        this.elevators = elevators;
+        this.view = Collections.unmodifiableList(Arrays.asList(elevators));
+        this.index = index;
+    }
+
+    /**
+     * Fleet made of given snapshots, e.g. planned ones; elevators missing from the list are null
+     * @param elevators snapshots of elevators in any order
+     */
+    public static FleetSnapshot of(@NonNull List<ElevatorSnapshot> elevators) {
+        int size = 0;
+        for (ElevatorSnapshot elevator: elevators) {
+            size = Math.max(size, elevator.getID() + 1);
+        }
+        ElevatorSnapshot[] byID = new ElevatorSnapshot[size];
+        for (ElevatorSnapshot elevator: elevators) {
+            byID[elevator.getID()] = elevator;
+        }
+        return new FleetSnapshot(0, byID);
+    }
+
+    public int size() {
+        return elevators.length;
+    }
+
+    public ElevatorSnapshot get(int elevatorID) {
+        return elevators[elevatorID];
+    }
+
+    /**
+     * @return snapshots of all elevators, indexed by ID; the same list on every call
+     */
+    public List<ElevatorSnapshot> asList() {
+        return view;
+    }
+
+    /**
+     * @return copy with the snapshot of one elevator replaced (published or planned one) and the next version
+     */
+    public FleetSnapshot with(@NonNull ElevatorSnapshot elevator) {
+        ElevatorSnapshot[] changed = elevators.clone();
+        changed[elevator.getID()] = elevator;
+        return new FleetSnapshot(version + 1, changed, index.with(elevators[elevator.getID()], elevator));
+    }
+
+    /**
+     * @param elevators snapshots of the same fleet at a later version, indexed by ID
+     * @return snapshot of the later version; the index is updated only for the elevators that changed
+     */
+    FleetSnapshot advance(long version, @NonNull ElevatorSnapshot[] elevators) {
+        FleetIndex advanced = index;
+        for (int id = 0; id < elevators.length; id++) {
+            if (elevators[id] != this.elevators[id] && elevators[id] != null) {
+                advanced = advanced.with(this.elevators[id], elevators[id]);
+            }
+        }
+        return new FleetSnapshot(version, elevators, advanced);
+    }
+
+    /**
+     * Delta for a change feed: elevators that changed between two snapshots of the same fleet
+     * @param previous older snapshot, or null to get all elevators
+     * @return IDs of the elevators whose state is different in this snapshot
+     */
+    public int[] changedSince(FleetSnapshot previous) {
+        if (previous == null) return Arrays.stream(elevators).mapToInt(ElevatorSnapshot::getID).toArray();
+        int count = 0;
+        int[] changed = new int[elevators.length];
+        for (int id = 0; id < elevators.length; id++) {
+            if (previous.elevators[id] != elevators[id]) changed[count++] = id;
+        }
+        return Arrays.copyOf(changed, count);
+    }
+}
@@ -0,0 +1,172 @@
+package main.java.model;
+
+import lombok.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Current FleetSnapshot of an ElevatorManager
+ * Every elevator publishes its new snapshot into its own slot (under its own lock), so publishing never copies
+ * the fleet nor retries because another elevator changed at the same time. Readers assemble the FleetSnapshot
+ * from the slots, once per version: the first reader that sees a new version copies the slots and updates the index
+ * of the elevators that changed, the others take the assembled snapshot
+ *
+ * Assembly is a seqlock on two counters: a publish increments 'started' before writing its slot and 'published'
+ * after it, so a copy made while no publish started since 'published' was read is the state of the fleet at that
+ * version. Under constant publishing a reader gives up after a few attempts and takes a copy in which every
+ * elevator is consistent on its own, some of them possibly newer than the version; elevators never go back
+ * from one assembled snapshot to the next (see newest)
+ *
+ * Change feed: subscribers wait for a version newer than the one they saw and compute the delta
+ * with FleetSnapshot.changedSince; changes made while they were busy are coalesced into one delta
+ */
+public class FleetStatus {
+
+    private static final int ASSEMBLY_ATTEMPTS = 4;
+
+    private final AtomicReferenceArray<ElevatorSnapshot> elevators;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    // the latest snapshot assembled by any reader
+    private final AtomicReference<FleetSnapshot> assembled;
+
+    // only publishers that see waiting subscribers touch the lock, so publishing stays lock-free without them
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition newVersion = lock.newCondition();
+    private volatile int waiting = 0;
+
+    public FleetStatus(int numberOfElevators) {
+        this.elevators = new AtomicReferenceArray<>(numberOfElevators);
+        this.assembled = new AtomicReference<>(new FleetSnapshot(0, new ElevatorSnapshot[numberOfElevators]));
+    }
+
+    public FleetSnapshot current() {
+        FleetSnapshot last = assembled.get();
+        for (int attempt = 1; ; attempt++) {
+            long version = published.get();
+            if (last.getVersion() >= version) return last;
+            ElevatorSnapshot[] copy = new ElevatorSnapshot[elevators.length()];
+            for (int id = 0; id < copy.length; id++) {
+                copy[id] = elevators.get(id);
+            }
+            if (started.get() == version || attempt == ASSEMBLY_ATTEMPTS) {
+                while (true) {
+                    FleetSnapshot fleet = last.advance(version, newest(last, copy));
+                    if (assembled.compareAndSet(last, fleet)) return fleet;
+                    // a reader that assembled a newer version meanwhile wins
+                    last = assembled.get();
+                    if (last.getVersion() >= version) return last;
+                }
+            }
+            last = assembled.get();
+        }
+    }
+
+    /**
+     * A mixed copy may hold an elevator newer than the version it is assembled at, and a later clean copy
+     * may then hold that elevator older than the assembled snapshot; the newer one is kept, so no elevator
+     * ever goes back in the snapshots returned by current()
+     * @return the copy, with every elevator older than in 'last' replaced by the one from 'last'
+     */
+    private static ElevatorSnapshot[] newest(FleetSnapshot last, ElevatorSnapshot[] copy) {
+        for (int id = 0; id < copy.length; id++) {
+            ElevatorSnapshot previous = last.get(id);
+            if (previous != null && (copy[id] == null || copy[id].getVersion() < previous.getVersion())) {
+                copy[id] = previous;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Called by the elevator after every change of its state; changes of one elevator must be published in order
+     */
+    public void publish(@NonNull ElevatorSnapshot elevator) {
+        started.incrementAndGet();
+        elevators.set(elevator.getID(), elevator);
+        published.incrementAndGet();
+
+        if (waiting > 0) {
+            try {
+                lock.lock();
+                newVersion.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param seen snapshot the caller already knows
+     * @return current snapshot once it is newer than 'seen', or the current one (possibly 'seen') after the timeout
+     */
+    public FleetSnapshot awaitNewer(@NonNull FleetSnapshot seen, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        try {
+            lock.lock();
+            waiting++;
+            while (published.get() == seen.getVersion() && nanos > 0) {
+                nanos = newVersion.awaitNanos(nanos);
+            }
+            return current();
+        } finally {
+            waiting--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Observer of the change feed
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param previous snapshot passed to the previous call, null in the first call
+         */
+        void changed(FleetSnapshot previous, FleetSnapshot current);
+    }
+
+    /**
+     * Streams changes to the listener from a separate daemon thread, so a slow listener never delays elevators;
+     * the first call delivers the current state
+     * @return subscription to close when the listener is no longer interested
+     */
+    public Subscription subscribe(@NonNull Listener listener) {
+        Subscription subscription = new Subscription(listener);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public class Subscription implements AutoCloseable {
+
+        private final Thread thread;
+        private volatile boolean open = true;
+
+        private Subscription(Listener listener) {
+            this.thread = new Thread(() -> {
+                FleetSnapshot previous = null;
+                try {
+                    while (open) {
+                        FleetSnapshot fleet = previous == null ? current() : awaitNewer(previous, 1, TimeUnit.SECONDS);
+                        if (fleet != previous) {
+                            listener.changed(previous, fleet);
+                            previous = fleet;
+                        }
+                    }
+                } catch (InterruptedException ignored) {}
+            }, "Fleet subscription");
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void close() {
+            open = false;
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package main.java.model;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.simulation.ElevatorScheduler;
+import main.java.threads.Elevator;
+
+/**
+ * Sends elevators that stand idle to the floors from which DemandModel expects calls soon,
+ * so the next passenger there does not wait for a car to come from wherever it finished its last ride
+ *
+ * An elevator that arrives with an empty route is parked IDLE_MILLIS later, if it got no work in the meantime:
+ * it rides to the floor with the most calls expected in the current and the next slot among the floors where
+ * no other elevator ends its route, if that floor stands out of the building (see PEAK_FACTOR).
+ * It stays where it is if no such floor beats its own, so a parked elevator
+ * is not moved again until it serves a call. Parking is an ordinary assignment without passengers,
+ * so dispatching treats the car as any other one on its way and can take it over at once
+ */
+final class IdleParking {
+
+    // time an elevator must stand idle before it is parked elsewhere
+    static final long IDLE_MILLIS = 10_000;
+    // a floor is worth the ride only if it expects that many times more calls than an average floor
+    static final double PEAK_FACTOR = 3;
+
+    private final DemandModel demand;
+    private final ElevatorScheduler scheduler;
+    private final FleetStatus fleetStatus;
+    private final EventLog events;
+
+    IdleParking(@NonNull DemandModel demand, @NonNull ElevatorScheduler scheduler, @NonNull FleetStatus fleetStatus,
+                @NonNull EventLog events) {
+        this.demand = demand;
+        this.scheduler = scheduler;
+        this.fleetStatus = fleetStatus;
+        this.events = events;
+    }
+
+    /**
+     * Called by the elevator after an arrival that emptied its route
+     */
+    void elevatorIdle(Elevator elevator) {
+        long version = elevator.getSnapshot().getVersion();
+        scheduler.schedule(scheduler.now() + IDLE_MILLIS, () -> park(elevator, version));
+    }
+
+    private void park(Elevator elevator, long idleVersion) {
+        ElevatorSnapshot car = elevator.getSnapshot();
+        // the elevator got a passenger (or another parking) in the meantime
+        if (car.getVersion() != idleVersion || !car.hasEmptyRoute() || car.isMoving()) return;
+
+        int floor = chooseFloor(car, fleetStatus.current(), scheduler.now());
+        if (floor == car.getCurrentFloor()) return;
+        // if the elevator is being assigned a call right now, the call wins
+        if (elevator.commit(Assignment.insert(car, 0, floor), () -> {})) {
+            scheduler.floorAdded(elevator);
+            events.parked(car.getID(), car.getCurrentFloor(), floor);
+        }
+    }
+
+    /**
+     * @return floor with the most calls expected soon that no other elevator covers, or the current floor of the car
+     *         if that floor has no more of them or if the demand is spread evenly
+     */
+    private int chooseFloor(ElevatorSnapshot car, FleetSnapshot fleet, long now) {
+        int floors = demand.getFloors();
+        boolean[] covered = new boolean[floors];
+        for (ElevatorSnapshot other: fleet.asList()) {
+            if (other == null || other.getID() == car.getID()) continue;
+            int last = other.getLastFloor();
+            if (last >= 0 && last < floors) covered[last] = true;
+        }
+
+        int current = car.getCurrentFloor();
+        double total = 0, currentDemand = 0;
+        int best = current;
+        double bestDemand = 0;
+        for (int floor = 0; floor < floors; floor++) {
+            double expected = demand.expectedCallsSoon(floor, now);
+            total += expected;
+            if (floor == current && !covered[floor]) currentDemand = expected;
+            // on a tie the nearer floor wins
+            if (!covered[floor] && (expected > bestDemand
+                    || expected == bestDemand && Math.abs(floor - current) < Math.abs(best - current))) {
+                best = floor;
+                bestDemand = expected;
+            }
+        }
+        // with demand spread evenly any floor is as good as the one the car is at, so it saves the ride
+        if (bestDemand <= currentDemand || bestDemand < PEAK_FACTOR * total / floors) return current;
+        return best;
+    }
+}
@@ -0,0 +1,167 @@
+package main.java.model;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Route of an elevator: sequence of floors kept in a ring buffer of primitive ints
+ * Besides the floors it keeps the length of the path between them, the number of rides in it
+ * and the number of visits of every floor, so total distance, total time and checking whether a floor
+ * will be visited take constant time
+ *
+ * Not thread-safe: Elevator modifies its route under its lock and publishes copies in snapshots
+ */
+public class IntRoute {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // capacity is always a power of two, so positions wrap with a mask
+    private int[] floors;
+    private int head = 0;
+    private int size = 0;
+    // sum of distances between consecutive floors of the route
+    private int pathLength = 0;
+    // number of consecutive floors of the route that differ, i.e. rides with acceleration and braking
+    private int rides = 0;
+    // visits[floor] - how many times the floor occurs in the route
+    private int[] visits;
+
+    public IntRoute() {
+        this.floors = new int[INITIAL_CAPACITY];
+        this.visits = new int[0];
+    }
+
+    private IntRoute(int[] floors, int size, int pathLength, int rides, int[] visits) {
+        this.floors = floors;
+        this.size = size;
+        this.pathLength = pathLength;
+        this.rides = rides;
+        this.visits = visits;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of route of length " + size);
+        return floors[(head + index) & (floors.length - 1)];
+    }
+
+    public boolean contains(int floor) {
+        return floor >= 0 && floor < visits.length && visits[floor] > 0;
+    }
+
+    /**
+     * @return length of the path that starts at given floor and visits all floors of the route
+     */
+    public int totalDistance(int startFloor) {
+        if (size == 0) return 0;
+        return Math.abs(get(0) - startFloor) + pathLength;
+    }
+
+    /**
+     * @return time of the path that starts at given floor and stops at all floors of the route
+     */
+    public long totalMillis(int startFloor, CarKinematics kinematics) {
+        if (size == 0) return 0;
+        int allRides = rides + (get(0) != startFloor ? 1 : 0);
+        return (long) totalDistance(startFloor) * kinematics.getFloorMillis()
+                + (long) allRides * kinematics.getStartStopMillis() + (long) size * kinematics.getDwellMillis();
+    }
+
+    /**
+     * @throws NoSuchElementException if the route is empty
+     */
+    public int peekFirst() {
+        if (size == 0) throw new NoSuchElementException("Route is empty");
+        return floors[head];
+    }
+
+    /**
+     * @throws NoSuchElementException if the route is empty
+     */
+    public int pollFirst() {
+        int floor = peekFirst();
+        if (size > 1) {
+            pathLength -= Math.abs(get(1) - floor);
+            if (get(1) != floor) rides--;
+        }
+        visits[floor]--;
+        head = (head + 1) & (floors.length - 1);
+        size--;
+        return floor;
+    }
+
+    public void add(int floor) {
+        add(size, floor);
+    }
+
+    /**
+     * Inserts the floor before the floor at given index; elements on the shorter side of the index are moved
+     */
+    public void add(int index, int floor) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index " + index + " out of route of length " + size);
+        if (floor < 0) throw new IllegalArgumentException("Floor ID cannot be negative");
+        if (size == floors.length) grow();
+
+        int mask = floors.length - 1;
+        if (index > 0) {
+            pathLength += Math.abs(floor - get(index - 1));
+            if (floor != get(index - 1)) rides++;
+        }
+        if (index < size) {
+            pathLength += Math.abs(get(index) - floor);
+            if (get(index) != floor) rides++;
+        }
+        if (index > 0 && index < size) {
+            pathLength -= Math.abs(get(index) - get(index - 1));
+            if (get(index) != get(index - 1)) rides--;
+        }
+
+        if (index < size / 2) {
+            head = (head - 1) & mask;
+            for (int i = 0; i < index; i++) {
+                floors[(head + i) & mask] = floors[(head + i + 1) & mask];
+            }
+        } else {
+            for (int i = size; i > index; i--) {
+                floors[(head + i) & mask] = floors[(head + i - 1) & mask];
+            }
+        }
+        floors[(head + index) & mask] = floor;
+        size++;
+
+        if (floor >= visits.length) {
+            int[] larger = new int[Math.max(floor + 1, 2 * visits.length)];
+            System.arraycopy(visits, 0, larger, 0, visits.length);
+            visits = larger;
+        }
+        visits[floor]++;
+    }
+
+    /**
+     * @return independent copy, e.g. for a snapshot
+     */
+    public IntRoute copy() {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < size) capacity <<= 1;
+        int[] copiedFloors = new int[capacity];
+        int firstPart = Math.min(size, floors.length - head);
+        System.arraycopy(floors, head, copiedFloors, 0, firstPart);
+        System.arraycopy(floors, 0, copiedFloors, firstPart, size - firstPart);
+        return new IntRoute(copiedFloors, size, pathLength, rides, visits.clone());
+    }
+
+    private void grow() {
+        int[] larger = new int[floors.length * 2];
+        int firstPart = floors.length - head;
+        System.arraycopy(floors, head, larger, 0, firstPart);
+        System.arraycopy(floors, 0, larger, firstPart, head);
+        floors = larger;
+        head = 0;
+    }
+}
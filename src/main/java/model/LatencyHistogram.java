@@ -0,0 +1,88 @@
+package main.java.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies with constant relative precision (like HdrHistogram)
+ * Values below 128 ns have their own buckets; above that every power of two is split into 64 buckets,
+ * so a percentile is off by less than 1/64 of its value, while recording is a few array operations
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // enough for any non-negative long
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        totalNanos.addAndGet(nanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @return average of the recorded values in milliseconds, 0 if there are none
+     */
+    public double getMeanMillis() {
+        long count = getCount();
+        return count > 0 ? totalNanos.get() / 1e6 / count : 0;
+    }
+
+    /**
+     * @param percentile e.g. 99.9
+     * @return latency (in milliseconds) not exceeded by the given percent of recorded values, 0 if there are none
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValue(i), maxNanos.get()) / 1e6;
+        }
+        return getMaxMillis();
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        // shift leaves the 7 most significant bits, i.e. a value in [64, 128)
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (nanos >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long mantissa = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d samples, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms", getCount(),
+                getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(99.9), getMaxMillis());
+    }
+}
@@ -0,0 +1,45 @@
+package main.java.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe accumulator of latencies (count, average and maximum)
+ * Used e.g. to measure how long an idle elevator needs to start moving after receiving a request
+ */
+public class LatencyMetric {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyMetric(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getAverageMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d samples, average %.3f ms, max %.3f ms",
+                name, getCount(), getAverageMillis(), getMaxMillis());
+    }
+}
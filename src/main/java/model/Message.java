@@ -2,46 +2,165 @@ package main.java.model;
 
 import lombok.NonNull;
 
-import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-public class Message implements Serializable {
-    public final String type;
-    public final int number;
-    public final String text;
-
-    public Message(@NonNull String type, int number) {
-        if (!numberArgMessages.contains(type))
-            throw new IllegalArgumentException("Unrecognized number-arg command: " + type);
-        this.type = type;
-        this.number = number;
-        this.text = "";
+import java.util.List;
+
+/**
+ * Message exchanged between FloorClient and Server
+ * Only fields relevant to the type of the message are set; the others are -1 (or null)
+ */
+public class Message {
+
+    // largest number of messages in PICKUP_BATCH or RESULT_BATCH; a full batch still fits in one frame
+    public static final int MAX_BATCH_SIZE = 128;
+
+    public final MessageType type;
+    // HELLO: lowest version supported by the client; WELCOME: negotiated version
+    public final int version;
+    // HELLO: highest version supported by the client
+    public final int maxVersion;
+    // HELLO: floor of the client or -1 if server should choose it; WELCOME: ID of the client, i.e. its floor;
+    // PICKUP, ASSIGNMENT, REFUSED: requested floor
+    public final int floor;
+    // ASSIGNMENT: elevator that will take the passenger to the floor; SUBSCRIBE, UNSUBSCRIBE, POSITION: elevator
+    public final int elevator;
+    // REJECTED, REFUSED
+    public final Reason reason;
+    // PICKUP: ID chosen by the client, or -1; ASSIGNMENT, REFUSED: ID of the pickup they answer
+    public final int correlation;
+    // PICKUP_BATCH: PICKUPs; RESULT_BATCH: ASSIGNMENTs and REFUSEDs, in the order of the pickups
+    public final List<Message> entries;
+    // POSITION: floor the elevator heads to (its current floor if it has nowhere to go)
+    public final int nextFloor;
+    // POSITION: whether the elevator is between floors
+    public final boolean moving;
+    // POSITION: estimated milliseconds until the elevator stops at the floor of the client, -1 if it is not going there
+    public final int eta;
+    // HELLO: building in which the client works; 0 is the first (or the only) building of the server
+    public final int building;
+
+    private Message(@NonNull MessageType type, int version, int maxVersion, int floor, int elevator, Reason reason) {
+        this(type, version, maxVersion, floor, elevator, reason, -1, null);
     }
 
-    public Message(@NonNull String type, String message) {
-        if (!stringArgMessages.contains(type))
-            throw new IllegalArgumentException("Unrecognized string-arg command: " + type);
-        this.type = type;
-        this.number = -1;
-        this.text = message;
+    private Message(@NonNull MessageType type, int version, int maxVersion, int floor, int elevator, Reason reason,
+                    int correlation, List<Message> entries) {
+        this(type, version, maxVersion, floor, elevator, reason, correlation, entries, -1, false, -1, 0);
     }
 
-    public Message(@NonNull String type) {
-        if (!noArgMessages.contains(type))
-            throw new IllegalArgumentException("Unrecognized no-arg command: " + type);
+    private Message(@NonNull MessageType type, int version, int maxVersion, int floor, int elevator, Reason reason,
+                    int correlation, List<Message> entries, int nextFloor, boolean moving, int eta, int building) {
         this.type = type;
-        this.number = -1;
-        this.text = "";
+        this.version = version;
+        this.maxVersion = maxVersion;
+        this.floor = floor;
+        this.elevator = elevator;
+        this.reason = reason;
+        this.correlation = correlation;
+        this.entries = entries;
+        this.nextFloor = nextFloor;
+        this.moving = moving;
+        this.eta = eta;
+        this.building = building;
     }
 
-    private static final Set<String> noArgMessages = Stream.of("exit")
-            .collect(Collectors.toCollection(HashSet::new));
-    private static final Set<String> stringArgMessages = Stream.of("result")
-            .collect(Collectors.toCollection(HashSet::new));
-    private static final Set<String> numberArgMessages = Stream.of("pickup", "ID")
-            .collect(Collectors.toCollection(HashSet::new));
+    public static Message hello(int minVersion, int maxVersion) {
+        return hello(minVersion, maxVersion, -1);
+    }
+
+    /**
+     * @param floor floor on which the client works, so many clients can share one floor; -1 if server should choose it
+     */
+    public static Message hello(int minVersion, int maxVersion, int floor) {
+        return hello(minVersion, maxVersion, floor, 0);
+    }
+
+    /**
+     * @param building building of the client, for servers that host many of them
+     */
+    public static Message hello(int minVersion, int maxVersion, int floor, int building) {
+        if (minVersion > maxVersion) throw new IllegalArgumentException("Empty range of versions");
+        if (building < 0) throw new IllegalArgumentException("Building ID cannot be negative");
+        return new Message(MessageType.HELLO, minVersion, maxVersion, floor, -1, null, -1, null, -1, false, -1, building);
+    }
+
+    public static Message welcome(int version, int floor) {
+        return new Message(MessageType.WELCOME, version, -1, floor, -1, null);
+    }
+
+    public static Message rejected(@NonNull Reason reason) {
+        return new Message(MessageType.REJECTED, -1, -1, -1, -1, reason);
+    }
+
+    public static Message pickup(int floor) {
+        return pickup(floor, -1);
+    }
+
+    /**
+     * @param correlation ID that the answer will carry, so the client can send many pickups without waiting; -1 if not needed
+     */
+    public static Message pickup(int floor, int correlation) {
+        if (floor < 0) throw new IllegalArgumentException("Floor ID cannot be negative");
+        return new Message(MessageType.PICKUP, -1, -1, floor, -1, null, correlation, null);
+    }
+
+    public static Message assignment(int floor, int elevator) {
+        return assignment(floor, elevator, -1);
+    }
+
+    public static Message assignment(int floor, int elevator, int correlation) {
+        return new Message(MessageType.ASSIGNMENT, -1, -1, floor, elevator, null, correlation, null);
+    }
+
+    public static Message refused(int floor, @NonNull Reason reason) {
+        return refused(floor, reason, -1);
+    }
+
+    public static Message refused(int floor, @NonNull Reason reason, int correlation) {
+        return new Message(MessageType.REFUSED, -1, -1, floor, -1, reason, correlation, null);
+    }
+
+    public static Message pickupBatch(@NonNull List<Message> pickups) {
+        for (Message pickup: pickups) {
+            if (pickup.type != MessageType.PICKUP) throw new IllegalArgumentException("Batch of pickups cannot contain " + pickup.type);
+        }
+        return batch(MessageType.PICKUP_BATCH, pickups);
+    }
+
+    public static Message resultBatch(@NonNull List<Message> results) {
+        for (Message result: results) {
+            if (result.type != MessageType.ASSIGNMENT && result.type != MessageType.REFUSED) {
+                throw new IllegalArgumentException("Batch of results cannot contain " + result.type);
+            }
+        }
+        return batch(MessageType.RESULT_BATCH, results);
+    }
+
+    private static Message batch(MessageType type, List<Message> entries) {
+        if (entries.isEmpty() || entries.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must contain from 1 to " + MAX_BATCH_SIZE + " messages");
+        }
+        return new Message(type, -1, -1, -1, -1, null, -1, List.copyOf(entries));
+    }
+
+    public static Message subscribe(int elevator) {
+        if (elevator < 0) throw new IllegalArgumentException("Elevator ID cannot be negative");
+        return new Message(MessageType.SUBSCRIBE, -1, -1, -1, elevator, null);
+    }
+
+    public static Message unsubscribe(int elevator) {
+        if (elevator < 0) throw new IllegalArgumentException("Elevator ID cannot be negative");
+        return new Message(MessageType.UNSUBSCRIBE, -1, -1, -1, elevator, null);
+    }
+
+    /**
+     * @param floor current floor of the elevator (the last one it left, if it is moving)
+     * @param eta milliseconds until the elevator stops at the floor of the client, -1 if it is not going there
+     */
+    public static Message position(int elevator, int floor, int nextFloor, boolean moving, int eta) {
+        return new Message(MessageType.POSITION, -1, -1, floor, elevator, null, -1, null, nextFloor, moving, eta, 0);
+    }
+
+    public static Message exit() {
+        return new Message(MessageType.EXIT, -1, -1, -1, -1, null);
+    }
 }
@@ -0,0 +1,54 @@
+package main.java.model;
+
+/**
+ * Types of messages exchanged between FloorClient and Server, together with their one-byte opcodes
+ * and the versions of the protocol that introduced them
+ */
+public enum MessageType {
+    // client -> server: first message of the connection; supported range of protocol versions
+    HELLO(0x01, 1),
+    // server -> client: accepted connection; negotiated version and ID (floor) of the client
+    WELCOME(0x02, 1),
+    // server -> client: connection refused; reason
+    REJECTED(0x03, 1),
+    // client -> server: passenger wants to get to the floor; optional correlation ID (since version 2)
+    PICKUP(0x10, 1),
+    // server -> client: floor and the elevator that will take the passenger there; correlation ID of the pickup
+    ASSIGNMENT(0x11, 1),
+    // server -> client: pickup that cannot be realised; floor and reason; correlation ID of the pickup
+    REFUSED(0x12, 1),
+    // client -> server: many PICKUPs dispatched together (since version 2)
+    PICKUP_BATCH(0x13, 2),
+    // server -> client: ASSIGNMENT or REFUSED for every PICKUP of the batch, in the same order
+    RESULT_BATCH(0x14, 2),
+    // client -> server: panel wants POSITIONs of the elevator (since version 3)
+    SUBSCRIBE(0x15, 3),
+    // client -> server: panel no longer wants POSITIONs of the elevator (since version 3)
+    UNSUBSCRIBE(0x16, 3),
+    // server -> client: where the subscribed elevator is and when it reaches the floor of the client
+    POSITION(0x17, 3),
+    // server -> client: server ends, so the client must exit as well
+    EXIT(0x7F, 1);
+
+    public final byte opcode;
+    // first version of the protocol that has the message
+    public final int sinceVersion;
+
+    private static final MessageType[] byOpcode = new MessageType[128];
+    static {
+        for (MessageType type: values()) {
+            byOpcode[type.opcode] = type;
+        }
+    }
+
+    MessageType(int opcode, int sinceVersion) {
+        this.opcode = (byte) opcode;
+        this.sinceVersion = sinceVersion;
+    }
+
+    public static MessageType fromOpcode(byte opcode) {
+        MessageType type = opcode >= 0 ? byOpcode[opcode] : null;
+        if (type == null) throw new IllegalArgumentException("Unrecognized opcode: " + opcode);
+        return type;
+    }
+}
@@ -7,13 +7,10 @@ package main.java.model;
 public class Params {
     public static final int serverCommunicationPort = 14141;
 
-    public static final int MAX_ELEVATORS = 16;
-    public static int MAX_FLOORS;
-
     // time (in milliseconds) needed to move 1 floor
     public static final int TIME_TO_MOVE_ONE_FLOOR = 3000;
-    // time between consecutive checks if there is assigned target for this elevator
-    public static final int CHECK_SLEEP_TIME = 2000;
     // time that elevator must spend still after arriving at given floor
     public static final int SLEEP_AFTER_ARRIVAL = 5000;
+    // number of passengers that fit in one car (1000 kg at 75 kg per person)
+    public static final int CAR_CAPACITY = 13;
 }
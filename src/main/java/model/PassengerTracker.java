@@ -0,0 +1,191 @@
+package main.java.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+import main.java.threads.Elevator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Follows every call through its life: accepted, assigned to an elevator, picked up at its floor
+ * and delivered to its destination; elevators report their arrivals and departures
+ * Times come from the clock of the system (see ElevatorScheduler), so simulated runs are measured the same way
+ *
+ * Every elevator has its own lock and lists of passengers, so tracking costs one short critical section
+ * per call and per arrival and never blocks other elevators
+ */
+public class PassengerTracker {
+
+    private final LongSupplier clock;
+    private final long startedAt;
+    private final Car[] cars;
+
+    // from accepting the call until the elevator stops at its floor
+    @Getter
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    // from accepting the call until the elevator stops at its destination
+    @Getter
+    private final LatencyHistogram journeyTime = new LatencyHistogram();
+    // time spent by ElevatorManager choosing the elevator (real time, also in simulations)
+    @Getter
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * @param clock current time of the system in milliseconds
+     */
+    public PassengerTracker(int numberOfElevators, @NonNull LongSupplier clock) {
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+        this.cars = new Car[numberOfElevators];
+        for (int i = 0; i < numberOfElevators; i++) {
+            cars[i] = new Car();
+        }
+    }
+
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * @param nanos time in which the elevator (or elevators of a batch) was chosen and committed
+     */
+    public void dispatched(long nanos) {
+        dispatchLatency.record(nanos);
+    }
+
+    /**
+     * Starts tracking the passenger; called after the assignment is applied, while the elevator is still locked
+     * @param acceptedAt time (see now()) at which the call was accepted
+     */
+    public void assigned(int from, int to, @NonNull Elevator elevator, long acceptedAt) {
+        accepted.increment();
+        Journey journey = new Journey(from, to, acceptedAt);
+        Car car = cars[elevator.getID()];
+        try {
+            car.lock.lock();
+            // the elevator cannot depart now and reports arrivals under the same lock, so the passenger
+            // either sees the elevator standing at the floor or is already waiting when it arrives
+            ElevatorSnapshot snapshot = elevator.getSnapshot();
+            if (!snapshot.isMoving() && snapshot.getCurrentFloor() == from) {
+                board(journey, now());
+                car.riding.add(journey);
+            } else {
+                car.waiting.add(journey);
+            }
+        } finally {
+            car.lock.unlock();
+        }
+    }
+
+    public void departed(int elevatorID) {
+        Car car = cars[elevatorID];
+        try {
+            car.lock.lock();
+            car.departedAt = now();
+        } finally {
+            car.lock.unlock();
+        }
+    }
+
+    /**
+     * Passengers riding to the floor leave the elevator, then the ones waiting at the floor board it
+     */
+    public void arrived(int elevatorID, int floor) {
+        long now = now();
+        Car car = cars[elevatorID];
+        try {
+            car.lock.lock();
+            if (car.departedAt >= 0) {
+                car.busyMillis += now - car.departedAt;
+                car.departedAt = -1;
+            }
+            for (Iterator<Journey> it = car.riding.iterator(); it.hasNext(); ) {
+                Journey journey = it.next();
+                if (journey.to == floor) {
+                    journeyTime.record((now - journey.acceptedAt) * 1_000_000);
+                    delivered.increment();
+                    it.remove();
+                }
+            }
+            for (Iterator<Journey> it = car.waiting.iterator(); it.hasNext(); ) {
+                Journey journey = it.next();
+                if (journey.from == floor) {
+                    board(journey, now);
+                    car.riding.add(journey);
+                    it.remove();
+                }
+            }
+        } finally {
+            car.lock.unlock();
+        }
+    }
+
+    private void board(Journey journey, long now) {
+        waitTime.record((now - journey.acceptedAt) * 1_000_000);
+    }
+
+    public long getAcceptedCalls() {
+        return accepted.sum();
+    }
+
+    public long getDeliveredPassengers() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return passengers waiting for their elevator or riding in it
+     */
+    public long getPassengersInFlight() {
+        return accepted.sum() - delivered.sum();
+    }
+
+    /**
+     * @return part of the time since the start of the system that the elevator spent moving, from 0 to 1
+     */
+    public double getUtilization(int elevatorID) {
+        Car car = cars[elevatorID];
+        long now = now();
+        long busy;
+        try {
+            car.lock.lock();
+            busy = car.busyMillis + (car.departedAt >= 0 ? now - car.departedAt : 0);
+        } finally {
+            car.lock.unlock();
+        }
+        return now > startedAt ? (double) busy / (now - startedAt) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Passengers: %d accepted, %d delivered, %d in flight%nWait time: %s%nJourney time: %s%nDispatch latency: %s",
+                getAcceptedCalls(), getDeliveredPassengers(), getPassengersInFlight(), waitTime, journeyTime, dispatchLatency);
+    }
+
+    private static class Car {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Journey> waiting = new ArrayList<>();
+        private final List<Journey> riding = new ArrayList<>();
+        // time of the departure of the current ride, -1 if the elevator is not moving
+        private long departedAt = -1;
+        private long busyMillis = 0;
+    }
+
+    private static class Journey {
+        private final int from;
+        private final int to;
+        private final long acceptedAt;
+
+        private Journey(int from, int to, long acceptedAt) {
+            this.from = from;
+            this.to = to;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package main.java.model;
+
+/**
+ * Reasons sent in REJECTED and REFUSED messages
+ */
+public enum Reason {
+    // REJECTED: every floor of the building already has its client
+    BUILDING_FULL(1, "Server didn't accept this client, because all floors are taken"),
+    // REJECTED: client and server have no common protocol version
+    UNSUPPORTED_VERSION(2, "Server doesn't support protocol version of this client"),
+    // REFUSED: passenger asked for the floor of the client
+    ALREADY_ON_FLOOR(3, "You are already on this floor"),
+    // REFUSED: passenger asked for floor that doesn't exist
+    NO_SUCH_FLOOR(4, "There is no such floor in this building"),
+    // REJECTED: client asked for building that the server does not host
+    NO_SUCH_BUILDING(5, "Server doesn't host this building"),
+    // REFUSED: dispatching the pickup failed on the server
+    DISPATCH_FAILED(6, "Server couldn't assign an elevator, please try again"),
+    // REFUSED: request newer than the negotiated protocol version, or not supported by the server
+    UNSUPPORTED_REQUEST(7, "Server doesn't support this request on this connection");
+
+    public final int code;
+    public final String description;
+
+    Reason(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public static Reason fromCode(int code) {
+        for (Reason reason: values()) {
+            if (reason.code == code) return reason;
+        }
+        throw new IllegalArgumentException("Unrecognized reason: " + code);
+    }
+}
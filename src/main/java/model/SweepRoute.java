@@ -0,0 +1,227 @@
+package main.java.model;
+
+import lombok.NonNull;
+
+/**
+ * Route of an elevator seen as sweeps (LOOK): runs of floors sorted in the direction of the ride,
+ * the next one starting where the previous one turns back
+ * A moving elevator continues in its direction first, even if its route turns back at once
+ *
+ * Stops of a call go into the first sweep that rides in the direction of the passenger, so the pickup always comes
+ * before the drop-off and the elevator does not zig-zag; if the sweep starts beyond the floor of the passenger,
+ * the previous sweep turns back later, at the pickup. Positions are found by binary search in the sorted runs
+ *
+ * Built once per snapshot (see ElevatorSnapshot#getSweeps) and immutable, so every strategy shares it
+ */
+public class SweepRoute {
+
+    private final ElevatorSnapshot snapshot;
+    // floor from which the route starts: next floor of a moving elevator, current floor of a standing one
+    private final int origin;
+    private final int count;
+    // starts[k] - index in the route of the first floor of sweep k; directions[k] - 1 up, -1 down, 0 unknown
+    private final int[] starts;
+    private final int[] directions;
+
+    public SweepRoute(@NonNull ElevatorSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.origin = snapshot.isMoving() ? snapshot.getNextFloor() : snapshot.getCurrentFloor();
+        int length = snapshot.getRouteLength();
+        int motion = snapshot.isMoving() ? Integer.signum(snapshot.getNextFloor() - snapshot.getCurrentFloor()) : 0;
+
+        // at most one sweep per floor of the route and the sweep in which the elevator is already riding
+        int[] sweepStarts = new int[length + 1];
+        int[] sweepDirections = new int[length + 1];
+        int sweeps = 0;
+        if (motion != 0) {
+            sweepDirections[sweeps++] = motion;
+        }
+        int last = origin;
+        for (int i = 0; i < length; i++) {
+            int floor = snapshot.getRouteFloor(i);
+            int direction = Integer.signum(floor - last);
+            if (sweeps == 0) {
+                sweepDirections[sweeps++] = direction;
+            } else if (direction != 0 && sweepDirections[sweeps - 1] == 0) {
+                sweepDirections[sweeps - 1] = direction;
+            } else if (direction != 0 && direction != sweepDirections[sweeps - 1]) {
+                sweepStarts[sweeps] = i;
+                sweepDirections[sweeps++] = direction;
+            }
+            last = floor;
+        }
+        this.count = sweeps;
+        this.starts = sweepStarts;
+        this.directions = sweepDirections;
+    }
+
+    public int getSweepCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the elevator already rides through floor 'from' in the direction of the passenger,
+     * so the call does not lengthen its route beyond the drop-off
+     */
+    public boolean passes(int from, int to) {
+        int direction = direction(from, to);
+        for (int k = 0; k < count; k++) {
+            if (accepts(k, direction, from) && direction * (end(k) - from) >= 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a sweep after the first one rides down, so the elevator passes down through every floor
+     * above its route - the previous sweep turns back at the pickup
+     */
+    public boolean turnsBackDown() {
+        for (int k = 1; k < count; k++) {
+            if (directions[k] < 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param direction 1 for calls up, -1 for calls down
+     * @return the lowest floor for which passes(floor, floor + direction) may be true, Integer.MIN_VALUE if there is
+     * no such limit, or Integer.MAX_VALUE if the elevator passes no floor in the direction
+     */
+    public int lowestPassed(int direction) {
+        return passedBound(direction, -1);
+    }
+
+    /**
+     * @param direction 1 for calls up, -1 for calls down
+     * @return the highest floor for which passes(floor, floor + direction) may be true, Integer.MAX_VALUE if there is
+     * no such limit, or Integer.MIN_VALUE if the elevator passes no floor in the direction
+     */
+    public int highestPassed(int direction) {
+        return passedBound(direction, 1);
+    }
+
+    /**
+     * @param side -1 for the lowest floor, 1 for the highest one
+     */
+    private int passedBound(int direction, int side) {
+        int bound = side < 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        for (int k = 0; k < count; k++) {
+            if (directions[k] != 0 && directions[k] != direction) continue;
+            // a sweep takes calls up to its end, from its start - or from anywhere behind it, if it is not the first one
+            int floor;
+            if (side == direction) {
+                floor = end(k);
+            } else if (k == 0) {
+                floor = start(k);
+            } else {
+                floor = side < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            }
+            bound = side < 0 ? Math.min(bound, floor) : Math.max(bound, floor);
+        }
+        return bound;
+    }
+
+    /**
+     * Inserts the pickup and the drop-off into the first sweep that can take them; if there is none,
+     * both floors are appended as new sweeps
+     * @return assignment that keeps every sweep sorted and the pickup before the drop-off
+     */
+    public Assignment assign(int from, int to) {
+        int direction = direction(from, to);
+        for (int k = 0; k < count; k++) {
+            if (accepts(k, direction, from)) return insert(k, direction, from, to);
+        }
+        return append(from, to);
+    }
+
+    /**
+     * For a passenger already in the elevator (e.g. boarding it at its current floor):
+     * the destination goes into the first sweep that heads towards it
+     */
+    public Assignment dropOff(int to) {
+        for (int k = 0; k < count; k++) {
+            int direction = Integer.signum(to - start(k));
+            if (direction == 0) return Assignment.unchanged(snapshot);
+            if (directions[k] == 0 || directions[k] == direction) return insert(k, direction, start(k), to);
+        }
+        return append(origin, to);
+    }
+
+    private static int direction(int from, int to) {
+        if (from == to) throw new IllegalArgumentException("Passenger is already on floor " + to);
+        return Integer.signum(to - from);
+    }
+
+    /**
+     * @return true if sweep k rides in given direction and can start at or before floor 'from'
+     */
+    private boolean accepts(int k, int direction, int from) {
+        if (directions[k] != 0 && directions[k] != direction) return false;
+        // only the first sweep cannot start earlier - the elevator is already there
+        return k > 0 || direction * (from - start(k)) >= 0;
+    }
+
+    /**
+     * @return floor from which sweep k starts - the origin or the floor at which the previous sweep turns back
+     */
+    private int start(int k) {
+        return starts[k] == 0 ? origin : snapshot.getRouteFloor(starts[k] - 1);
+    }
+
+    private int end(int k) {
+        int endIndex = endIndex(k);
+        return endIndex == starts[k] ? start(k) : snapshot.getRouteFloor(endIndex - 1);
+    }
+
+    private int endIndex(int k) {
+        return k + 1 < count ? starts[k + 1] : snapshot.getRouteLength();
+    }
+
+    /**
+     * The pickup may move the start of sweep k (except the first one) and the drop-off may extend it beyond its end
+     */
+    private Assignment insert(int k, int direction, int from, int to) {
+        int low = starts[k], high = endIndex(k);
+        // the elevator already stops at the start of the sweep
+        boolean pickupInserted = from != start(k) && !stopsAt(low, high, direction, from);
+        // behind the start - the pickup becomes the new end of the previous sweep
+        int pickup = direction * (from - start(k)) < 0 ? low : position(low, high, direction, from);
+        int dropOff = position(low, high, direction, to);
+        boolean dropOffInserted = !stopsAt(low, high, direction, to);
+
+        if (pickupInserted && dropOffInserted) {
+            return Assignment.insertAll(snapshot, new int[] {pickup, dropOff + 1}, new int[] {from, to});
+        }
+        if (pickupInserted) return Assignment.insert(snapshot, pickup, from);
+        if (dropOffInserted) return Assignment.insert(snapshot, dropOff, to);
+        return Assignment.unchanged(snapshot);
+    }
+
+    private Assignment append(int from, int to) {
+        int length = snapshot.getRouteLength();
+        // the elevator stops at the last floor of its route, or at the origin if the route is empty
+        int last = length > 0 ? snapshot.getRouteFloor(length - 1) : origin;
+        if (from == last) return Assignment.insert(snapshot, length, to);
+        return Assignment.appendBoth(snapshot, from, to);
+    }
+
+    /**
+     * @return index of the first floor in [low, high) that is not before the floor in given direction
+     */
+    private int position(int low, int high, int direction, int floor) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (direction * (snapshot.getRouteFloor(middle) - floor) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean stopsAt(int low, int high, int direction, int floor) {
+        int index = position(low, high, direction, floor);
+        return index < high && snapshot.getRouteFloor(index) == floor;
+    }
+}
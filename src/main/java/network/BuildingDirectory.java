@@ -0,0 +1,45 @@
+package main.java.network;
+
+import lombok.NonNull;
+import main.java.model.Message;
+import main.java.model.MessageType;
+
+import java.util.List;
+
+/**
+ * Buildings hosted by one server, indexed by their IDs
+ * Every building has its own RequestHandler, ElevatorManager and threads, so load in one building
+ * never contends with another; the client chooses its building in HELLO
+ */
+public class BuildingDirectory {
+
+    private final RequestHandler[] buildings;
+
+    /**
+     * @param buildings handler of every building, indexed by ID
+     */
+    public BuildingDirectory(@NonNull List<RequestHandler> buildings) {
+        if (buildings.isEmpty()) throw new IllegalArgumentException("Server must host at least one building");
+        this.buildings = buildings.toArray(new RequestHandler[0]);
+    }
+
+    public int size() {
+        return buildings.length;
+    }
+
+    public RequestHandler get(int building) {
+        return buildings[building];
+    }
+
+    /**
+     * @param hello first message received from the client
+     * @return handler of the building of the client, or null if the server does not host it
+     * @throws IllegalArgumentException if the message is not HELLO
+     */
+    public RequestHandler route(@NonNull Message hello) {
+        if (hello.type != MessageType.HELLO) {
+            throw new IllegalArgumentException("First message from client must be HELLO, got: " + hello.type);
+        }
+        return hello.building < buildings.length ? buildings[hello.building] : null;
+    }
+}
@@ -0,0 +1,17 @@
+package main.java.network;
+
+/**
+ * Part of the server that accepts FloorClient connections and serves their requests
+ */
+public interface FloorGateway {
+
+    /**
+     * Starts accepting connections in the background
+     */
+    void start();
+
+    /**
+     * Stops accepting connections and orders all connected clients to exit
+     */
+    void shutdown();
+}
@@ -0,0 +1,34 @@
+package main.java.network;
+
+/**
+ * Ways in which the server can handle connections, selected at startup
+ */
+public enum IoMode {
+    // platform thread with blocking streams per connection
+    THREADS,
+    // virtual thread with blocking streams per connection; requires Java 21
+    VIRTUAL,
+    // few threads multiplexing non-blocking channels with selectors
+    NIO;
+
+    // first Java release with virtual threads
+    public static final int VIRTUAL_THREADS_JAVA = 21;
+
+    /**
+     * @throws IllegalArgumentException if the mode is unknown or the runtime cannot use it
+     */
+    public static IoMode parse(String name) {
+        IoMode mode;
+        try {
+            mode = valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unrecognized I/O mode: " + name + " (expected threads, virtual or nio)");
+        }
+        int java = Runtime.version().feature();
+        if (mode == VIRTUAL && java < VIRTUAL_THREADS_JAVA) {
+            throw new IllegalArgumentException("I/O mode virtual requires Java " + VIRTUAL_THREADS_JAVA
+                    + " or newer, the server runs on Java " + java + " (use threads or nio)");
+        }
+        return mode;
+    }
+}
@@ -0,0 +1,131 @@
+package main.java.network;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.FleetSnapshot;
+import main.java.model.FleetStatus;
+import main.java.model.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes POSITIONs of elevators to the panels that subscribed to them
+ * Elevators only publish their snapshots (see FleetStatus); a single broadcaster thread follows the change feed,
+ * at most once per interval, so all changes of an elevator within the interval reach subscribers as one POSITION
+ * Panels on the same floor share one message, so the work per change grows with the number of floors, not panels
+ */
+public class PositionBroadcaster extends Thread {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 250;
+
+    private final FleetStatus fleetStatus;
+    private final long intervalMillis;
+    // subscriptions.get(elevator) maps every subscribed connection to its subscription
+    private final List<Map<PositionSink, Subscription>> subscriptions;
+    // logs POSITIONs that could not be pushed
+    private final EventLog events;
+
+    public PositionBroadcaster(@NonNull FleetStatus fleetStatus, long intervalMillis, @NonNull EventLog events) {
+        super("Position broadcaster");
+        if (intervalMillis < 0) throw new IllegalArgumentException("Interval cannot be negative");
+        this.fleetStatus = fleetStatus;
+        this.intervalMillis = intervalMillis;
+        this.events = events;
+        int elevators = fleetStatus.current().size();
+        this.subscriptions = new ArrayList<>(elevators);
+        for (int i = 0; i < elevators; i++) {
+            subscriptions.add(new ConcurrentHashMap<>());
+        }
+        setDaemon(true);
+    }
+
+    /**
+     * @param floor floor of the client, for which the ETA is computed
+     * @return current POSITION of the elevator, to be sent as the answer to SUBSCRIBE
+     * @throws IllegalArgumentException if there is no such elevator
+     */
+    public Message subscribe(int elevator, int floor, @NonNull PositionSink sink) {
+        if (elevator < 0 || elevator >= subscriptions.size()) throw new IllegalArgumentException("No such elevator: " + elevator);
+        Subscription subscription = new Subscription(floor);
+        subscription.lastSent = position(fleetStatus.current().get(elevator), floor);
+        subscriptions.get(elevator).put(sink, subscription);
+        return subscription.lastSent;
+    }
+
+    public void unsubscribe(int elevator, @NonNull PositionSink sink) {
+        if (elevator >= 0 && elevator < subscriptions.size()) subscriptions.get(elevator).remove(sink);
+    }
+
+    /**
+     * Called when the connection ends
+     */
+    public void unsubscribeAll(@NonNull PositionSink sink) {
+        for (Map<PositionSink, Subscription> elevatorSubscriptions: subscriptions) {
+            elevatorSubscriptions.remove(sink);
+        }
+    }
+
+    @Override
+    public void run() {
+        FleetSnapshot sent = fleetStatus.current();
+        try {
+            while (!isInterrupted()) {
+                FleetSnapshot fleet = fleetStatus.awaitNewer(sent, 1, TimeUnit.SECONDS);
+                if (fleet == sent) continue;
+                long started = System.currentTimeMillis();
+                for (int elevator: fleet.changedSince(sent)) {
+                    broadcast(fleet.get(elevator));
+                }
+                sent = fleet;
+                // changes made in the meantime are coalesced into the next round
+                long rest = intervalMillis - (System.currentTimeMillis() - started);
+                if (rest > 0) Thread.sleep(rest);
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void broadcast(ElevatorSnapshot elevator) {
+        Map<PositionSink, Subscription> elevatorSubscriptions = subscriptions.get(elevator.getID());
+        if (elevatorSubscriptions.isEmpty()) return;
+        Map<Integer, Message> byFloor = new HashMap<>();
+        elevatorSubscriptions.forEach((sink, subscription) -> {
+            Message position = byFloor.computeIfAbsent(subscription.floor, floor -> position(elevator, floor));
+            // e.g. the elevator only got another floor to visit later
+            if (samePosition(position, subscription.lastSent)) return;
+            subscription.lastSent = position;
+            try {
+                sink.push(position);
+            } catch (RuntimeException e) {
+                // one broken connection cannot stop the updates of the others
+                events.pushFailed(elevator.getID(), subscription.floor, e);
+            }
+        });
+    }
+
+    private static boolean samePosition(Message position, Message last) {
+        return last != null && last.floor == position.floor && last.nextFloor == position.nextFloor
+                && last.moving == position.moving && last.eta == position.eta;
+    }
+
+    private static Message position(ElevatorSnapshot elevator, int floor) {
+        long eta = elevator.etaMillis(floor);
+        return Message.position(elevator.getID(), elevator.getCurrentFloor(), elevator.getNextFloor(), elevator.isMoving(),
+                (int) Math.min(eta, Integer.MAX_VALUE));
+    }
+
+    private static class Subscription {
+        private final int floor;
+        // written by the subscribing thread before the subscription is published, then only by the broadcaster
+        private Message lastSent;
+
+        private Subscription(int floor) {
+            this.floor = floor;
+        }
+    }
+}
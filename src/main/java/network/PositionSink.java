@@ -0,0 +1,13 @@
+package main.java.network;
+
+import main.java.model.Message;
+
+/**
+ * Connection that can receive POSITIONs pushed by PositionBroadcaster
+ * push() must not wait for the client for long, because all connections are served by one broadcaster thread
+ */
+@FunctionalInterface
+public interface PositionSink {
+
+    void push(Message position);
+}
@@ -0,0 +1,232 @@
+package main.java.network;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.model.BatchDispatcher;
+import main.java.model.ElevatorManager;
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+import main.java.protocol.MessageCodec;
+import main.java.replication.ReplicationPrimary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server side of the protocol for one building, independent of the way connections are handled
+ * Decides whether new clients are accepted and answers their requests using ElevatorManager,
+ * directly or through BatchDispatcher; BuildingDirectory chooses the handler of the client's building
+ */
+public class RequestHandler {
+
+    private final ElevatorManager manager;
+    private final int floors;
+    // collects pickups into windows; null if every pickup is dispatched at once by the manager
+    private final BatchDispatcher dispatcher;
+    // pushes positions of elevators to subscribed panels; null if subscriptions are not supported
+    private final PositionBroadcaster broadcaster;
+    // runs immediate dispatches of this building, so they never take threads of other buildings;
+    // null if they run in the thread of the connection
+    private final Executor dispatchExecutor;
+    // pickups are answered when the standby server knows their routes; null without replication
+    private final ReplicationPrimary replication;
+    // next floor given to the client that did not ask for specific one
+    private final AtomicInteger nextFreeFloor = new AtomicInteger(0);
+
+    /**
+     * @param floors number of floors in the building
+     */
+    public RequestHandler(@NonNull ElevatorManager manager, int floors) {
+        this(manager, floors, null, null, null);
+    }
+
+    /**
+     * @param dispatcher engine that assigns pickups in windows, or null for the greedy ElevatorManager
+     * @param broadcaster serves SUBSCRIBE and UNSUBSCRIBE, or null if they are refused
+     * @param dispatchExecutor runs immediate dispatches, or null if they run in the thread of the connection
+     */
+    public RequestHandler(@NonNull ElevatorManager manager, int floors, BatchDispatcher dispatcher,
+                          PositionBroadcaster broadcaster, Executor dispatchExecutor) {
+        this(manager, floors, dispatcher, broadcaster, dispatchExecutor, null);
+    }
+
+    /**
+     * @param replication streams the routes to the standby server, or null without one
+     */
+    public RequestHandler(@NonNull ElevatorManager manager, int floors, BatchDispatcher dispatcher,
+                          PositionBroadcaster broadcaster, Executor dispatchExecutor, ReplicationPrimary replication) {
+        if (floors <= 0) throw new IllegalArgumentException("Number of floors must be positive");
+        this.manager = manager;
+        this.floors = floors;
+        this.dispatcher = dispatcher;
+        this.broadcaster = broadcaster;
+        this.dispatchExecutor = dispatchExecutor;
+        this.replication = replication;
+    }
+
+    /**
+     * @param hello first message received from the client
+     * @return WELCOME with negotiated version and floor of the client, or REJECTED
+     * @throws IllegalArgumentException if the message is not HELLO
+     */
+    public Message handshake(@NonNull Message hello) {
+        if (hello.type != MessageType.HELLO) {
+            throw new IllegalArgumentException("First message from client must be HELLO, got: " + hello.type);
+        }
+        int version = MessageCodec.negotiateVersion(hello.version, hello.maxVersion);
+        if (version < 0) return Message.rejected(Reason.UNSUPPORTED_VERSION);
+
+        // client declared its floor - any number of clients can work on the same floor
+        int floor = hello.floor;
+        if (floor >= 0) {
+            if (floor >= floors) return Message.rejected(Reason.NO_SUCH_FLOOR);
+        } else {
+            // otherwise give it the next floor without client; reject redundant clients
+            floor = nextFreeFloor.getAndUpdate(f -> f < floors ? f + 1 : f);
+            if (floor >= floors) return Message.rejected(Reason.BUILDING_FULL);
+        }
+        manager.getEvents().connected(floor);
+        return Message.welcome(version, floor);
+    }
+
+    /**
+     * @param clientFloor floor of the client that sent the request
+     * @param version version of the protocol negotiated by the handshake of the client
+     * @param client connection of the client, to which POSITIONs are pushed after SUBSCRIBE
+     * @return future completed with the response, or with null if the request has no response;
+     * already completed unless pickups are dispatched in windows, by the dispatch executor or wait for the standby;
+     * pickups that the connection cannot make (newer than the negotiated version) are refused with UNSUPPORTED_REQUEST
+     */
+    public CompletableFuture<Message> handleAsync(int clientFloor, int version, @NonNull Message request,
+                                                  @NonNull PositionSink client) {
+        // a client that sent a batch can read its RESULT_BATCH, even if it negotiated an older version
+        if (request.type.sinceVersion > version) {
+            return CompletableFuture.completedFuture(refused(request, Reason.UNSUPPORTED_REQUEST));
+        }
+        switch (request.type) {
+            case PICKUP:
+                Message refusal = validate(clientFloor, request);
+                if (refusal != null) return CompletableFuture.completedFuture(refusal);
+                return replicated(elevatorFor(clientFloor, request.floor))
+                        .thenApply(elevator -> Message.assignment(request.floor, elevator, request.correlation));
+            case PICKUP_BATCH:
+                return handleBatch(clientFloor, request.entries);
+            case SUBSCRIBE:
+                // no POSITION ever comes for the elevator, which is all a panel can be told
+                if (broadcaster == null) return CompletableFuture.completedFuture(null);
+                // the current position answers the subscription, the following ones are pushed
+                return CompletableFuture.completedFuture(broadcaster.subscribe(request.elevator, clientFloor, client));
+            case UNSUBSCRIBE:
+                if (broadcaster != null) broadcaster.unsubscribe(request.elevator, client);
+                return CompletableFuture.completedFuture(null);
+            default:
+                // responses of the server have no answer
+                return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Response sent instead of the one whose future completed exceptionally, so the client is not left waiting
+     * @return REFUSED for a PICKUP, RESULT_BATCH of REFUSED for a PICKUP_BATCH, null for requests without response
+     */
+    public static Message failed(@NonNull Message request) {
+        return refused(request, Reason.DISPATCH_FAILED);
+    }
+
+    /**
+     * @return REFUSED with given reason for a PICKUP, RESULT_BATCH of them for a PICKUP_BATCH,
+     * null for requests without response
+     */
+    private static Message refused(Message request, Reason reason) {
+        switch (request.type) {
+            case PICKUP:
+                return Message.refused(request.floor, reason, request.correlation);
+            case PICKUP_BATCH:
+                List<Message> refusals = new ArrayList<>(request.entries.size());
+                for (Message pickup: request.entries) {
+                    refusals.add(Message.refused(pickup.floor, reason, pickup.correlation));
+                }
+                return Message.resultBatch(refusals);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Ends all subscriptions of the connection of the client from given floor
+     */
+    public void disconnected(int clientFloor, @NonNull PositionSink client) {
+        if (broadcaster != null) broadcaster.unsubscribeAll(client);
+        manager.getEvents().disconnected(clientFloor);
+    }
+
+    /**
+     * @return log of the building, to which connections of its clients report their failures
+     */
+    public EventLog getEvents() {
+        return manager.getEvents();
+    }
+
+    private CompletableFuture<Integer> elevatorFor(int from, int to) {
+        if (dispatcher != null) return dispatcher.dispatch(from, to);
+        if (dispatchExecutor != null) return CompletableFuture.supplyAsync(() -> manager.askForElevator(from, to), dispatchExecutor);
+        return CompletableFuture.completedFuture(manager.askForElevator(from, to));
+    }
+
+    /**
+     * @return future completed with the result of the dispatch once the standby server has its routes
+     */
+    private <T> CompletableFuture<T> replicated(CompletableFuture<T> dispatch) {
+        if (replication == null) return dispatch;
+        return dispatch.thenCompose(result -> replication.replicated().thenApply(replicated -> result));
+    }
+
+    /**
+     * Valid pickups of the batch are dispatched together, so ElevatorManager evaluates elevators once for all of them
+     */
+    private CompletableFuture<Message> handleBatch(int clientFloor, List<Message> pickups) {
+        Message[] results = new Message[pickups.size()];
+        int[] requested = new int[pickups.size()];
+        int valid = 0;
+        for (int i = 0; i < pickups.size(); i++) {
+            results[i] = validate(clientFloor, pickups.get(i));
+            if (results[i] == null) requested[valid++] = pickups.get(i).floor;
+        }
+
+        int[] validFloors = Arrays.copyOf(requested, valid);
+        CompletableFuture<int[]> elevators;
+        if (dispatcher != null) {
+            elevators = dispatcher.dispatchAll(clientFloor, validFloors);
+        } else if (dispatchExecutor != null) {
+            elevators = CompletableFuture.supplyAsync(() -> manager.askForElevators(clientFloor, validFloors), dispatchExecutor);
+        } else {
+            elevators = CompletableFuture.completedFuture(manager.askForElevators(clientFloor, validFloors));
+        }
+        return replicated(elevators).thenApply(chosen -> {
+            for (int i = 0, next = 0; i < results.length; i++) {
+                if (results[i] != null) continue;
+                Message pickup = pickups.get(i);
+                results[i] = Message.assignment(pickup.floor, chosen[next++], pickup.correlation);
+            }
+            return Message.resultBatch(Arrays.asList(results));
+        });
+    }
+
+    /**
+     * @return REFUSED if the pickup cannot be realised, null otherwise
+     */
+    private Message validate(int clientFloor, Message pickup) {
+        if (clientFloor == pickup.floor) {
+            return Message.refused(pickup.floor, Reason.ALREADY_ON_FLOOR, pickup.correlation);
+        }
+        if (pickup.floor >= floors) {
+            return Message.refused(pickup.floor, Reason.NO_SUCH_FLOOR, pickup.correlation);
+        }
+        return null;
+    }
+}
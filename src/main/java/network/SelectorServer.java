@@ -0,0 +1,498 @@
+package main.java.network;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+import main.java.protocol.MessageCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking server: a few threads, each with its own Selector, serve all FloorClient connections
+ * The first thread also accepts new connections and spreads them over all threads
+ *
+ * Every thread reads and writes through its own pair of direct buffers;
+ * a connection borrows a buffer from the pool only when it is left with an incomplete frame
+ * or with output that the socket could not take at once
+ *
+ * POSITIONs pushed to a connection are kept per elevator, only the latest one, and written only when the connection
+ * has no pending output, so a client that does not keep up receives fewer POSITIONs instead of making the server
+ * buffer them; pending responses of a client that stops reading are limited to MAX_PENDING_OUTPUT
+ */
+public class SelectorServer implements FloorGateway {
+
+    // size of the per-thread and pooled buffers; must fit at least one frame
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    private static final int ACCEPT_BACKLOG = 1024;
+    // connection whose pending output would grow beyond this is closed
+    private static final int MAX_PENDING_OUTPUT = 64 * BUFFER_SIZE;
+
+    private final AtomicBoolean serverStillRunning;
+    // chooses the building of every client during the handshake
+    private final BuildingDirectory buildings;
+    private final int port;
+    // logs failures of the threads and of connections whose building is not known yet
+    private final EventLog events;
+    private final BufferPool pool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger(0);
+
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * @param threads number of selector threads; one per core is enough
+     */
+    public SelectorServer(AtomicBoolean serverStillRunning, @NonNull BuildingDirectory buildings, int port, int threads,
+                          @NonNull EventLog events) throws IOException {
+        if (threads <= 0) throw new IllegalArgumentException("Number of threads must be positive");
+        this.serverStillRunning = serverStillRunning;
+        this.buildings = buildings;
+        this.port = port;
+        this.events = events;
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    @Override
+    public void start() {
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(workers[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            events.acceptFailed(port, e);
+            serverStillRunning.set(false);
+            try {
+                if (serverChannel != null) serverChannel.close();
+            } catch (IOException ignored) {}
+            return;
+        }
+
+        for (Worker worker: workers) {
+            worker.start();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException ignored) {}
+        for (Worker worker: workers) {
+            worker.stopped = true;
+            worker.selector.wakeup();
+        }
+    }
+
+    /**
+     * State of a single connection
+     */
+    private static class Session {
+        private final SocketChannel channel;
+        // floor of the client; -1 until the handshake is done
+        private int floor = -1;
+        // handler of the building of the client; set by the handshake
+        private RequestHandler handler = null;
+        // version of the protocol negotiated by the handshake
+        private int version = -1;
+        // bytes of incomplete frame, in write mode; null if the last read ended at the frame boundary
+        private ByteBuffer partialInput = null;
+        // bytes not yet taken by the socket, in write mode; null if everything has been sent
+        private ByteBuffer pendingOutput = null;
+        // connection is closed as soon as its output is sent, e.g. after REJECTED
+        private boolean closeAfterWrite = false;
+        // receives POSITIONs from other threads; created after the handshake
+        private PositionSink sink = null;
+        // latest POSITION of every subscribed elevator that has not been sent yet
+        private final ConcurrentMap<Integer, Message> positions = new ConcurrentHashMap<>();
+        // set while the connection waits in Worker.positionsReady, so it is queued there at most once
+        private final AtomicBoolean positionsQueued = new AtomicBoolean(false);
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static class Reply {
+        private final SelectionKey key;
+        private final Message message;
+
+        private Reply(SelectionKey key, Message message) {
+            this.key = key;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Thread that serves its share of connections
+     */
+    private class Worker extends Thread {
+
+        private final int index;
+        private final Selector selector;
+        // connections accepted by other thread, waiting to be registered in this thread's selector
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+        // responses completed by other threads (end of the dispatch window), waiting to be sent
+        private final Queue<Reply> replies = new ConcurrentLinkedQueue<>();
+        // connections with POSITIONs pushed by the broadcaster, each at most once
+        private final Queue<SelectionKey> positionsReady = new ConcurrentLinkedQueue<>();
+        // set by the first reply since the last round, so a burst of replies wakes up the selector once
+        private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+        private final ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private volatile boolean stopped = false;
+
+        private Worker(int index) throws IOException {
+            super("Selector thread " + index);
+            this.index = index;
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped && serverStillRunning.get()) {
+                    selector.select();
+                    registerAccepted();
+                    wakeupPending.set(false);
+                    sendReplies();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+                        try {
+                            if (key.isAcceptable()) {
+                                accept();
+                                continue;
+                            }
+                            if (key.isWritable()) writePending(key);
+                            if (key.isValid() && key.isReadable()) read(key);
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                events.selectorFailed(index, e);
+            }
+
+            disconnectAll();
+            events.selectorStopped(index);
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Worker worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+                if (worker == this) {
+                    channel.register(selector, SelectionKey.OP_READ, new Session(channel));
+                } else {
+                    worker.accepted.add(channel);
+                    worker.selector.wakeup();
+                }
+            }
+        }
+
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Session(channel));
+                } catch (ClosedChannelException ignored) {}
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            Session session = (Session) key.attachment();
+
+            input.clear();
+            if (session.partialInput != null) {
+                session.partialInput.flip();
+                input.put(session.partialInput);
+                pool.release(session.partialInput);
+                session.partialInput = null;
+            }
+            if (session.channel.read(input) < 0) {
+                close(key);
+                return;
+            }
+            input.flip();
+
+            output.clear();
+            while (!session.closeAfterWrite) {
+                Message request;
+                try {
+                    request = MessageCodec.tryDecode(input);
+                } catch (IllegalArgumentException e) {
+                    // malformed frame has been skipped
+                    eventsOf(session).malformedMessage(session.floor, e);
+                    continue;
+                }
+                if (request == null) break;
+
+                Message response = process(key, session, request);
+                if (response == null) continue;
+                if (output.remaining() < MessageCodec.MAX_HEADER_LENGTH + MessageCodec.MAX_FRAME_LENGTH) {
+                    writeOutput(key, session);
+                }
+                MessageCodec.encode(response, output);
+            }
+
+            if (input.hasRemaining() && !session.closeAfterWrite) {
+                session.partialInput = pool.acquire();
+                session.partialInput.put(input);
+            }
+            writeOutput(key, session);
+            if (session.closeAfterWrite && session.pendingOutput == null) close(key);
+        }
+
+        /**
+         * @return response for the client, or null if there is nothing to send yet
+         */
+        private Message process(SelectionKey key, Session session, Message request) {
+            try {
+                if (session.floor < 0) {
+                    RequestHandler building = buildings.route(request);
+                    Message response = building != null ? building.handshake(request) : Message.rejected(Reason.NO_SUCH_BUILDING);
+                    if (response.type == MessageType.WELCOME) {
+                        session.floor = response.floor;
+                        session.version = response.version;
+                        session.handler = building;
+                        session.sink = position -> push(key, session, position);
+                    } else {
+                        session.closeAfterWrite = true;
+                    }
+                    return response;
+                }
+
+                CompletableFuture<Message> response = session.handler.handleAsync(session.floor, session.version, request, session.sink);
+                if (response.isDone() && !response.isCompletedExceptionally()) return response.join();
+                // the response is sent by this thread when the dispatch window ends;
+                // a failed dispatch is refused, so the client does not wait for it forever
+                response.whenComplete((message, error) -> {
+                    if (error != null) {
+                        session.handler.getEvents().dispatchFailed(session.floor, error);
+                        message = RequestHandler.failed(request);
+                    }
+                    if (message != null) reply(key, message);
+                });
+                return null;
+            } catch (IllegalArgumentException e) {
+                // client that does not start with HELLO is not worth keeping
+                if (session.floor < 0) {
+                    events.connectionFailed(-1, e);
+                    session.closeAfterWrite = true;
+                } else {
+                    session.handler.getEvents().malformedMessage(session.floor, e);
+                }
+                return null;
+            }
+        }
+
+        /**
+         * @return log of the building of the client, or of the server before the handshake
+         */
+        private EventLog eventsOf(Session session) {
+            return session.handler != null ? session.handler.getEvents() : events;
+        }
+
+        /**
+         * Called by other threads; the message is sent by this thread
+         */
+        private void reply(SelectionKey key, Message message) {
+            replies.add(new Reply(key, message));
+            if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+        }
+
+        /**
+         * Called by PositionBroadcaster; replaces the unsent POSITION of the same elevator, if there is one
+         */
+        private void push(SelectionKey key, Session session, Message position) {
+            session.positions.put(position.elevator, position);
+            if (session.positionsQueued.compareAndSet(false, true)) {
+                positionsReady.add(key);
+                if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+            }
+        }
+
+        private void sendReplies() {
+            Reply reply;
+            while ((reply = replies.poll()) != null) {
+                // connection closed while waiting for the response
+                if (!reply.key.isValid()) continue;
+                Session session = (Session) reply.key.attachment();
+                output.clear();
+                MessageCodec.encode(reply.message, output);
+                try {
+                    writeOutput(reply.key, session);
+                } catch (IOException e) {
+                    close(reply.key);
+                }
+            }
+
+            SelectionKey key;
+            while ((key = positionsReady.poll()) != null) {
+                Session session = (Session) key.attachment();
+                // POSITIONs pushed from now on queue the connection again
+                session.positionsQueued.set(false);
+                if (!key.isValid()) continue;
+                try {
+                    sendPositions(key, session);
+                } catch (IOException e) {
+                    close(key);
+                }
+            }
+        }
+
+        /**
+         * Writes the latest POSITIONs, unless the client has not read the previous output yet;
+         * then they wait in the session, replaced by newer ones, until writePending sends the rest of the output
+         */
+        private void sendPositions(SelectionKey key, Session session) throws IOException {
+            if (session.pendingOutput != null) return;
+            output.clear();
+            for (Map.Entry<Integer, Message> position: session.positions.entrySet()) {
+                if (output.remaining() < MessageCodec.MAX_HEADER_LENGTH + MessageCodec.MAX_FRAME_LENGTH) {
+                    writeOutput(key, session);
+                }
+                MessageCodec.encode(position.getValue(), output);
+                // a newer POSITION pushed in the meantime stays for the next round
+                session.positions.remove(position.getKey(), position.getValue());
+            }
+            writeOutput(key, session);
+        }
+
+        /**
+         * Sends the content of the output buffer; whatever the socket does not take is kept by the session
+         */
+        private void writeOutput(SelectionKey key, Session session) throws IOException {
+            output.flip();
+            // bytes must not overtake output that is still waiting
+            if (session.pendingOutput == null && output.hasRemaining()) {
+                session.channel.write(output);
+            }
+            if (output.hasRemaining()) {
+                appendPending(session, output);
+                // stop reading requests until the client reads responses
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+            output.clear();
+        }
+
+        /**
+         * @throws IOException if the client has not read so much output that it would exceed MAX_PENDING_OUTPUT
+         */
+        private void appendPending(Session session, ByteBuffer bytes) throws IOException {
+            ByteBuffer pending = session.pendingOutput;
+            int size = (pending != null ? pending.position() : 0) + bytes.remaining();
+            if (size > MAX_PENDING_OUTPUT) throw new IOException("Client does not read its responses");
+            if (pending == null) {
+                pending = bytes.remaining() <= pool.getBufferSize()
+                        ? pool.acquire() : ByteBuffer.allocateDirect(bytes.remaining());
+            } else if (pending.remaining() < bytes.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(pending.position() + bytes.remaining());
+                pending.flip();
+                larger.put(pending);
+                pool.release(pending);
+                pending = larger;
+            }
+            pending.put(bytes);
+            session.pendingOutput = pending;
+        }
+
+        private void writePending(SelectionKey key) throws IOException {
+            Session session = (Session) key.attachment();
+            if (session.pendingOutput == null) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+
+            session.pendingOutput.flip();
+            session.channel.write(session.pendingOutput);
+            if (session.pendingOutput.hasRemaining()) {
+                session.pendingOutput.compact();
+                return;
+            }
+
+            pool.release(session.pendingOutput);
+            session.pendingOutput = null;
+            if (session.closeAfterWrite) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+                // POSITIONs held back while the client was reading the previous output
+                if (!session.positions.isEmpty()) sendPositions(key, session);
+            }
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            Session session = (Session) key.attachment();
+            if (session == null) return;
+            try {
+                session.channel.close();
+            } catch (IOException ignored) {}
+            if (session.partialInput != null) pool.release(session.partialInput);
+            if (session.pendingOutput != null) pool.release(session.pendingOutput);
+            session.partialInput = null;
+            session.pendingOutput = null;
+            if (session.sink != null) session.handler.disconnected(session.floor, session.sink);
+        }
+
+        /**
+         * Orders connected clients to exit (best effort - slow clients may not get the message) and closes the selector
+         */
+        private void disconnectAll() {
+            for (SelectionKey key: selector.keys()) {
+                if (key.attachment() instanceof Session) {
+                    Session session = (Session) key.attachment();
+                    if (session.floor >= 0 && session.pendingOutput == null) {
+                        output.clear();
+                        MessageCodec.encode(Message.exit(), output);
+                        output.flip();
+                        try {
+                            session.channel.write(output);
+                        } catch (IOException ignored) {}
+                    }
+                    close(key);
+                }
+            }
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
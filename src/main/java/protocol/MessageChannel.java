@@ -0,0 +1,144 @@
+package main.java.protocol;
+
+import lombok.Getter;
+import lombok.NonNull;
+import main.java.model.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking connection that sends and receives messages in the format of MessageCodec
+ * Sending is thread-safe; receiving must be done by a single thread
+ */
+public class MessageChannel implements Closeable {
+
+    @Getter
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    // lock instead of synchronized, so virtual threads are not pinned while writing
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(MessageCodec.MAX_HEADER_LENGTH + MessageCodec.MAX_FRAME_LENGTH);
+    private final byte[] readBuffer = new byte[MessageCodec.MAX_FRAME_LENGTH];
+
+    public MessageChannel(@NonNull Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    public void send(@NonNull Message message) throws IOException {
+        send(message, true);
+    }
+
+    /**
+     * @param flush false lets the caller send several messages in one packet; the last of them must be flushed
+     */
+    public void send(@NonNull Message message, boolean flush) throws IOException {
+        try {
+            writeLock.lock();
+            writeBuffer.clear();
+            MessageCodec.encode(message, writeBuffer);
+            out.write(writeBuffer.array(), 0, writeBuffer.position());
+            if (flush) out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the queued messages, e.g. the latest update of every item, and flushes the channel
+     * Each message is removed once it has been written, unless a newer one has replaced it in the meantime
+     */
+    public <K> void sendLatest(@NonNull ConcurrentMap<K, Message> latest) throws IOException {
+        try {
+            writeLock.lock();
+            writeLatest(latest);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Same as sendLatest(), but only if no other thread is sending right now, so the caller never waits for the lock
+     * @return false if the channel was busy; the messages stay queued then
+     */
+    public <K> boolean trySendLatest(@NonNull ConcurrentMap<K, Message> latest) throws IOException {
+        if (!writeLock.tryLock()) return false;
+        try {
+            writeLatest(latest);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void flush() throws IOException {
+        try {
+            writeLock.lock();
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private <K> void writeLatest(ConcurrentMap<K, Message> latest) throws IOException {
+        for (Map.Entry<K, Message> entry: latest.entrySet()) {
+            writeBuffer.clear();
+            MessageCodec.encode(entry.getValue(), writeBuffer);
+            out.write(writeBuffer.array(), 0, writeBuffer.position());
+            latest.remove(entry.getKey(), entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * @return true if the next message (or its part) has already arrived, so receive() will not wait for the peer
+     */
+    public boolean hasPendingInput() throws IOException {
+        return in.available() > 0;
+    }
+
+    /**
+     * Blocks until the whole message arrives
+     * @throws EOFException if the peer closed the connection
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public Message receive() throws IOException {
+        int length = readLength();
+        if (length == 0 || length > MessageCodec.MAX_FRAME_LENGTH) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+        if (in.readNBytes(readBuffer, 0, length) < length) throw new EOFException();
+        return MessageCodec.decode(ByteBuffer.wrap(readBuffer, 0, length));
+    }
+
+    private int readLength() throws IOException {
+        int length = 0;
+        for (int i = 0; i < MessageCodec.MAX_HEADER_LENGTH; i++) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) return length;
+        }
+        throw new ProtocolException("Frame length prefix too long");
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
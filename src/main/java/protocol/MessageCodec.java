@@ -0,0 +1,302 @@
+package main.java.protocol;
+
+import lombok.NonNull;
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary wire format of the messages
+ *
+ * Every message is sent as a frame: varint length of the body, followed by the body -
+ * one-byte opcode (see MessageType) and the fields of the message, each encoded as unsigned varint
+ * Decoders ignore bytes left in the body after the known fields, so new fields can be appended
+ * at the end of existing messages without breaking older peers
+ *
+ * Connection starts with HELLO sent by the client, carrying the range of versions it supports
+ * and optionally the floor of the client; server answers with WELCOME carrying the highest common version
+ * and the floor assigned to the client, or with REJECTED
+ * HELLO of a client from other building than the first one ends with the floor increased by 1 (0 if server
+ * should choose it) and the building, so HELLOs of clients that know nothing about buildings stay the same
+ *
+ * Version 2 lets the client keep many pickups outstanding: PICKUP may end with a correlation ID,
+ * which is echoed by its ASSIGNMENT or REFUSED, and PICKUP_BATCH / RESULT_BATCH carry
+ * a varint count followed by that many nested frames
+ *
+ * Version 3 lets a panel follow elevators: after SUBSCRIBE the server pushes POSITIONs of the elevator
+ * (elevator, floor, next floor, one byte 'moving', eta + 1) whenever it changes, until UNSUBSCRIBE
+ */
+public final class MessageCodec {
+
+    // version of the protocol implemented by this class
+    public static final int PROTOCOL_VERSION = 3;
+    // oldest version this implementation can still talk
+    public static final int MIN_SUPPORTED_VERSION = 1;
+
+    public static final int MAX_FRAME_LENGTH = 4096;
+    // frame length prefix takes at most that many bytes
+    public static final int MAX_HEADER_LENGTH = 2;
+
+    private MessageCodec() {}
+
+    /**
+     * @return highest version supported by both peers, or -1 if there is no such version
+     */
+    public static int negotiateVersion(int peerMinVersion, int peerMaxVersion) {
+        int version = Math.min(peerMaxVersion, PROTOCOL_VERSION);
+        return version >= Math.max(peerMinVersion, MIN_SUPPORTED_VERSION) ? version : -1;
+    }
+
+    /**
+     * Writes the message as a complete frame
+     * @throws java.nio.BufferOverflowException if there is not enough space left in the buffer
+     */
+    public static void encode(@NonNull Message message, @NonNull ByteBuffer out) {
+        int length = bodyLength(message);
+        if (length > MAX_FRAME_LENGTH) throw new IllegalArgumentException("Message too long: " + length + " bytes");
+        putVarint(out, length);
+        out.put(message.type.opcode);
+        switch (message.type) {
+            case HELLO:
+                putVarint(out, message.version);
+                putVarint(out, message.maxVersion);
+                if (message.building > 0) {
+                    putVarint(out, message.floor + 1);
+                    putVarint(out, message.building);
+                } else if (message.floor >= 0) {
+                    putVarint(out, message.floor);
+                }
+                break;
+            case WELCOME:
+                putVarint(out, message.version);
+                putVarint(out, message.floor);
+                break;
+            case REJECTED:
+                putVarint(out, message.reason.code);
+                break;
+            case PICKUP:
+                putVarint(out, message.floor);
+                putCorrelation(out, message);
+                break;
+            case ASSIGNMENT:
+                putVarint(out, message.floor);
+                putVarint(out, message.elevator);
+                putCorrelation(out, message);
+                break;
+            case REFUSED:
+                putVarint(out, message.floor);
+                putVarint(out, message.reason.code);
+                putCorrelation(out, message);
+                break;
+            case PICKUP_BATCH:
+            case RESULT_BATCH:
+                putVarint(out, message.entries.size());
+                for (Message entry: message.entries) {
+                    encode(entry, out);
+                }
+                break;
+            case SUBSCRIBE:
+            case UNSUBSCRIBE:
+                putVarint(out, message.elevator);
+                break;
+            case POSITION:
+                putVarint(out, message.elevator);
+                putVarint(out, message.floor);
+                putVarint(out, message.nextFloor);
+                out.put((byte) (message.moving ? 1 : 0));
+                // -1 becomes 0, so it fits in an unsigned varint
+                putVarint(out, message.eta + 1);
+                break;
+            case EXIT:
+                break;
+        }
+    }
+
+    /**
+     * Reads the message from the body of a frame (without its length prefix)
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static Message decode(@NonNull ByteBuffer body) {
+        try {
+            MessageType type = MessageType.fromOpcode(body.get());
+            switch (type) {
+                case HELLO:
+                    int minVersion = getVarint(body);
+                    int maxVersion = getVarint(body);
+                    // requested floor is optional
+                    int requestedFloor = body.hasRemaining() ? getVarint(body) : -1;
+                    if (!body.hasRemaining()) return Message.hello(minVersion, maxVersion, requestedFloor);
+                    return Message.hello(minVersion, maxVersion, requestedFloor - 1, getVarint(body));
+                case WELCOME:
+                    int version = getVarint(body);
+                    return Message.welcome(version, getVarint(body));
+                case REJECTED:
+                    return Message.rejected(Reason.fromCode(getVarint(body)));
+                case PICKUP:
+                    return Message.pickup(getVarint(body), getCorrelation(body));
+                case ASSIGNMENT:
+                    int floor = getVarint(body);
+                    int elevator = getVarint(body);
+                    return Message.assignment(floor, elevator, getCorrelation(body));
+                case REFUSED:
+                    int refusedFloor = getVarint(body);
+                    Reason reason = Reason.fromCode(getVarint(body));
+                    return Message.refused(refusedFloor, reason, getCorrelation(body));
+                case PICKUP_BATCH:
+                    return Message.pickupBatch(getEntries(body));
+                case RESULT_BATCH:
+                    return Message.resultBatch(getEntries(body));
+                case SUBSCRIBE:
+                    return Message.subscribe(getVarint(body));
+                case UNSUBSCRIBE:
+                    return Message.unsubscribe(getVarint(body));
+                case POSITION:
+                    int positionElevator = getVarint(body);
+                    int positionFloor = getVarint(body);
+                    int nextFloor = getVarint(body);
+                    boolean moving = body.get() != 0;
+                    return Message.position(positionElevator, positionFloor, nextFloor, moving, getVarint(body) - 1);
+                case EXIT:
+                    return Message.exit();
+                default:
+                    throw new IllegalArgumentException("Unrecognized message type: " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame");
+        }
+    }
+
+    /**
+     * Takes one complete frame from the buffer, if there is one; used by non-blocking readers
+     * @param in buffer in read mode; its position is moved past the frame only if the frame was complete
+     * @return decoded message, or null if the buffer does not contain the whole frame yet
+     * @throws ProtocolException if the length of the frame is invalid, so the stream cannot be split into frames
+     * @throws IllegalArgumentException if the body of the frame is malformed; the frame is skipped anyway
+     */
+    public static Message tryDecode(@NonNull ByteBuffer in) throws ProtocolException {
+        int start = in.position();
+        int length = 0;
+        for (int i = 0; ; i++) {
+            if (!in.hasRemaining()) {
+                in.position(start);
+                return null;
+            }
+            if (i == MAX_HEADER_LENGTH) throw new ProtocolException("Frame length prefix too long");
+            byte b = in.get();
+            length |= (b & 0x7F) << (7 * i);
+            if (b >= 0) break;
+        }
+        if (length == 0 || length > MAX_FRAME_LENGTH) throw new ProtocolException("Invalid frame length: " + length);
+        if (in.remaining() < length) {
+            in.position(start);
+            return null;
+        }
+
+        int end = in.position() + length;
+        ByteBuffer body = in.duplicate();
+        body.limit(end);
+        in.position(end);
+        return decode(body);
+    }
+
+    // correlation ID is optional, so it is the last field of the message
+    private static void putCorrelation(ByteBuffer out, Message message) {
+        if (message.correlation >= 0) putVarint(out, message.correlation);
+    }
+
+    private static int getCorrelation(ByteBuffer body) {
+        return body.hasRemaining() ? getVarint(body) : -1;
+    }
+
+    private static int correlationLength(Message message) {
+        return message.correlation >= 0 ? varintLength(message.correlation) : 0;
+    }
+
+    private static List<Message> getEntries(ByteBuffer body) {
+        int count = getVarint(body);
+        if (count == 0 || count > Message.MAX_BATCH_SIZE) throw new IllegalArgumentException("Invalid size of batch: " + count);
+        List<Message> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = getVarint(body);
+            if (length == 0 || length > body.remaining()) throw new IllegalArgumentException("Invalid length of nested frame: " + length);
+            ByteBuffer entry = body.duplicate();
+            entry.limit(body.position() + length);
+            body.position(body.position() + length);
+            entries.add(decode(entry));
+        }
+        return entries;
+    }
+
+    private static int bodyLength(Message message) {
+        int length = 1;
+        switch (message.type) {
+            case HELLO:
+                int helloLength = length + varintLength(message.version) + varintLength(message.maxVersion);
+                if (message.building > 0) return helloLength + varintLength(message.floor + 1) + varintLength(message.building);
+                return helloLength + (message.floor >= 0 ? varintLength(message.floor) : 0);
+            case WELCOME:
+                return length + varintLength(message.version) + varintLength(message.floor);
+            case REJECTED:
+                return length + varintLength(message.reason.code);
+            case PICKUP:
+                return length + varintLength(message.floor) + correlationLength(message);
+            case ASSIGNMENT:
+                return length + varintLength(message.floor) + varintLength(message.elevator) + correlationLength(message);
+            case REFUSED:
+                return length + varintLength(message.floor) + varintLength(message.reason.code) + correlationLength(message);
+            case PICKUP_BATCH:
+            case RESULT_BATCH:
+                length += varintLength(message.entries.size());
+                for (Message entry: message.entries) {
+                    int entryLength = bodyLength(entry);
+                    length += varintLength(entryLength) + entryLength;
+                }
+                return length;
+            case SUBSCRIBE:
+            case UNSUBSCRIBE:
+                return length + varintLength(message.elevator);
+            case POSITION:
+                return length + varintLength(message.elevator) + varintLength(message.floor)
+                        + varintLength(message.nextFloor) + 1 + varintLength(message.eta + 1);
+            default:
+                return length;
+        }
+    }
+
+    // ---------------
+
+    static int varintLength(int value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value cannot be sent: " + value);
+        int length = 1;
+        while ((value >>>= 7) != 0) length++;
+        return length;
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value cannot be sent: " + value);
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) throw new IllegalArgumentException("Varint out of range");
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
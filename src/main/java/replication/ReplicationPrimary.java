@@ -0,0 +1,258 @@
+package main.java.replication;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.journal.RouteJournal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Primary side of the active/standby replication: streams the records of the RouteJournals of all buildings
+ * to one StandbyReplica, which takes over when the stream stops
+ *
+ * Records are queued by the elevators (while holding their locks, so the records of an elevator keep their order)
+ * and sent by the thread of the connection, HEARTBEAT_MILLIS apart at most - a heartbeat when there are none.
+ * The standby answers with the number of the last record it has appended. A pickup is answered only when
+ * every record queued before the answer is acknowledged (see replicated), so the standby knows every route
+ * promised to a passenger. Without a standby pickups are answered at once
+ *
+ * Frames sent to the standby: RECORD (building, number, length and body of the record) and HEARTBEAT
+ */
+public class ReplicationPrimary implements AutoCloseable {
+
+    public static final long HEARTBEAT_MILLIS = 50;
+    // the standby is dropped when its queue grows beyond this, so a stuck standby does not stop the server
+    private static final int MAX_QUEUED_BYTES = 64 << 20;
+
+    static final byte RECORD = 1;
+    static final byte HEARTBEAT = 2;
+    // kind, building, number and length
+    static final int RECORD_HEADER = 1 + 4 + 8 + 4;
+
+    private static final CompletableFuture<Void> REPLICATED = CompletableFuture.completedFuture(null);
+
+    private final ServerSocket serverSocket;
+    private final List<RouteJournal> journals;
+    private final Thread acceptor;
+    // logs the failures of the standby and of the connection with it
+    private final EventLog events;
+    private volatile boolean closed = false;
+
+    // all guarded by this
+    // connection of the standby, null if there is none
+    private Socket standby;
+    // records not sent yet, and the buffer being sent by the thread of the connection
+    private ByteBuffer queued = ByteBuffer.allocate(64 << 10);
+    private ByteBuffer sending = ByteBuffer.allocate(64 << 10);
+    // numbers of the last queued and the last acknowledged record of the current standby
+    private long enqueued;
+    private long acknowledged;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    /**
+     * @param journals journal of every building, indexed by ID; the records of all of them are replicated
+     */
+    public ReplicationPrimary(int port, @NonNull List<RouteJournal> journals, @NonNull EventLog events) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.journals = journals;
+        this.events = events;
+        this.acceptor = new Thread(this::acceptLoop, "Replication primary");
+        this.acceptor.setDaemon(true);
+        for (int building = 0; building < journals.size(); building++) {
+            int id = building;
+            journals.get(building).replicateTo(record -> enqueue(id, record));
+        }
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    /**
+     * @return future completed when the standby has acknowledged every record queued so far;
+     * already completed if there is no standby
+     */
+    public CompletableFuture<Void> replicated() {
+        synchronized (this) {
+            if (standby == null || acknowledged >= enqueued) return REPLICATED;
+            Waiter waiter = new Waiter(enqueued);
+            waiters.add(waiter);
+            return waiter.future;
+        }
+    }
+
+    private synchronized void enqueue(int building, ByteBuffer record) {
+        if (standby == null) return;
+        int length = record.remaining();
+        if (queued.remaining() < RECORD_HEADER + length) {
+            if (queued.position() + RECORD_HEADER + length > MAX_QUEUED_BYTES) {
+                events.standbyTooSlow();
+                // called by an elevator holding its lock, so the pickups are answered by another thread
+                List<Waiter> released = disconnect(standby);
+                CompletableFuture.runAsync(() -> released.forEach(Waiter::complete));
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(queued.position() + RECORD_HEADER + length) << 1);
+            queued = larger.put(queued.flip());
+        }
+        queued.put(RECORD).putInt(building).putLong(++enqueued).putInt(length);
+        queued.put(record.array(), record.arrayOffset() + record.position(), length);
+        notifyAll();
+    }
+
+    // ---------------
+    // threads of the connection
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout((int) StandbyReplica.TAKEOVER_MILLIS);
+            } catch (IOException e) {
+                if (!closed) events.acceptFailed(serverSocket.getLocalPort(), e);
+                continue;
+            }
+            synchronized (this) {
+                standby = socket;
+                queued.clear();
+                enqueued = 0;
+                acknowledged = 0;
+            }
+            System.out.println("[Replication] standby connected from " + socket.getRemoteSocketAddress());
+            // the standby starts from the whole state; records queued before it are ignored there
+            for (RouteJournal journal: journals) {
+                journal.replicateStates();
+            }
+            Thread acknowledgements = new Thread(() -> readAcknowledgements(socket), "Replication acknowledgements");
+            acknowledgements.setDaemon(true);
+            acknowledgements.start();
+            send(socket);
+        }
+    }
+
+    /**
+     * Sends the queued records until the standby disconnects
+     */
+    private void send(Socket socket) {
+        try {
+            OutputStream out = socket.getOutputStream();
+            while (!closed) {
+                ByteBuffer batch;
+                synchronized (this) {
+                    if (standby != socket) return;
+                    if (queued.position() == 0) wait(HEARTBEAT_MILLIS);
+                    if (standby != socket) return;
+                    batch = queued;
+                    queued = sending;
+                    sending = batch;
+                }
+                if (batch.position() == 0) {
+                    out.write(HEARTBEAT);
+                } else {
+                    out.write(batch.array(), 0, batch.position());
+                    batch.clear();
+                }
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            List<Waiter> released;
+            synchronized (this) {
+                released = disconnect(socket);
+            }
+            released.forEach(Waiter::complete);
+        }
+    }
+
+    /**
+     * The standby answers every frame it has read with the number of the last record it has appended,
+     * so a silent standby is dead
+     */
+    private void readAcknowledgements(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                long number = in.readLong();
+                List<Waiter> completed = new ArrayList<>();
+                synchronized (this) {
+                    if (standby != socket) return;
+                    acknowledged = Math.max(acknowledged, number);
+                    while (!waiters.isEmpty() && waiters.peekFirst().record <= acknowledged) {
+                        completed.add(waiters.pollFirst());
+                    }
+                }
+                completed.forEach(Waiter::complete);
+            }
+        } catch (IOException e) {
+            List<Waiter> released;
+            synchronized (this) {
+                if (standby != socket) return;
+                released = disconnect(socket);
+            }
+            events.standbyLost(e);
+            released.forEach(Waiter::complete);
+        }
+    }
+
+    /**
+     * Forgets the standby; pickups waiting for it are answered, the server continues alone
+     * Called while holding the lock of this
+     * @return waiters to complete after releasing the lock
+     */
+    private List<Waiter> disconnect(Socket socket) {
+        if (socket == null || standby != socket) return List.of();
+        standby = null;
+        queued.clear();
+        List<Waiter> released = new ArrayList<>(waiters);
+        waiters.clear();
+        notifyAll();
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+        return released;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (RouteJournal journal: journals) {
+            journal.replicateTo(null);
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {}
+        List<Waiter> released;
+        synchronized (this) {
+            released = disconnect(standby);
+        }
+        released.forEach(Waiter::complete);
+    }
+
+    /**
+     * Pickup answered when the record with given number is acknowledged
+     */
+    private static class Waiter {
+
+        private final long record;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Waiter(long record) {
+            this.record = record;
+        }
+
+        private void complete() {
+            future.complete(null);
+        }
+    }
+}
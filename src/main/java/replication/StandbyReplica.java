@@ -0,0 +1,133 @@
+package main.java.replication;
+
+import lombok.NonNull;
+import main.java.journal.ReplicaJournal;
+import main.java.journal.RouteJournal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Standby side of the active/standby replication: follows ReplicationPrimary and appends its records
+ * to a ReplicaJournal of every building, acknowledging them right after appending
+ *
+ * The standby waits (retrying every RETRY_MILLIS) until a primary accepts it. When the stream stops -
+ * the connection breaks or nothing, not even a heartbeat, arrives for TAKEOVER_MILLIS - the standby takes over:
+ * it closes the replicas, and the server starts as a primary from the journal they left
+ */
+public class StandbyReplica {
+
+    public static final long TAKEOVER_MILLIS = 300;
+    public static final long RETRY_MILLIS = 100;
+
+    private final InetSocketAddress primary;
+    private final List<ReplicaJournal> replicas;
+    private byte[] body = new byte[256];
+
+    /**
+     * @param replicas replica of every building, indexed by ID
+     */
+    public StandbyReplica(@NonNull InetSocketAddress primary, @NonNull List<ReplicaJournal> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+    /**
+     * Follows the primary until it is lost
+     * @throws IOException if the replicas cannot be written, so the standby cannot take over
+     */
+    public void awaitTakeover() throws IOException, InterruptedException {
+        Socket socket = connect();
+        System.out.println("[Standby] following primary " + primary);
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) TAKEOVER_MILLIS);
+            follow(socket);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            System.out.println("[Standby] primary lost (" + e + "), taking over");
+        } finally {
+            socket.close();
+            for (ReplicaJournal replica: replicas) {
+                replica.close();
+            }
+        }
+    }
+
+    private Socket connect() throws InterruptedException {
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(primary, (int) TAKEOVER_MILLIS);
+                return socket;
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {}
+                Thread.sleep(RETRY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Appends the records until the connection breaks; every batch of frames read at once is acknowledged
+     * with the number of its last record, heartbeats included, so the primary knows the standby is alive
+     * @throws UncheckedIOException if the replicas cannot be written - unlike IOException, it does not mean
+     * the primary is lost
+     */
+    private void follow(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        long appended = 0;
+        long flushed = System.currentTimeMillis();
+        while (true) {
+            byte kind = in.readByte();
+            if (kind == ReplicationPrimary.RECORD) {
+                int building = in.readInt();
+                appended = in.readLong();
+                int length = in.readInt();
+                if (body.length < length) body = new byte[Integer.highestOneBit(length) << 1];
+                in.readFully(body, 0, length);
+                if (building < replicas.size()) append(replicas.get(building), ByteBuffer.wrap(body, 0, length));
+            } else if (kind != ReplicationPrimary.HEARTBEAT) {
+                throw new IOException("Unrecognized replication frame: " + kind);
+            }
+
+            if (in.available() == 0) {
+                out.writeLong(appended);
+                out.flush();
+            }
+            // records survive a crash of this process as soon as they are appended, flushing protects them from the OS
+            if (System.currentTimeMillis() - flushed >= RouteJournal.FLUSH_MILLIS) {
+                flush();
+                flushed = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static void append(ReplicaJournal replica, ByteBuffer record) {
+        try {
+            replica.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() {
+        try {
+            for (ReplicaJournal replica: replicas) {
+                replica.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package main.java.simulation;
+
+import lombok.NonNull;
+import main.java.dispatch.DispatchStrategies;
+import main.java.loadgen.Traffic;
+import main.java.loadgen.TrafficProfile;
+import main.java.model.BatchDispatcher;
+import main.java.model.CarKinematics;
+import main.java.model.DemandModel;
+import main.java.model.ElevatorManager;
+import main.java.model.PassengerTracker;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sizes a building without starting the server: simulates every combination of the given floors, numbers of cars,
+ * kinematics, dispatch strategies, parking of idle cars and traffic profiles (see DiscreteEventScheduler) and reports wait and journey times
+ * of passengers and utilization of the cars
+ *
+ * Every scenario is a separate ElevatorManager driven by its own scheduler on one thread, so scenarios run in parallel
+ * on a ForkJoinPool; the same seed gives every scenario with the same floors and profile the same traffic
+ *
+ * Arguments (all optional), lists separated by commas:
+ *  - floors:20,40
+ *  - cars:4,8,32
+ *  - kinematics:3000/0/5000,1500/1000/4000 - floor/start-stop/dwell milliseconds of every car (see CarKinematics)
+ *  - strategies:greedy,joint/100 - strategy names, a window in milliseconds after / dispatches with BatchDispatcher
+ *  - parking:off,on - whether idle cars stay where they stopped or are parked where DemandModel expects calls,
+ *    learned during the run; off by default, both compare the wait times
+ *  - profiles:up-peak,lunch (see TrafficProfile)
+ *  - calls:2000, rate:0.5 (calls per second), seed:1
+ *  - threads:N - parallelism of the pool, number of processors by default
+ *  - out:results.csv or out:results.json - the results are also written there
+ */
+public class CapacityPlanner {
+
+    private static final String[] COLUMNS = {"floors", "cars", "kinematics", "strategy", "parking", "profile", "calls", "delivered",
+            "avg_wait_s", "p95_wait_s", "avg_journey_s", "p95_journey_s", "avg_utilization", "max_utilization", "simulated_s"};
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> floors = List.of(20);
+        List<Integer> cars = List.of(4);
+        List<CarKinematics> kinematics = List.of(CarKinematics.DEFAULT);
+        List<String> strategies = DispatchStrategies.names();
+        List<Boolean> parking = List.of(false);
+        List<TrafficProfile> profiles = Arrays.asList(TrafficProfile.values());
+        int calls = 2000;
+        double rate = 0.5;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+
+        for (String arg: args) {
+            String value = arg.substring(arg.indexOf(':') + 1);
+            if (arg.startsWith("floors:")) {
+                floors = parseList(value, Integer::parseInt);
+            } else if (arg.startsWith("cars:")) {
+                cars = parseList(value, Integer::parseInt);
+            } else if (arg.startsWith("kinematics:")) {
+                kinematics = parseList(value, CarKinematics::parse);
+            } else if (arg.startsWith("strategies:")) {
+                strategies = parseList(value, String::trim);
+            } else if (arg.startsWith("parking:")) {
+                parking = parseList(value, CapacityPlanner::parseSwitch);
+            } else if (arg.startsWith("profiles:")) {
+                profiles = parseList(value, TrafficProfile::parse);
+            } else if (arg.startsWith("calls:")) {
+                calls = Integer.parseInt(value);
+            } else if (arg.startsWith("rate:")) {
+                rate = Double.parseDouble(value);
+            } else if (arg.startsWith("seed:")) {
+                seed = Long.parseLong(value);
+            } else if (arg.startsWith("threads:")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("out:")) {
+                out = Paths.get(value);
+            } else {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            }
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int floorCount: floors) {
+            for (int carCount: cars) {
+                for (CarKinematics car: kinematics) {
+                    for (String strategy: strategies) {
+                        for (boolean parked: parking) {
+                            for (TrafficProfile profile: profiles) {
+                                scenarios.add(new Scenario(floorCount, carCount, car, strategy, parked, profile, calls, rate, seed));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.printf("%d scenarios, %d calls each, %.2f calls per second, %d threads%n", scenarios.size(), calls, rate, threads);
+        long start = System.nanoTime();
+        List<Result> results = run(scenarios, threads);
+        System.out.printf("Simulated in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        print(results);
+        if (out != null) {
+            write(results, out);
+            System.out.println("Results written to " + out);
+        }
+    }
+
+    /**
+     * @return results in the order of the scenarios
+     */
+    public static List<Result> run(@NonNull List<Scenario> scenarios, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>(scenarios.size());
+            for (Scenario scenario: scenarios) {
+                tasks.add(pool.submit(scenario::simulate));
+            }
+            List<Result> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<Result> task: tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <T> List<T> parseList(String value, Function<String, T> parser) {
+        return Arrays.stream(value.split(",")).map(parser).collect(Collectors.toList());
+    }
+
+    private static boolean parseSwitch(String value) {
+        switch (value.trim()) {
+            case "on": return true;
+            case "off": return false;
+            default: throw new IllegalArgumentException("Expected on or off: " + value);
+        }
+    }
+
+    private static void print(List<Result> results) {
+        System.out.printf("%6s %5s %-18s %-12s %-7s %-12s %10s %10s %10s %10s %8s %12s%n", "floors", "cars", "kinematics",
+                "strategy", "parking", "profile", "avg wait", "p95 wait", "avg jrny", "p95 jrny", "util", "undelivered");
+        for (Result result: results) {
+            Scenario scenario = result.scenario;
+            System.out.printf(Locale.ROOT, "%6d %5d %-18s %-12s %-7s %-12s %9.1fs %9.1fs %9.1fs %9.1fs %7.1f%% %12d%n",
+                    scenario.floors, scenario.cars, scenario.kinematics, scenario.strategy,
+                    scenario.parking ? "on" : "off", scenario.profile.name().toLowerCase(), result.averageWait, result.p95Wait, result.averageJourney, result.p95Journey,
+                    result.averageUtilization * 100, scenario.calls - result.delivered);
+        }
+    }
+
+    /**
+     * Writes JSON if the name of the file ends with .json, CSV otherwise
+     */
+    private static void write(List<Result> results, Path out) throws IOException {
+        Path parent = out.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        boolean json = out.getFileName().toString().endsWith(".json");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out))) {
+            if (json) {
+                writer.println("[");
+                for (int i = 0; i < results.size(); i++) {
+                    List<Object> values = results.get(i).values();
+                    List<String> fields = new ArrayList<>(COLUMNS.length);
+                    for (int j = 0; j < COLUMNS.length; j++) {
+                        Object value = values.get(j);
+                        fields.add("\"" + COLUMNS[j] + "\": " + (value instanceof String ? "\"" + value + "\"" : format(value)));
+                    }
+                    writer.println("  {" + String.join(", ", fields) + "}" + (i < results.size() - 1 ? "," : ""));
+                }
+                writer.println("]");
+            } else {
+                writer.println(String.join(",", COLUMNS));
+                for (Result result: results) {
+                    writer.println(result.values().stream().map(CapacityPlanner::format).collect(Collectors.joining(",")));
+                }
+            }
+        }
+    }
+
+    private static String format(Object value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.3f", (Double) value) : value.toString();
+    }
+
+    /**
+     * One building configuration under one kind of traffic
+     */
+    public static class Scenario {
+        private final int floors;
+        private final int cars;
+        private final CarKinematics kinematics;
+        // name of the strategy, optionally followed by / and the window of BatchDispatcher in milliseconds
+        private final String strategy;
+        // idle cars are parked where calls are expected
+        private final boolean parking;
+        private final TrafficProfile profile;
+        private final int calls;
+        private final double rate;
+        private final long seed;
+
+        public Scenario(int floors, int cars, @NonNull CarKinematics kinematics, @NonNull String strategy,
+                        @NonNull TrafficProfile profile, int calls, double rate, long seed) {
+            this(floors, cars, kinematics, strategy, false, profile, calls, rate, seed);
+        }
+
+        /**
+         * @param parking whether idle cars are parked where DemandModel expects calls
+         */
+        public Scenario(int floors, int cars, @NonNull CarKinematics kinematics, @NonNull String strategy, boolean parking,
+                        @NonNull TrafficProfile profile, int calls, double rate, long seed) {
+            if (floors < 2) throw new IllegalArgumentException("Building needs at least 2 floors: " + floors);
+            if (cars < 1) throw new IllegalArgumentException("Building needs at least 1 elevator: " + cars);
+            this.floors = floors;
+            this.cars = cars;
+            this.kinematics = kinematics;
+            this.strategy = strategy;
+            this.parking = parking;
+            this.profile = profile;
+            this.calls = calls;
+            this.rate = rate;
+            this.seed = seed;
+            // unknown names fail here rather than in the middle of the run
+            DispatchStrategies.byName(strategyName());
+        }
+
+        /**
+         * Replays the traffic until every passenger is delivered; not thread-safe, but scenarios are independent
+         */
+        public Result simulate() {
+            DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+            ElevatorManager manager = new ElevatorManager(Collections.nCopies(cars, kinematics), new AtomicBoolean(true),
+                    scheduler, DispatchStrategies.byName(strategyName()),
+                    new ElevatorManager.Options().demand(parking ? new DemandModel(floors) : null));
+            long window = batchWindow();
+            BatchDispatcher dispatcher = window > 0 ? new BatchDispatcher(manager, window) : null;
+
+            Traffic traffic = Traffic.synthetic(profile, floors, calls, rate, seed);
+            for (int i = 0; i < traffic.size(); i++) {
+                int from = traffic.getFrom()[i];
+                int to = traffic.getTo()[i];
+                scheduler.schedule(traffic.getTimes()[i], () -> {
+                    if (dispatcher != null) {
+                        dispatcher.dispatch(from, to);
+                    } else {
+                        manager.askForElevator(from, to);
+                    }
+                });
+            }
+            scheduler.runUntilIdle();
+            return new Result(this, manager.getPassengerTracker(), scheduler.now());
+        }
+
+        private String strategyName() {
+            int slash = strategy.indexOf('/');
+            return slash < 0 ? strategy : strategy.substring(0, slash);
+        }
+
+        private long batchWindow() {
+            int slash = strategy.indexOf('/');
+            return slash < 0 ? 0 : Long.parseLong(strategy.substring(slash + 1));
+        }
+    }
+
+    /**
+     * Times in seconds, utilization from 0 to 1
+     */
+    public static class Result {
+        private final Scenario scenario;
+        private final long delivered;
+        private final double averageWait;
+        private final double p95Wait;
+        private final double averageJourney;
+        private final double p95Journey;
+        private final double averageUtilization;
+        private final double maxUtilization;
+        private final double simulatedSeconds;
+
+        private Result(Scenario scenario, PassengerTracker tracker, long simulatedMillis) {
+            this.scenario = scenario;
+            this.delivered = tracker.getDeliveredPassengers();
+            this.averageWait = tracker.getWaitTime().getMeanMillis() / 1000;
+            this.p95Wait = tracker.getWaitTime().getPercentileMillis(95) / 1000;
+            this.averageJourney = tracker.getJourneyTime().getMeanMillis() / 1000;
+            this.p95Journey = tracker.getJourneyTime().getPercentileMillis(95) / 1000;
+            double total = 0, max = 0;
+            for (int i = 0; i < scenario.cars; i++) {
+                double utilization = tracker.getUtilization(i);
+                total += utilization;
+                max = Math.max(max, utilization);
+            }
+            this.averageUtilization = total / scenario.cars;
+            this.maxUtilization = max;
+            this.simulatedSeconds = simulatedMillis / 1000.0;
+        }
+
+        /**
+         * @return values of the COLUMNS
+         */
+        private List<Object> values() {
+            return List.of(scenario.floors, scenario.cars, scenario.kinematics.toString(), scenario.strategy,
+                    scenario.parking ? "on" : "off", scenario.profile.name().toLowerCase(), scenario.calls, delivered, averageWait, p95Wait,
+                    averageJourney, p95Journey, averageUtilization, maxUtilization, simulatedSeconds);
+        }
+    }
+}
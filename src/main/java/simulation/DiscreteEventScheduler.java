@@ -0,0 +1,126 @@
+package main.java.simulation;
+
+import lombok.NonNull;
+import main.java.threads.Elevator;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Scheduler that simulates the elevators instead of running them in real time
+ * Elevator threads are never started; their departures and arrivals are events in a priority queue
+ * and the clock jumps from one event to the next, so hours of traffic can be replayed in milliseconds
+ *
+ * This class is not thread-safe - the simulation, including all calls to ElevatorManager, must be driven
+ * from a single thread, e.g. by tasks scheduled with schedule()
+ */
+public class DiscreteEventScheduler implements ElevatorScheduler {
+
+    private final PriorityQueue<ElevatorEvent> events = new PriorityQueue<>();
+    // active[ID] is true if the elevator has pending departure or arrival event
+    private boolean[] active = new boolean[0];
+
+    private long now = 0;
+    private long sequence = 0;
+    private ArrivalListener arrivalListener = null;
+
+    /**
+     * Observer of the simulation, e.g. benchmark tracking passengers
+     */
+    @FunctionalInterface
+    public interface ArrivalListener {
+        void arrived(Elevator elevator, long time);
+    }
+
+    /**
+     * @param listener called after every arrival of every elevator; null removes the listener
+     */
+    public void setArrivalListener(ArrivalListener listener) {
+        this.arrivalListener = listener;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public void start(List<Elevator> elevators) {
+        this.active = new boolean[elevators.size()];
+        // elevators recovered from a journal continue their routes
+        for (Elevator elevator: elevators) {
+            if (!elevator.getSnapshot().hasEmptyRoute()) floorAdded(elevator);
+        }
+    }
+
+    @Override
+    public void floorAdded(Elevator elevator) {
+        if (active[elevator.getID()]) return;
+        active[elevator.getID()] = true;
+        push(now, ElevatorEvent.Type.DEPARTURE, elevator, null);
+    }
+
+    /**
+     * Schedules action to be executed by the simulation, e.g. passenger asking for elevator
+     * @param time moment of the execution; cannot be earlier than current time
+     * @param task action to execute
+     */
+    @Override
+    public void schedule(long time, @NonNull Runnable task) {
+        if (time < now) throw new IllegalArgumentException("Cannot schedule task in the past: " + time + " < " + now);
+        push(time, ElevatorEvent.Type.TASK, null, task);
+    }
+
+    /**
+     * Processes next event and moves the clock to its time
+     * @return false if there were no events left
+     */
+    public boolean step() {
+        ElevatorEvent event = events.poll();
+        if (event == null) return false;
+        now = event.time;
+
+        switch (event.type) {
+            case DEPARTURE:
+                long rideTime = event.elevator.departToNextFloor();
+                if (rideTime < 0) {
+                    // no requested floors - elevator waits until floorAdded() wakes it up
+                    active[event.elevator.getID()] = false;
+                } else {
+                    push(now + rideTime, ElevatorEvent.Type.ARRIVAL, event.elevator, null);
+                }
+                break;
+            case ARRIVAL:
+                event.elevator.arriveAtNextFloor();
+                if (arrivalListener != null) arrivalListener.arrived(event.elevator, now);
+                push(now + event.elevator.getKinematics().getDwellMillis(), ElevatorEvent.Type.DEPARTURE, event.elevator, null);
+                break;
+            case TASK:
+                event.task.run();
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Processes all events up to given time (inclusive) and sets the clock to it
+     * @param time moment at which the simulation stops
+     */
+    public void runUntil(long time) {
+        while (!events.isEmpty() && events.peek().time <= time) {
+            step();
+        }
+        now = Math.max(now, time);
+    }
+
+    /**
+     * Processes events until all tasks are executed and all elevators have empty queues
+     */
+    public void runUntilIdle() {
+        while (step()) ;
+    }
+
+    private void push(long time, ElevatorEvent.Type type, Elevator elevator, Runnable task) {
+        events.add(new ElevatorEvent(time, sequence++, type, elevator, task));
+    }
+}
@@ -0,0 +1,173 @@
+package main.java.simulation;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.dispatch.DispatchStrategy;
+import main.java.dispatch.JointInsertionStrategy;
+import main.java.model.BatchDispatcher;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorManager;
+import main.java.model.ElevatorSnapshot;
+import main.java.threads.Elevator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares dispatch strategies and engines on the same simulated traffic (see DiscreteEventScheduler)
+ * Every strategy is run with immediate dispatch, and the joint one also with BatchDispatcher windows
+ * Passengers board when their elevator stops at their floor and leave it at their destination,
+ * so waiting and travel times are measured the way passengers would experience them
+ *
+ * Arguments (all optional): floors, elevators, number of calls, average interval between calls in milliseconds, seed,
+ * kinematics of the elevators (see CarKinematics.parseFleet)
+ */
+public class DispatchBenchmark {
+
+    private static final long[] WINDOWS = {50, 100, 200};
+
+    public static void main(String[] args) {
+        int floors = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int elevators = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long interval = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        String kinematics = args.length > 5 ? args[5] : CarKinematics.DEFAULT.toString();
+        List<CarKinematics> cars = CarKinematics.parseFleet(kinematics, elevators);
+
+        System.out.printf("%d floors, %d elevators (%s), %d calls every %d ms on average%n", floors, elevators, kinematics, calls, interval);
+        System.out.printf("%-12s %10s %10s %10s %10s %10s %12s%n",
+                "strategy", "avg wait", "p95 wait", "avg ride", "avg total", "max total", "undelivered");
+        for (String strategy: DispatchStrategies.names()) {
+            run(strategy, 0, floors, cars, calls, interval, seed);
+        }
+        for (long window: WINDOWS) {
+            run(JointInsertionStrategy.NAME, window, floors, cars, calls, interval, seed);
+        }
+    }
+
+    /**
+     * @param window dispatch window of BatchDispatcher in milliseconds, 0 for immediate dispatch
+     */
+    private static void run(String strategyName, long window, int floors, List<CarKinematics> cars, int calls, long interval, long seed) {
+        int elevators = cars.size();
+        String name = window > 0 ? strategyName + "/" + window : strategyName;
+        DispatchStrategy strategy = DispatchStrategies.byName(strategyName);
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+        ElevatorManager manager = new ElevatorManager(cars, new AtomicBoolean(true), scheduler, strategy);
+        BatchDispatcher dispatcher = window > 0 ? new BatchDispatcher(manager, window) : null;
+
+        List<List<Passenger>> waiting = new ArrayList<>();
+        List<List<Passenger>> riding = new ArrayList<>();
+        for (int i = 0; i < elevators; i++) {
+            waiting.add(new ArrayList<>());
+            riding.add(new ArrayList<>());
+        }
+        scheduler.setArrivalListener((elevator, time) -> {
+            int floor = elevator.getSnapshot().getCurrentFloor();
+            leave(riding.get(elevator.getID()), floor, time);
+            board(waiting.get(elevator.getID()), riding.get(elevator.getID()), floor, time);
+        });
+
+        // the same seed gives the same traffic for every engine
+        Random random = new Random(seed);
+        List<Passenger> passengers = new ArrayList<>(calls);
+        long time = 0;
+        for (int i = 0; i < calls; i++) {
+            time += (long) (-Math.log(1 - random.nextDouble()) * interval);
+            Passenger passenger = Passenger.random(random, floors, time);
+            passengers.add(passenger);
+
+            scheduler.schedule(time, () -> {
+                if (dispatcher != null) {
+                    dispatcher.dispatch(passenger.from, passenger.to)
+                            .thenAccept(elevator -> assigned(passenger, elevator, manager, scheduler, waiting, riding));
+                } else {
+                    assigned(passenger, manager.askForElevator(passenger.from, passenger.to), manager, scheduler, waiting, riding);
+                }
+            });
+        }
+        scheduler.runUntilIdle();
+
+        long[] waits = passengers.stream().filter(p -> p.boarded >= 0).mapToLong(p -> p.boarded - p.spawned).sorted().toArray();
+        long[] rides = passengers.stream().filter(p -> p.delivered >= 0).mapToLong(p -> p.delivered - p.boarded).toArray();
+        long[] totals = passengers.stream().filter(p -> p.delivered >= 0).mapToLong(p -> p.delivered - p.spawned).toArray();
+        long undelivered = passengers.stream().filter(p -> p.delivered < 0).count();
+        System.out.printf("%-12s %9.1fs %9.1fs %9.1fs %9.1fs %9.1fs %12d%n", name,
+                average(waits), waits.length > 0 ? waits[(int) (0.95 * (waits.length - 1))] / 1000.0 : 0.0,
+                average(rides), average(totals), Arrays.stream(totals).max().orElse(0) / 1000.0, undelivered);
+    }
+
+    private static void assigned(Passenger passenger, int elevator, ElevatorManager manager, DiscreteEventScheduler scheduler,
+                                 List<List<Passenger>> waiting, List<List<Passenger>> riding) {
+        ElevatorSnapshot status = manager.getFleetSnapshot().get(elevator);
+        // elevator already stands at the floor of the passenger
+        if (!status.isMoving() && status.getCurrentFloor() == passenger.from) {
+            passenger.boarded = scheduler.now();
+            riding.get(elevator).add(passenger);
+        } else {
+            waiting.get(elevator).add(passenger);
+        }
+    }
+
+    private static void leave(List<Passenger> riding, int floor, long time) {
+        for (Iterator<Passenger> it = riding.iterator(); it.hasNext(); ) {
+            Passenger passenger = it.next();
+            if (passenger.to == floor) {
+                passenger.delivered = time;
+                it.remove();
+            }
+        }
+    }
+
+    private static void board(List<Passenger> waiting, List<Passenger> riding, int floor, long time) {
+        for (Iterator<Passenger> it = waiting.iterator(); it.hasNext(); ) {
+            Passenger passenger = it.next();
+            if (passenger.from == floor) {
+                passenger.boarded = time;
+                riding.add(passenger);
+                it.remove();
+            }
+        }
+    }
+
+    private static double average(long[] millis) {
+        return Arrays.stream(millis).average().orElse(0) / 1000.0;
+    }
+
+    private static class Passenger {
+        private final int from;
+        private final int to;
+        private final long spawned;
+        private long boarded = -1;
+        private long delivered = -1;
+
+        private Passenger(int from, int to, long spawned) {
+            this.from = from;
+            this.to = to;
+            this.spawned = spawned;
+        }
+
+        /**
+         * Half of the passengers go up from the lobby, a quarter goes down to it and the rest travels between floors
+         */
+        private static Passenger random(Random random, int floors, long time) {
+            double kind = random.nextDouble();
+            int from, to;
+            if (kind < 0.5) {
+                from = 0;
+                to = 1 + random.nextInt(floors - 1);
+            } else if (kind < 0.75) {
+                from = 1 + random.nextInt(floors - 1);
+                to = 0;
+            } else {
+                from = random.nextInt(floors);
+                to = (from + 1 + random.nextInt(floors - 1)) % floors;
+            }
+            return new Passenger(from, to, time);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package main.java.simulation;
+
+import main.java.threads.Elevator;
+
+/**
+ * Single entry of the DiscreteEventScheduler's queue
+ * Events are ordered by time; events with the same time keep the order in which they were scheduled
+ */
+class ElevatorEvent implements Comparable<ElevatorEvent> {
+
+    enum Type {
+        // elevator finished waiting at the floor and takes next one from its queue
+        DEPARTURE,
+        // elevator reaches the floor it was moving to
+        ARRIVAL,
+        // arbitrary action, e.g. passenger asking for elevator
+        TASK
+    }
+
+    final long time;
+    final long sequence;
+    final Type type;
+    final Elevator elevator;
+    final Runnable task;
+
+    ElevatorEvent(long time, long sequence, Type type, Elevator elevator, Runnable task) {
+        this.time = time;
+        this.sequence = sequence;
+        this.type = type;
+        this.elevator = elevator;
+        this.task = task;
+    }
+
+    @Override
+    public int compareTo(ElevatorEvent other) {
+        if (this.time != other.time) return Long.compare(this.time, other.time);
+        return Long.compare(this.sequence, other.sequence);
+    }
+}
@@ -0,0 +1,44 @@
+package main.java.simulation;
+
+import main.java.threads.Elevator;
+
+import java.util.List;
+
+/**
+ * Source of time for the elevators - decides how they advance between departures and arrivals
+ *  - RealTimeScheduler runs every elevator in its own thread, which sleeps for the wall-clock time of each ride
+ *  - DiscreteEventScheduler jumps straight to the next departure or arrival, so no time is spent waiting
+ */
+public interface ElevatorScheduler {
+
+    /**
+     * @return current time of the system in milliseconds
+     */
+    long now();
+
+    /**
+     * @return time in nanoseconds for measuring latencies - only differences are meaningful;
+     *         derived from now() unless the scheduler has a more precise clock
+     */
+    default long nanoTime() {
+        return now() * 1_000_000;
+    }
+
+    /**
+     * Starts driving given elevators; called once by ElevatorManager after it creates them
+     * @param elevators all elevators in the system, indexed by their ID
+     */
+    void start(List<Elevator> elevators);
+
+    /**
+     * Informs the scheduler that new floor has been added to the elevator's queue
+     * @param elevator elevator that received new requested floor
+     */
+    void floorAdded(Elevator elevator);
+
+    /**
+     * Executes the task at given time of the system, e.g. end of the window collecting requests
+     * @param time moment of the execution, as returned by now(); cannot be earlier than now()
+     */
+    void schedule(long time, Runnable task);
+}
@@ -0,0 +1,61 @@
+package main.java.simulation;
+
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.threads.Elevator;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default scheduler: every elevator is a thread that sleeps for the real duration of its rides
+ */
+public class RealTimeScheduler implements ElevatorScheduler {
+
+    // runs scheduled tasks; daemon, so it does not keep the process alive after the server ends
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // logs tasks that failed
+    private final EventLog events;
+
+    public RealTimeScheduler(@NonNull EventLog events) {
+        this.events = events;
+    }
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void start(List<Elevator> elevators) {
+        elevators.forEach(Elevator::start);
+    }
+
+    @Override
+    public void floorAdded(Elevator elevator) {
+        // elevator threads check their queues by themselves
+    }
+
+    @Override
+    public void schedule(long time, Runnable task) {
+        timer.schedule(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // exception would be swallowed by the executor
+                events.taskFailed(e);
+            }
+        }, Math.max(0, time - now()), TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,11 +1,22 @@
 package main.java.threads;
 
 import lombok.Getter;
-import main.java.model.Params;
+import lombok.NonNull;
+import main.java.events.EventLog;
+import main.java.journal.RouteJournal;
+import main.java.model.Assignment;
+import main.java.model.CarLoad;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.FleetStatus;
+import main.java.model.IntRoute;
+import main.java.model.LatencyMetric;
+import main.java.model.PassengerTracker;
 
-import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
 /**
  * @author Paweł Marszał
@@ -15,43 +26,220 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Elevator extends Thread {
 
     private final AtomicBoolean serverStillRunning;
-    private final ReentrantLock lock;
+    // guards state of this elevator only; other elevators are never blocked by it
+    private final ReentrantLock lock = new ReentrantLock();
+    // signalled when idle elevator receives requested floor
+    private final Condition floorRequested = lock.newCondition();
+    private final LatencyMetric departureLatency;
+    // informed about departures and arrivals, outside of the lock
+    private final PassengerTracker passengerTracker;
+    // receives every published snapshot
+    private final FleetStatus fleetStatus;
+    // records every change of the route, under the lock; null if routes are not recorded
+    private final RouteJournal journal;
+    // informed about departures and arrivals, outside of the lock
+    private final EventLog events;
+    // informed when an arrival empties the route, outside of the lock; null if nobody listens
+    private final IdleListener idleListener;
+    // informed about departures and arrivals, outside of the lock; null if nobody listens
+    private final RideListener rideListener;
 
     private final int ID;
-    private final LinkedList<Integer> floorsQueue = new LinkedList<>();
+    // speed of the elevator and time of its stops
+    private final CarKinematics kinematics;
+    private final IntRoute floorsQueue = new IntRoute();
+    // passengers planned along floorsQueue, updated with it
+    private final CarLoad load;
 
     private int currentFloor = 0;
     private int nextFloor = 0;
     private boolean isMoving = false;
+    // true from the moment the elevator finds its queue empty after the dwell until a floor is requested;
+    // a car that stands with open doors after an arrival is not waiting yet
+    private boolean waiting;
+    // clock time (see Context#clock) of the request that woke up the waiting elevator; -1 if it is not about to depart
+    private long requestedWhileIdleAt = -1;
+    // nanoseconds of the scheduler's clock
+    private final LongSupplier clock;
 
-    public Elevator(int ID, AtomicBoolean serverStillRunning, ReentrantLock lock) {
+    // state published after every change, readable without the lock
+    private volatile ElevatorSnapshot snapshot;
+
+    /**
+     * Observer of elevators that finished their routes, e.g. parking them where calls are expected
+     */
+    @FunctionalInterface
+    public interface IdleListener {
+        void elevatorIdle(Elevator elevator);
+    }
+
+    /**
+     * Observer of every departure and arrival, e.g. forgetting assignments made before the route changed
+     */
+    @FunctionalInterface
+    public interface RideListener {
+        /**
+         * @param moved snapshot published by the departure or the arrival
+         */
+        void elevatorMoved(ElevatorSnapshot moved);
+    }
+
+    /**
+     * If the context has a journal, the elevator records its route there and continues the state recovered from it
+     * @param kinematics speed and stop times of this elevator
+     * @param context collaborators shared by all elevators of the building
+     */
+    public Elevator(int ID, @NonNull CarKinematics kinematics, @NonNull Context context) {
         this.ID = ID;
-        this.serverStillRunning = serverStillRunning;
-        this.lock = lock;
+        this.kinematics = kinematics;
+        this.serverStillRunning = context.serverStillRunning;
+        this.departureLatency = context.departureLatency;
+        this.passengerTracker = context.passengerTracker;
+        this.fleetStatus = context.fleetStatus;
+        this.journal = context.journal;
+        this.events = context.events;
+        this.idleListener = context.idleListener;
+        this.rideListener = context.rideListener;
+        this.clock = context.clock;
+        ElevatorSnapshot recovered = journal != null ? journal.recovered(ID) : null;
+        long version = 0;
+        if (recovered != null) {
+            version = recovered.getVersion();
+            currentFloor = recovered.getCurrentFloor();
+            // a ride interrupted when the server stopped starts again from the floor the elevator left
+            if (recovered.isMoving()) floorsQueue.add(recovered.getNextFloor());
+            for (int i = 0; i < recovered.getRouteLength(); i++) {
+                floorsQueue.add(recovered.getRouteFloor(i));
+            }
+            nextFloor = floorsQueue.isEmpty() ? currentFloor : floorsQueue.peekFirst();
+        }
+        // passengers are not journaled - the recovered route is planned as if the car was empty
+        this.load = new CarLoad(kinematics.getCapacity(), floorsQueue.size(), false);
+        this.waiting = floorsQueue.isEmpty();
+        this.snapshot = new ElevatorSnapshot(ID, version, currentFloor, nextFloor, isMoving, floorsQueue.copy(), kinematics, load.copy());
+        fleetStatus.publish(snapshot);
+        if (journal != null) journal.started(snapshot);
+    }
+
+    /**
+     * Applies the assignment if the elevator has not changed since the snapshot it was planned on
+     * @param assignment floors to insert, planned on the snapshot with assignment.getVersion()
+     * @param whileLocked executed after applying the assignment, before the elevator can move
+     * @return false if the elevator changed (or is being changed) in the meantime and the assignment must be planned again
+     */
+    public boolean commit(Assignment assignment, Runnable whileLocked) {
+        // elevator locked by someone else is about to change, so the assignment would be rejected anyway
+        if (!lock.tryLock()) return false;
+        try {
+            if (snapshot.getVersion() != assignment.getVersion()) return false;
+            apply(assignment);
+            whileLocked.run();
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void addFloorLast(int floor) {
-        addFloor(this.floorsQueue.size(), floor);
+    /**
+     * Applies the assignment unconditionally; used to commit assignments of many elevators at once
+     * The caller must hold the lock and check that the version of the snapshot matches the assignment
+     */
+    public void apply(Assignment assignment) {
+        if (!lock.isHeldByCurrentThread()) throw new IllegalStateException("Lock of the elevator must be held");
+        if (assignment.getFloors().length == 0 && assignment.getCallCount() == 0) return;
+        for (int i = 0; i < assignment.getFloors().length; i++) {
+            addFloor(assignment.getIndices()[i], assignment.getFloors()[i]);
+        }
+        for (int call = 0; call < assignment.getCallCount(); call++) {
+            load.passengerAdded(assignment.getCallFrom()[call], assignment.getCallTo()[call], floorsQueue,
+                    isMoving ? nextFloor : currentFloor);
+        }
+        publishSnapshot();
+        if (journal != null) journal.assigned(snapshot, assignment);
     }
 
-    public void addFloor(int atIndex, int floor) {
-        if (atIndex == 0) nextFloor = floor;
+    private void addFloor(int atIndex, int floor) {
+        if (atIndex == 0 && !this.isMoving) nextFloor = floor;
+        if (waiting) {
+            waiting = false;
+            requestedWhileIdleAt = clock.getAsLong();
+            floorRequested.signal();
+        }
         this.floorsQueue.add(atIndex, floor);
+        this.load.stopAdded(atIndex);
     }
 
-    public boolean willBeVisited(int floor) {
-        return this.nextFloor == floor || this.floorsQueue.contains(floor);
+    /**
+     * Must be called while holding the lock, after every change of the state
+     */
+    private void publishSnapshot() {
+        snapshot = new ElevatorSnapshot(ID, snapshot.getVersion() + 1, currentFloor, nextFloor, isMoving,
+                floorsQueue.copy(), kinematics, load.copy());
+        fleetStatus.publish(snapshot);
     }
 
-    public int totalDistance() {
-        int dist = 0, lastFloor = this.currentFloor;
-
-        for (int nextFloor: this.floorsQueue) {
-            dist += Math.abs(nextFloor - lastFloor);
-            lastFloor = nextFloor;
+    /**
+     * Takes next requested floor from the queue and starts moving towards it
+     * @return time (in milliseconds) that the ride will take, or -1 if there are no requested floors
+     */
+    public long departToNextFloor() {
+        long rideTime;
+        int from, to;
+        ElevatorSnapshot departed;
+        try {
+            lock.lock();
+            if (floorsQueue.isEmpty()) {
+                // the dwell is over - from now on the elevator waits for a request
+                waiting = true;
+                return -1;
+            }
+            nextFloor = floorsQueue.pollFirst();
+            load.departed();
+            isMoving = true;
+            if (requestedWhileIdleAt >= 0) {
+                departureLatency.record(clock.getAsLong() - requestedWhileIdleAt);
+                requestedWhileIdleAt = -1;
+            }
+            publishSnapshot();
+            if (journal != null) journal.departed(snapshot);
+            departed = snapshot;
+            rideTime = kinematics.rideMillis(nextFloor - currentFloor);
+            from = currentFloor;
+            to = nextFloor;
+        } finally {
+            lock.unlock();
         }
+        passengerTracker.departed(ID);
+        events.departed(ID, from, to);
+        if (rideListener != null) rideListener.elevatorMoved(departed);
+        return rideTime;
+    }
 
-        return dist;
+    /**
+     * Finishes the ride started by departToNextFloor
+     */
+    public void arriveAtNextFloor() {
+        int floor;
+        boolean idle;
+        ElevatorSnapshot arrived;
+        try {
+            lock.lock();
+            isMoving = false;
+            load.arrived();
+            currentFloor = nextFloor;
+            floor = currentFloor;
+            if (!floorsQueue.isEmpty()) nextFloor = floorsQueue.peekFirst();
+            idle = floorsQueue.isEmpty();
+            publishSnapshot();
+            if (journal != null) journal.arrived(snapshot);
+            arrived = snapshot;
+        } finally {
+            lock.unlock();
+        }
+        passengerTracker.arrived(ID, floor);
+        events.arrived(ID, floor);
+        if (rideListener != null) rideListener.elevatorMoved(arrived);
+        if (idle && idleListener != null) idleListener.elevatorIdle(this);
     }
 
     @Override
@@ -59,52 +247,42 @@ public class Elevator extends Thread {
         try {
             while (serverStillRunning.get()) {
 
-                // wait for available requests from ElevatorIssuer
-                boolean requestsAvailable = false;
-                do {
-                    try {
-                        lock.lock();
-                        requestsAvailable = !floorsQueue.isEmpty();
-                    } finally {
-                        lock.unlock();
-                    }
-                    if (requestsAvailable) break;
-                    safeSleep(Params.CHECK_SLEEP_TIME);
-                } while (true);
-
-                // start moving to destination currentFloor
-                // floorsQueue will not be empty because only this thread can remove elements from it
-                int distance = 0;
-                try {
-                    lock.lock();
-                    nextFloor = floorsQueue.pollFirst();
-                    distance = Math.abs(nextFloor - currentFloor);
-                    isMoving = true;
-                } finally {
-                    lock.unlock();
+                // wait for available requests from ElevatorManager and start moving to the first of them
+                long rideTime;
+                while ((rideTime = departToNextFloor()) < 0) {
+                    awaitRequestedFloor();
                 }
 
                 // SLEEP WHILE MOVING
-                safeSleep((long) distance * Params.TIME_TO_MOVE_ONE_FLOOR);
+                safeSleep(rideTime);
 
                 // arrive at destination nextFloor
-                try {
-                    lock.lock();
-                    isMoving = false;
-                    currentFloor = nextFloor;
-                    if (!floorsQueue.isEmpty()) nextFloor = floorsQueue.peekFirst();
-                    System.out.println("\n[Elevator " + this.ID + "] arrived at floor " + this.currentFloor);
-                    System.out.println("[Server] ");
-                } finally {
-                    lock.unlock();
-                }
+                arriveAtNextFloor();
 
                 // WAIT SOME TIME AFTER ARRIVING
-                safeSleep(Params.SLEEP_AFTER_ARRIVAL);
+                safeSleep(kinematics.getDwellMillis());
             }
         } catch (RuntimeException ignored) {}
 
-        System.out.println("[Elevator " + this.ID + "] thread ends");
+        events.elevatorStopped(ID);
+    }
+
+    /**
+     * Parks the thread until ElevatorManager adds floor to the queue
+     * @throws RuntimeException breaks the main loop and allow thread to end gracefully
+     */
+    private void awaitRequestedFloor() throws RuntimeException {
+        try {
+            lock.lock();
+            while (floorsQueue.isEmpty()) {
+                waiting = true;
+                floorRequested.await();
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            lock.unlock();
+        }
+        if (!serverStillRunning.get()) throw new RuntimeException("Server ended");
     }
 
     /**
@@ -117,4 +295,68 @@ public class Elevator extends Thread {
         } catch (InterruptedException ignored) {}
         if (!serverStillRunning.get()) throw new RuntimeException("Server ended");
     }
+
+    /**
+     * Collaborators shared by all elevators of one ElevatorManager; journal, event log and listeners are optional
+     */
+    public static class Context {
+        private final AtomicBoolean serverStillRunning;
+        private final LatencyMetric departureLatency;
+        private final PassengerTracker passengerTracker;
+        private final FleetStatus fleetStatus;
+        private RouteJournal journal = null;
+        private EventLog events = EventLog.DISABLED;
+        private IdleListener idleListener = null;
+        private RideListener rideListener = null;
+        private LongSupplier clock = System::nanoTime;
+
+        public Context(@NonNull AtomicBoolean serverStillRunning, @NonNull LatencyMetric departureLatency,
+                       @NonNull PassengerTracker passengerTracker, @NonNull FleetStatus fleetStatus) {
+            this.serverStillRunning = serverStillRunning;
+            this.departureLatency = departureLatency;
+            this.passengerTracker = passengerTracker;
+            this.fleetStatus = fleetStatus;
+        }
+
+        /**
+         * @param journal records routes and gives the state to continue from; null if routes are not recorded
+         */
+        public Context journal(RouteJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param events logs departures, arrivals and the end of the thread
+         */
+        public Context events(@NonNull EventLog events) {
+            this.events = events;
+            return this;
+        }
+
+        /**
+         * @param idleListener informed whenever an elevator arrives at the last floor of its route; null if nobody listens
+         */
+        public Context idleListener(IdleListener idleListener) {
+            this.idleListener = idleListener;
+            return this;
+        }
+
+        /**
+         * @param rideListener informed after every departure and arrival of an elevator; null if nobody listens
+         */
+        public Context rideListener(RideListener rideListener) {
+            this.rideListener = rideListener;
+            return this;
+        }
+
+        /**
+         * @param clock nanoseconds of the scheduler that drives the elevators, used for the departure latency;
+         *              System.nanoTime() by default
+         */
+        public Context clock(@NonNull LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+    }
 }
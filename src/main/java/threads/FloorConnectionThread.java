@@ -1,77 +1,165 @@
 package main.java.threads;
 
-import main.java.model.Params;
-import main.java.model.ElevatorManager;
+import main.java.events.EventLog;
 import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+import main.java.network.BuildingDirectory;
+import main.java.network.PositionSink;
+import main.java.network.RequestHandler;
+import main.java.protocol.MessageChannel;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Paweł Marszał
  * Server side of the connection with FloorClient process
+ * RegisteringThread runs it in its own platform thread, or in a virtual one (see IoMode)
  */
-public class FloorConnectionThread extends Thread {
+public class FloorConnectionThread implements Runnable, PositionSink {
+
+    // time (in milliseconds) that new client has to send HELLO
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+    // number of requests read ahead before their responses are sent
+    private static final int MAX_PIPELINED_REQUESTS = 64;
 
     private final AtomicBoolean serverStillRunning;
-    private final int floorNumber;
-    private final ElevatorManager manager;
+    // chooses the building of the client during the handshake
+    private final BuildingDirectory buildings;
+    private final MessageChannel channel;
+    // active connections; this one removes itself when it ends
+    private final Set<FloorConnectionThread> connections;
+    // logs failures that happen before the building of the client is known
+    private final EventLog events;
+    // latest POSITION of every subscribed elevator that has not been sent yet
+    private final ConcurrentMap<Integer, Message> positions = new ConcurrentHashMap<>();
 
-    private final Socket socket;
-    private final ObjectOutputStream out;
-    private final ObjectInputStream in;
+    // floor of the client, negotiated version of the protocol and handler of its building; known after the handshake
+    private int floorNumber = -1;
+    private int version = -1;
+    private RequestHandler handler;
 
-    public FloorConnectionThread(AtomicBoolean serverStillRunning, int floorNumber,
-                                 Socket socket, ElevatorManager manager) throws IOException {
+    public FloorConnectionThread(AtomicBoolean serverStillRunning, MessageChannel channel, BuildingDirectory buildings,
+                                 Set<FloorConnectionThread> connections, EventLog events) {
         this.serverStillRunning = serverStillRunning;
-        this.floorNumber = floorNumber;
-        this.manager = manager;
-
-        this.socket = socket;
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.in = new ObjectInputStream(socket.getInputStream());
+        this.channel = channel;
+        this.buildings = buildings;
+        this.connections = connections;
+        this.events = events;
     }
 
     @Override
     public void run() {
+        if (!handshake()) {
+            connections.remove(this);
+            return;
+        }
+
         while (serverStillRunning.get()) {
             try {
-                Message clientMsg = (Message) in.readObject();
-
-                if ("pickup".equals(clientMsg.type)) {
-                    if (this.floorNumber == clientMsg.number) {
-                        out.writeObject(new Message("result", "You are already on this floor"));
-                    }
-                    else if (clientMsg.number >= Params.MAX_FLOORS) {
-                        out.writeObject(new Message("result",
-                                "There is no floor " + clientMsg.number + " in this building"));
+                // requests that came together are handled before waiting for any of them,
+                // so they can share the dispatch window; their responses are flushed together
+                List<Message> requests = new ArrayList<>();
+                List<CompletableFuture<Message>> responses = new ArrayList<>();
+                do {
+                    try {
+                        Message request = channel.receive();
+                        responses.add(handler.handleAsync(this.floorNumber, this.version, request, this));
+                        requests.add(request);
+                    } catch (IllegalArgumentException e) {
+                        // the whole frame has been consumed, so the next one can still be read
+                        handler.getEvents().malformedMessage(this.floorNumber, e);
                     }
-                    else {
-                        out.writeObject(new Message("result",
-                                "To get to floor " + clientMsg.number + " head to elevator "
-                                        + manager.askForElevator(this.floorNumber, clientMsg.number)));
+                } while (channel.hasPendingInput() && requests.size() < MAX_PIPELINED_REQUESTS);
+
+                // a failed dispatch is refused on its own; the responses after it are still sent
+                for (int i = 0; i < responses.size(); i++) {
+                    Message response;
+                    try {
+                        response = responses.get(i).join();
+                    } catch (CompletionException e) {
+                        handler.getEvents().dispatchFailed(this.floorNumber, e.getCause());
+                        response = RequestHandler.failed(requests.get(i));
                     }
-                } else {
-                    throw new IllegalArgumentException("Unrecognized message type: " + clientMsg.type);
+                    if (response != null) channel.send(response, false);
                 }
-            } catch (SocketException ignored) {
+                // POSITIONs the broadcaster left behind while the responses were being sent are flushed with them
+                channel.sendLatest(positions);
+                sendPositions();
+            } catch (SocketException | EOFException ignored) {
+                break;
+            } catch (IOException e) {
+                // stream can no longer be split into frames
+                handler.getEvents().connectionFailed(this.floorNumber, e);
                 break;
-            } catch (ClassNotFoundException | IOException | IllegalArgumentException e) {
-                e.printStackTrace();
             }
         }
         killClient();
-        System.out.println("[Connection " + this.floorNumber + "] thread ends");
+        handler.disconnected(this.floorNumber, this);
+        connections.remove(this);
+    }
+
+    /**
+     * Negotiates version of the protocol and floor of the client
+     * @return false if the client has been rejected
+     */
+    private boolean handshake() {
+        try {
+            channel.getSocket().setSoTimeout(HANDSHAKE_TIMEOUT);
+            Message hello = channel.receive();
+            RequestHandler building = buildings.route(hello);
+            Message response = building != null ? building.handshake(hello) : Message.rejected(Reason.NO_SUCH_BUILDING);
+            channel.getSocket().setSoTimeout(0);
+            channel.send(response);
+            if (response.type == MessageType.WELCOME) {
+                this.floorNumber = response.floor;
+                this.version = response.version;
+                this.handler = building;
+                return true;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            events.connectionFailed(-1, e);
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        return false;
+    }
+
+    /**
+     * Called by PositionBroadcaster; frames of pushed messages never interleave with responses
+     * The broadcaster never waits for this connection: if it is busy sending, the POSITION stays queued
+     * (replacing an older one of the same elevator) and is sent by this thread after its responses
+     */
+    @Override
+    public void push(Message position) {
+        positions.put(position.elevator, position);
+        sendPositions();
+    }
+
+    private void sendPositions() {
+        try {
+            // the thread that held the channel may have released it before seeing the queued POSITIONs
+            while (!positions.isEmpty() && channel.trySendLatest(positions)) {}
+        } catch (IOException ignored) {
+            // the connection is closed by its own thread
+        }
     }
 
     public void killClient() {
         try {
-            this.out.writeObject(new Message("exit"));
-            this.socket.close();
+            this.channel.send(Message.exit());
+            this.channel.close();
         } catch (IOException ignored) {}
     }
 }
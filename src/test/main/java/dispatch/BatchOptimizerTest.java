@@ -0,0 +1,98 @@
+package main.java.dispatch;
+
+import main.java.model.Assignment;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.IntRoute;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchOptimizerTest {
+
+    @Test
+    void givesEveryCallTheNearestElevator() {
+        List<ElevatorSnapshot> elevators = List.of(standing(0, 0), standing(1, 20));
+
+        BatchPlan plan = new BatchOptimizer(elevators, new int[] {1, 19, 18}, new int[] {3, 17, 12}).solve();
+
+        assertArrayEquals(new int[] {0, 1, 1}, plan.getElevators());
+    }
+
+    @Test
+    void leavesElevatorWithoutCallsUnassigned() {
+        List<ElevatorSnapshot> elevators = List.of(standing(0, 0), standing(1, 20));
+
+        BatchPlan plan = new BatchOptimizer(elevators, new int[] {1}, new int[] {4}).solve();
+
+        assertNotNull(plan.getAssignments()[0]);
+        assertNull(plan.getAssignments()[1]);
+    }
+
+    @Test
+    void addsNoStopsForCallAlreadyOnTheRoute() {
+        List<ElevatorSnapshot> elevators = List.of(standing(0, 0, 5, 9), standing(1, 20));
+
+        BatchPlan plan = new BatchOptimizer(elevators, new int[] {5}, new int[] {9}).solve();
+
+        assertEquals(0, plan.getElevators()[0]);
+        assertEquals(0, plan.getAssignments()[0].getFloors().length);
+    }
+
+    @Test
+    void picksUpEveryPassengerBeforeDroppingOff() {
+        List<ElevatorSnapshot> elevators = List.of(standing(0, 0, 6), standing(1, 10, 2, 14), standing(2, 19));
+        int[] from = {3, 12, 7, 18, 1, 9, 15, 4};
+        int[] to = {8, 2, 0, 11, 16, 13, 5, 6};
+
+        BatchPlan plan = new BatchOptimizer(elevators, from, to).solve();
+
+        for (int call = 0; call < from.length; call++) {
+            int id = plan.getElevators()[call];
+            ElevatorSnapshot planned = elevators.get(id).withAssignment(plan.getAssignments()[id]);
+            int pickup = indexOf(planned, from[call]);
+            int dropOff = indexOf(planned, to[call], Math.max(pickup, 0));
+            assertTrue(pickup >= 0 && dropOff > pickup, "call " + from[call] + " -> " + to[call]);
+        }
+    }
+
+    @Test
+    void preferCarWithRoomOverFullOne() {
+        CarKinematics single = new CarKinematics(1000, 0, 1000, 1);
+        // the nearer car takes a passenger to floor 9 first, and then has no room until it gets there
+        ElevatorSnapshot full = new ElevatorSnapshot(0, 0, 0, 0, false, route(9), single)
+                .withAssignment(Assignment.unchanged(standing(0, 0, 9)).withCall(0, 9));
+        List<ElevatorSnapshot> elevators = List.of(full, new ElevatorSnapshot(1, 0, 6, 6, false, route(), single));
+
+        BatchPlan plan = new BatchOptimizer(elevators, new int[] {1}, new int[] {4}).solve();
+
+        assertEquals(1, plan.getElevators()[0]);
+    }
+
+    private static ElevatorSnapshot standing(int id, int floor, int... route) {
+        return new ElevatorSnapshot(id, 0, floor, route.length > 0 ? route[0] : floor, false, route(route));
+    }
+
+    private static IntRoute route(int... floors) {
+        IntRoute route = new IntRoute();
+        for (int floor: floors) route.add(floor);
+        return route;
+    }
+
+    private static int indexOf(ElevatorSnapshot elevator, int floor) {
+        return indexOf(elevator, floor, 0);
+    }
+
+    private static int indexOf(ElevatorSnapshot elevator, int floor, int start) {
+        for (int i = start; i < elevator.getRouteLength(); i++) {
+            if (elevator.getRouteFloor(i) == floor) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,110 @@
+package main.java.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalSegmentTest {
+
+    // header of the segment, then records of 8-byte bodies: length, body and checksum
+    private static final int HEADER = 12;
+    private static final int RECORD = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsRecordsInOrderOfAppending() throws IOException {
+        Path path = segmentOf(1, 2, 3);
+
+        assertEquals(List.of(1L, 2L, 3L), read(path));
+    }
+
+    @Test
+    void skipsTornRecord() throws IOException {
+        Path path = segmentOf(1, 2, 3);
+        // the second record was being written when the process crashed
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), HEADER + RECORD + 4);
+        }
+
+        assertEquals(List.of(1L, 3L), read(path));
+    }
+
+    @Test
+    void stopsAtTruncatedRecord() throws IOException {
+        Path path = segmentOf(1, 2, 3);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(HEADER + 2 * RECORD + 6);
+        }
+
+        assertEquals(List.of(1L, 2L), read(path));
+    }
+
+    @Test
+    void refusesRecordThatDoesNotFit() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 0, HEADER + 2 * RECORD);
+        CRC32C checksum = new CRC32C();
+
+        assertTrue(segment.append(body(1), checksum));
+        assertTrue(segment.append(body(2), checksum));
+        assertFalse(segment.append(body(3), checksum));
+        segment.close();
+        assertEquals(List.of(1L, 2L), read(segment.getPath()));
+    }
+
+    @Test
+    void rejectsFileThatIsNotSegment() throws IOException {
+        Path path = Files.write(directory.resolve("0000000000000000" + JournalSegment.SUFFIX), new byte[64]);
+
+        assertThrows(IOException.class, () -> read(path));
+    }
+
+    @Test
+    void listsSegmentsInOrderOfSequence() throws IOException {
+        JournalSegment.create(directory, 10, 64).close();
+        JournalSegment.create(directory, 2, 64).close();
+        Files.createFile(directory.resolve("notes.txt"));
+
+        List<Path> segments = JournalSegment.list(directory);
+
+        assertEquals(2, segments.size());
+        assertEquals(2, JournalSegment.sequenceOf(segments.get(0)));
+        assertEquals(10, JournalSegment.sequenceOf(segments.get(1)));
+    }
+
+    private Path segmentOf(long... values) throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 0, 256);
+        CRC32C checksum = new CRC32C();
+        for (long value: values) {
+            assertTrue(segment.append(body(value), checksum));
+        }
+        segment.flush();
+        segment.close();
+        return segment.getPath();
+    }
+
+    private static ByteBuffer body(long value) {
+        return ByteBuffer.allocate(8).putLong(0, value);
+    }
+
+    private static List<Long> read(Path path) throws IOException {
+        List<Long> values = new ArrayList<>();
+        JournalSegment.read(path, record -> values.add(record.getLong()));
+        return values;
+    }
+}
@@ -0,0 +1,93 @@
+package main.java.journal;
+
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.IntRoute;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.java.journal.RouteReplayTest.car;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversStateWrittenBeforeRestart() throws IOException {
+        try (RouteJournal journal = RouteJournal.open(directory, 1)) {
+            ride(journal, car(0, 0, 0, false), 6);
+        }
+
+        try (RouteJournal journal = RouteJournal.open(directory, 1)) {
+            ElevatorSnapshot recovered = journal.recovered(0);
+            assertEquals(3, recovered.getVersion());
+            assertEquals(6, recovered.getCurrentFloor());
+            assertFalse(recovered.isMoving());
+            assertTrue(recovered.hasEmptyRoute());
+        }
+    }
+
+    @Test
+    void startsEverySegmentWithState() throws IOException {
+        // a few records per segment, so the rides roll over to new segments
+        try (RouteJournal journal = RouteJournal.open(directory, 1, 128)) {
+            ElevatorSnapshot elevator = car(0, 0, 0, false);
+            for (int floor = 1; floor <= 10; floor++) {
+                elevator = ride(journal, elevator, floor);
+            }
+        }
+
+        List<Path> segments = JournalSegment.list(directory);
+        assertTrue(segments.size() > 1);
+        for (Path segment: segments) {
+            List<Byte> types = new ArrayList<>();
+            JournalSegment.read(segment, record -> types.add(record.get()));
+            assertFalse(types.isEmpty());
+            assertEquals(RouteRecords.STATE, types.get(0));
+        }
+
+        try (RouteJournal journal = RouteJournal.open(directory, 1, 128)) {
+            ElevatorSnapshot recovered = journal.recovered(0);
+            assertEquals(30, recovered.getVersion());
+            assertEquals(10, recovered.getCurrentFloor());
+            assertFalse(recovered.isMoving());
+        }
+    }
+
+    @Test
+    void dropsElevatorsBeyondTheFleet() throws IOException {
+        try (RouteJournal journal = RouteJournal.open(directory, 2)) {
+            journal.started(new ElevatorSnapshot(1, 0, 4, 4, false, new IntRoute()));
+        }
+
+        try (RouteJournal journal = RouteJournal.open(directory, 1)) {
+            assertNull(journal.recovered(0));
+            assertNull(journal.recovered(1));
+        }
+    }
+
+    /**
+     * Records the elevator standing at its floor taking a call to the floor, riding there and arriving
+     * @return snapshot after the arrival
+     */
+    private static ElevatorSnapshot ride(RouteJournal journal, ElevatorSnapshot standing, int floor) {
+        long version = standing.getVersion();
+        if (version == 0) journal.started(standing);
+        int from = standing.getCurrentFloor();
+        journal.assigned(car(version + 1, from, floor, false, floor), Assignment.insert(standing, 0, floor));
+        journal.departed(car(version + 2, from, floor, true));
+        ElevatorSnapshot arrived = car(version + 3, floor, floor, false);
+        journal.arrived(arrived);
+        return arrived;
+    }
+}
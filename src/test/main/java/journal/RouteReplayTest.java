@@ -0,0 +1,74 @@
+package main.java.journal;
+
+import main.java.model.Assignment;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.IntRoute;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteReplayTest {
+
+    @Test
+    void appliesChangesInOrder() {
+        RouteReplay replay = new RouteReplay(1);
+        ElevatorSnapshot started = car(0, 0, 0, false);
+        replay.apply(RouteRecords.encode(started, RouteRecords.STATE, null));
+        replay.apply(RouteRecords.encode(car(1, 0, 4, false, 4), RouteRecords.ASSIGNED, Assignment.insert(started, 0, 4)));
+        replay.apply(RouteRecords.encode(car(2, 0, 4, true), RouteRecords.DEPARTED, null));
+        replay.apply(RouteRecords.encode(car(3, 4, 4, false), RouteRecords.ARRIVED, null));
+
+        ElevatorSnapshot replayed = replay.snapshots()[0];
+        assertEquals(3, replayed.getVersion());
+        assertEquals(4, replayed.getCurrentFloor());
+        assertFalse(replayed.isMoving());
+        assertTrue(replayed.hasEmptyRoute());
+    }
+
+    @Test
+    void skipsChangesAfterVersionGap() {
+        RouteReplay replay = new RouteReplay(1);
+        replay.apply(RouteRecords.encode(car(0, 0, 3, false, 3), RouteRecords.STATE, null));
+        // the record of version 1 was torn, so the following changes have nothing to apply to
+        replay.apply(RouteRecords.encode(car(2, 0, 3, false, 3, 7), RouteRecords.ASSIGNED,
+                Assignment.insert(car(1, 0, 3, false, 3), 1, 7)));
+        replay.apply(RouteRecords.encode(car(3, 0, 3, true, 7), RouteRecords.DEPARTED, null));
+
+        ElevatorSnapshot replayed = replay.snapshots()[0];
+        assertEquals(0, replayed.getVersion());
+        assertFalse(replayed.isMoving());
+        assertEquals(1, replayed.getRouteLength());
+        assertEquals(3, replayed.getRouteFloor(0));
+
+        // the next STATE (e.g. the first record of the next segment) restores the elevator
+        replay.apply(RouteRecords.encode(car(5, 0, 3, false, 3, 7), RouteRecords.STATE, null));
+        replay.apply(RouteRecords.encode(car(6, 0, 3, true, 7), RouteRecords.DEPARTED, null));
+
+        replayed = replay.snapshots()[0];
+        assertEquals(6, replayed.getVersion());
+        assertTrue(replayed.isMoving());
+        assertEquals(3, replayed.getNextFloor());
+        assertEquals(1, replayed.getRouteLength());
+        assertEquals(7, replayed.getRouteFloor(0));
+    }
+
+    @Test
+    void ignoresChangesBeforeStateAndUnknownElevators() {
+        RouteReplay replay = new RouteReplay(1);
+        replay.apply(RouteRecords.encode(car(1, 2, 2, false), RouteRecords.ARRIVED, null));
+        replay.apply(RouteRecords.encode(new ElevatorSnapshot(1, 0, 0, 0, false, new IntRoute()), RouteRecords.STATE, null));
+
+        assertNull(replay.snapshots()[0]);
+    }
+
+    static ElevatorSnapshot car(long version, int currentFloor, int nextFloor, boolean moving, int... route) {
+        IntRoute floors = new IntRoute();
+        for (int floor: route) {
+            floors.add(floor);
+        }
+        return new ElevatorSnapshot(0, version, currentFloor, nextFloor, moving, floors);
+    }
+}
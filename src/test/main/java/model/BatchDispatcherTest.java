@@ -0,0 +1,170 @@
+package main.java.model;
+
+import main.java.dispatch.BatchPlan;
+import main.java.dispatch.DispatchStrategies;
+import main.java.dispatch.DispatchStrategy;
+import main.java.dispatch.JointInsertionStrategy;
+import main.java.simulation.DiscreteEventScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchDispatcherTest {
+
+    private static final long WINDOW = 100;
+
+    private final DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+
+    @Test
+    void answersCallsWhenTheWindowEnds() {
+        BatchDispatcher dispatcher = new BatchDispatcher(manager(DispatchStrategies.byName(JointInsertionStrategy.NAME)), WINDOW);
+
+        CompletableFuture<Integer> first = dispatcher.dispatch(1, 8);
+        scheduler.runUntil(WINDOW / 2);
+        CompletableFuture<Integer> second = dispatcher.dispatch(19, 12);
+        scheduler.runUntil(WINDOW - 1);
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        scheduler.runUntil(WINDOW);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+    }
+
+    @Test
+    void startsNewWindowWithFirstCallAfterFlush() {
+        BatchDispatcher dispatcher = new BatchDispatcher(manager(DispatchStrategies.byName(JointInsertionStrategy.NAME)), WINDOW);
+        dispatcher.dispatch(1, 8);
+        scheduler.runUntil(WINDOW + 50);
+
+        CompletableFuture<Integer> late = dispatcher.dispatch(3, 5);
+        scheduler.runUntil(2 * WINDOW + 49);
+        assertFalse(late.isDone());
+        scheduler.runUntil(2 * WINDOW + 50);
+        assertTrue(late.isDone());
+    }
+
+    @Test
+    void answersBatchInTheOrderOfFloors() {
+        ElevatorManager manager = manager(DispatchStrategies.byName(JointInsertionStrategy.NAME));
+        BatchDispatcher dispatcher = new BatchDispatcher(manager, WINDOW);
+
+        CompletableFuture<int[]> elevators = dispatcher.dispatchAll(10, new int[] {15, 4, 18});
+        scheduler.runUntil(WINDOW);
+
+        int[] chosen = elevators.join();
+        assertEquals(3, chosen.length);
+        int[] to = {15, 4, 18};
+        for (int call = 0; call < to.length; call++) {
+            assertTrue(manager.getFleetSnapshot().get(chosen[call]).willBeVisited(to[call]), "floor " + to[call]);
+        }
+    }
+
+    @Test
+    void failsEveryCallOfWindowIfPlanningFails() {
+        DispatchStrategy broken = new FailingStrategy();
+        BatchDispatcher dispatcher = new BatchDispatcher(manager(broken), WINDOW);
+
+        CompletableFuture<Integer> first = dispatcher.dispatch(1, 8);
+        CompletableFuture<Integer> second = dispatcher.dispatch(2, 9);
+        scheduler.runUntil(WINDOW);
+
+        CompletionException failure = assertThrows(CompletionException.class, first::join);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    void refusesEmptyWindow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchDispatcher(manager(DispatchStrategies.byName(JointInsertionStrategy.NAME)), 0));
+    }
+
+    @Test
+    void dispatchesOneByOneWhenEveryPlanGetsStale() {
+        StalePlanStrategy strategy = new StalePlanStrategy();
+        ElevatorManager manager = manager(strategy, 1);
+        strategy.manager = manager;
+
+        int[] chosen = manager.askForElevators(new int[] {1, 6}, new int[] {5, 2});
+
+        // every joint plan was made stale before its commit, so the calls were dispatched one by one
+        assertTrue(strategy.plans > 1);
+        assertArrayEquals(new int[] {0, 0}, chosen);
+        ElevatorSnapshot elevator = manager.getFleetSnapshot().get(0);
+        for (int floor: new int[] {1, 5, 6, 2}) {
+            assertTrue(elevator.willBeVisited(floor), "floor " + floor);
+        }
+    }
+
+    private ElevatorManager manager(DispatchStrategy strategy) {
+        return manager(strategy, 2);
+    }
+
+    private ElevatorManager manager(DispatchStrategy strategy, int elevators) {
+        List<CarKinematics> cars = Collections.nCopies(elevators, CarKinematics.DEFAULT);
+        return new ElevatorManager(cars, new AtomicBoolean(true), scheduler, strategy);
+    }
+
+    /**
+     * Greedy strategy whose joint plans always fail
+     */
+    private static class FailingStrategy implements DispatchStrategy {
+        private final DispatchStrategy greedy = DispatchStrategies.byName(DispatchStrategies.DEFAULT);
+
+        @Override
+        public String name() {
+            return "failing";
+        }
+
+        @Override
+        public Assignment assign(int from, int to, List<ElevatorSnapshot> elevators) {
+            return greedy.assign(from, to, elevators);
+        }
+
+        @Override
+        public BatchPlan assignAll(int[] from, int[] to, List<ElevatorSnapshot> elevators) {
+            throw new IllegalStateException("planning failed");
+        }
+    }
+
+    /**
+     * Greedy strategy that changes the elevator, with a call of its own, after every joint plan,
+     * so the plan is always stale when ElevatorManager commits it
+     */
+    private static class StalePlanStrategy implements DispatchStrategy {
+        private final DispatchStrategy greedy = DispatchStrategies.byName(DispatchStrategies.DEFAULT);
+        private ElevatorManager manager;
+        private int plans = 0;
+
+        @Override
+        public String name() {
+            return "stale";
+        }
+
+        @Override
+        public Assignment assign(int from, int to, List<ElevatorSnapshot> elevators) {
+            return greedy.assign(from, to, elevators);
+        }
+
+        @Override
+        public BatchPlan assignAll(int[] from, int[] to, List<ElevatorSnapshot> elevators) {
+            BatchPlan plan = DispatchStrategy.super.assignAll(from, to, elevators);
+            plans++;
+            // every interfering call is new, so it is not coalesced and always changes the elevator
+            manager.askForElevator(100 + 2 * plans, 101 + 2 * plans);
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package main.java.model;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.dispatch.DispatchStrategy;
+import main.java.simulation.DiscreteEventScheduler;
+import main.java.simulation.ElevatorScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CallCoalescerTest {
+
+    private static final int BURST = 8;
+
+    private final CountingStrategy strategy = new CountingStrategy();
+
+    @Test
+    void burstOfSameCallIsDispatchedOnce() throws Exception {
+        // planning takes long enough for the whole burst to come while the first call is being dispatched
+        strategy.planningMillis = 100;
+        ElevatorManager manager = manager(new StandingScheduler(), 2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(BURST);
+        int[] chosen = new int[BURST];
+        try {
+            Future<?>[] callers = new Future<?>[BURST];
+            for (int t = 0; t < BURST; t++) {
+                int caller = t;
+                callers[t] = pool.submit(() -> {
+                    start.await();
+                    chosen[caller] = manager.askForElevator(0, 9);
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> caller: callers) caller.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, strategy.plans.get());
+        assertEquals(BURST - 1, manager.getCoalescedCalls());
+        for (int caller = 1; caller < BURST; caller++) {
+            assertEquals(chosen[0], chosen[caller], "caller " + caller);
+        }
+        assertEquals(BURST, manager.getPassengerTracker().getAcceptedCalls());
+    }
+
+    @Test
+    void otherCallInvalidatesEntry() {
+        ElevatorManager manager = manager(new DiscreteEventScheduler(), 1);
+
+        manager.askForElevator(2, 9);
+        manager.askForElevator(2, 9);
+        assertEquals(1, strategy.plans.get());
+        assertEquals(1, manager.getCoalescedCalls());
+
+        // the elevator has a new version, although its route still visits 2 and then 9
+        manager.askForElevator(4, 6);
+        manager.askForElevator(2, 9);
+        assertEquals(3, strategy.plans.get());
+        assertEquals(1, manager.getCoalescedCalls());
+    }
+
+    @Test
+    void departureClearsEntry() {
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+        ElevatorManager manager = manager(scheduler, 1);
+
+        manager.askForElevator(2, 9);
+        scheduler.step();
+        assertEquals(2, manager.getFleetSnapshot().get(0).getNextFloor());
+        manager.askForElevator(2, 9);
+        assertEquals(2, strategy.plans.get());
+
+        // the call assigned after the departure is joined again
+        manager.askForElevator(2, 9);
+        assertEquals(2, strategy.plans.get());
+        assertEquals(1, manager.getCoalescedCalls());
+    }
+
+    private ElevatorManager manager(ElevatorScheduler scheduler, int elevators) {
+        List<CarKinematics> cars = Collections.nCopies(elevators, CarKinematics.DEFAULT);
+        return new ElevatorManager(cars, new AtomicBoolean(true), scheduler, strategy);
+    }
+
+    /**
+     * Greedy strategy that counts its plans
+     */
+    private static class CountingStrategy implements DispatchStrategy {
+        private final DispatchStrategy greedy = DispatchStrategies.byName(DispatchStrategies.DEFAULT);
+        private final AtomicInteger plans = new AtomicInteger();
+        private volatile long planningMillis = 0;
+
+        @Override
+        public String name() {
+            return "counting";
+        }
+
+        @Override
+        public Assignment assign(int from, int to, List<ElevatorSnapshot> elevators) {
+            plans.incrementAndGet();
+            if (planningMillis > 0) {
+                try {
+                    Thread.sleep(planningMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return greedy.assign(from, to, elevators);
+        }
+    }
+}
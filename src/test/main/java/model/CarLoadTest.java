@@ -0,0 +1,94 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import static main.java.model.IntRouteTest.route;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CarLoadTest {
+
+    @Test
+    void countsPassengersBetweenPickupAndDropOff() {
+        IntRoute route = route(1, 3);
+        CarLoad load = new CarLoad(2, route.size(), false);
+
+        assertTrue(load.passengerAdded(0, 3, route, 0));
+        assertTrue(load.passengerAdded(1, 3, route, 0));
+
+        assertEquals(1, load.getPassengers());
+        assertEquals(1, load.leaving(CarLoad.ORIGIN));
+        assertEquals(2, load.leaving(0));
+        assertEquals(0, load.leaving(1));
+        assertEquals(0, load.overflow());
+    }
+
+    @Test
+    void boardsWhenCarComesBackWithRoom() {
+        // 0 -> 3 -> 0 -> 3 with room for one passenger
+        IntRoute route = route(3, 0, 3);
+        CarLoad load = new CarLoad(1, route.size(), false);
+        load.passengerAdded(0, 3, route, 0);
+
+        assertTrue(load.passengerAdded(0, 3, route, 0));
+
+        assertEquals(1, load.leaving(CarLoad.ORIGIN));
+        assertEquals(1, load.leaving(1));
+        assertEquals(0, load.overflow());
+    }
+
+    @Test
+    void reportsOverflowWhenCarIsTooFullEverywhere() {
+        IntRoute route = route(3);
+        CarLoad load = new CarLoad(1, route.size(), false);
+        load.passengerAdded(0, 3, route, 0);
+        load.passengerAdded(0, 3, route, 0);
+
+        assertEquals(2, load.leaving(CarLoad.ORIGIN));
+        assertEquals(1, load.overflow());
+    }
+
+    @Test
+    void ignoresPassengerRouteDoesNotCarry() {
+        IntRoute route = route(3, 1);
+        CarLoad load = new CarLoad(4, route.size(), false);
+
+        assertFalse(load.passengerAdded(3, 5, route, 0));
+        assertFalse(load.passengerAdded(1, 3, route, 0));
+        assertEquals(0, load.leaving(0));
+    }
+
+    @Test
+    void followsStopsDeparturesAndArrivals() {
+        IntRoute route = route(2, 4);
+        CarLoad load = new CarLoad(4, route.size(), false);
+        load.passengerAdded(0, 4, route, 0);
+
+        // a new stop between 2 and 4 takes the load of the stop before it
+        route.add(1, 3);
+        load.stopAdded(1);
+        assertEquals(1, load.leaving(1));
+
+        load.departed();
+        assertEquals(1, load.getPassengers());
+        assertEquals(1, load.leaving(CarLoad.ORIGIN));
+        load.departed();
+        load.departed();
+        load.arrived();
+        assertEquals(0, load.getPassengers());
+        assertThrows(IndexOutOfBoundsException.class, () -> load.leaving(0));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        IntRoute route = route(2);
+        CarLoad load = new CarLoad(4, route.size(), false);
+        CarLoad copy = load.copy();
+        load.passengerAdded(0, 2, route, 0);
+
+        assertEquals(1, load.leaving(CarLoad.ORIGIN));
+        assertEquals(0, copy.leaving(CarLoad.ORIGIN));
+    }
+}
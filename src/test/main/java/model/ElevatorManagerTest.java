@@ -0,0 +1,122 @@
+package main.java.model;
+
+import main.java.dispatch.DispatchStrategies;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElevatorManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 50;
+
+    @Test
+    void commitAllAppliesEveryAssignment() {
+        ElevatorManager manager = manager(2);
+        FleetSnapshot fleet = manager.getFleetSnapshot();
+        AtomicInteger registered = new AtomicInteger();
+
+        assertTrue(manager.commitAll(new Assignment[] {
+                Assignment.appendBoth(fleet.get(0), 2, 5), Assignment.appendBoth(fleet.get(1), 7, 3)
+        }, registered::incrementAndGet));
+
+        FleetSnapshot changed = manager.getFleetSnapshot();
+        assertTrue(changed.get(0).willBeVisited(5));
+        assertTrue(changed.get(1).willBeVisited(3));
+        assertEquals(1, registered.get());
+    }
+
+    @Test
+    void commitAllChangesNothingIfOneVersionIsStale() {
+        ElevatorManager manager = manager(3);
+        FleetSnapshot stale = manager.getFleetSnapshot();
+        manager.commitAll(new Assignment[] {null, Assignment.appendBoth(stale.get(1), 4, 6), null}, () -> {});
+        FleetSnapshot before = manager.getFleetSnapshot();
+        AtomicInteger registered = new AtomicInteger();
+
+        assertFalse(manager.commitAll(new Assignment[] {
+                Assignment.appendBoth(before.get(0), 2, 5),
+                Assignment.appendBoth(stale.get(1), 8, 9),
+                Assignment.appendBoth(before.get(2), 1, 3)
+        }, registered::incrementAndGet));
+
+        FleetSnapshot after = manager.getFleetSnapshot();
+        for (int id = 0; id < 3; id++) {
+            assertSame(before.get(id), after.get(id), "elevator " + id);
+        }
+        assertEquals(0, registered.get());
+    }
+
+    @Test
+    void concurrentCallsNeverLoseOrDuplicateFloor() throws Exception {
+        ElevatorManager manager = manager(4);
+        CountDownLatch start = new CountDownLatch(1);
+        int[][] assigned = new int[THREADS][CALLS_PER_THREAD];
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] callers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                callers[t] = pool.submit(() -> {
+                    start.await();
+                    for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                        assigned[thread][call] = manager.askForElevator(from(thread, call), from(thread, call) + 1);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> caller: callers) caller.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        // every call has its own floors, so each of them is in exactly one route, pickup before destination
+        FleetSnapshot fleet = manager.getFleetSnapshot();
+        int[] occurrences = new int[from(THREADS, 0)];
+        for (ElevatorSnapshot elevator: fleet.asList()) {
+            for (int i = 0; i < elevator.getRouteLength(); i++) occurrences[elevator.getRouteFloor(i)]++;
+        }
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                int from = from(thread, call);
+                assertEquals(1, occurrences[from], "pickup " + from);
+                assertEquals(1, occurrences[from + 1], "destination " + (from + 1));
+                ElevatorSnapshot elevator = fleet.get(assigned[thread][call]);
+                int pickup = indexOf(elevator, from);
+                assertTrue(pickup >= 0 && pickup < indexOf(elevator, from + 1), "call from " + from);
+            }
+        }
+    }
+
+    /**
+     * @return pickup floor of given call; calls of all threads use different floors
+     */
+    private static int from(int thread, int call) {
+        return 1 + 2 * (thread * CALLS_PER_THREAD + call);
+    }
+
+    private static int indexOf(ElevatorSnapshot elevator, int floor) {
+        for (int i = 0; i < elevator.getRouteLength(); i++) {
+            if (elevator.getRouteFloor(i) == floor) return i;
+        }
+        return -1;
+    }
+
+    private static ElevatorManager manager(int elevators) {
+        return new ElevatorManager(Collections.nCopies(elevators, CarKinematics.DEFAULT), new AtomicBoolean(true),
+                new StandingScheduler(), DispatchStrategies.byName(DispatchStrategies.DEFAULT));
+    }
+}
@@ -0,0 +1,99 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FleetIndexTest {
+
+    // more than one word of elevator IDs
+    private static final int ELEVATORS = 70;
+    private static final int FLOORS = 24;
+    private static final int CHANGES = 3000;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void incrementalUpdateMatchesRebuild() {
+        List<ElevatorSnapshot> initial = new ArrayList<>();
+        for (int id = 0; id < ELEVATORS; id++) {
+            initial.add(randomSnapshot(id, 0));
+        }
+        FleetSnapshot fleet = FleetSnapshot.of(initial);
+
+        for (int change = 1; change <= CHANGES; change++) {
+            fleet = fleet.with(randomSnapshot(random.nextInt(ELEVATORS), change));
+
+            ElevatorSnapshot[] elevators = fleet.asList().toArray(new ElevatorSnapshot[0]);
+            assertSameIndex(FleetIndex.of(elevators), fleet.getIndex(), "change " + change);
+        }
+    }
+
+    @Test
+    void advanceMatchesRebuild() {
+        List<ElevatorSnapshot> elevators = new ArrayList<>();
+        for (int id = 0; id < ELEVATORS; id++) {
+            elevators.add(randomSnapshot(id, 0));
+        }
+        FleetSnapshot fleet = FleetSnapshot.of(elevators);
+
+        for (int step = 1; step <= CHANGES / ELEVATORS; step++) {
+            // a few elevators change between the versions, the others keep their snapshots
+            for (int i = 0; i < 5; i++) {
+                int id = random.nextInt(ELEVATORS);
+                elevators.set(id, randomSnapshot(id, step));
+            }
+            fleet = fleet.advance(step, elevators.toArray(new ElevatorSnapshot[0]));
+
+            assertSameIndex(FleetIndex.of(elevators.toArray(new ElevatorSnapshot[0])), fleet.getIndex(), "step " + step);
+        }
+    }
+
+    /**
+     * Random route of up to 5 floors; the elevator either stands or rides towards its first floor
+     */
+    private ElevatorSnapshot randomSnapshot(int id, long version) {
+        IntRoute route = new IntRoute();
+        int stops = random.nextInt(6);
+        for (int i = 0; i < stops; i++) {
+            route.add(random.nextInt(FLOORS));
+        }
+        int currentFloor = random.nextInt(FLOORS);
+        boolean moving = !route.isEmpty() && random.nextBoolean();
+        int nextFloor = route.isEmpty() ? currentFloor : route.peekFirst();
+        return new ElevatorSnapshot(id, version, currentFloor, nextFloor, moving, route);
+    }
+
+    private static void assertSameIndex(FleetIndex expected, FleetIndex actual, String message) {
+        assertEquals(expected.getMinFloorMillis(), actual.getMinFloorMillis(), message);
+        // above the indexed floors as well, where only elevators turning back down pass
+        for (int floor = 0; floor < FLOORS + 4; floor++) {
+            int f = floor;
+            String at = message + ", floor " + floor;
+            assertEquals(members(id -> expected.nextStanding(f, id)), members(id -> actual.nextStanding(f, id)),
+                    at + ", standing");
+            assertEquals(members(id -> expected.nextIdle(f, id)), members(id -> actual.nextIdle(f, id)), at + ", idle");
+            assertEquals(members(id -> expected.nextPassing(f, 1, id)), members(id -> actual.nextPassing(f, 1, id)),
+                    at + ", passing up");
+            assertEquals(members(id -> expected.nextPassing(f, -1, id)), members(id -> actual.nextPassing(f, -1, id)),
+                    at + ", passing down");
+        }
+    }
+
+    /**
+     * @param next search of an index returning the lowest ID not smaller than its argument, or -1
+     * @return all IDs the search finds
+     */
+    private static List<Integer> members(IntUnaryOperator next) {
+        List<Integer> members = new ArrayList<>();
+        for (int id = next.applyAsInt(0); id >= 0; id = next.applyAsInt(id + 1)) {
+            members.add(id);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,101 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FleetStatusTest {
+
+    private static final int ELEVATORS = 4;
+    private static final int PUBLISHES = 20_000;
+
+    @Test
+    void assemblesEveryVersionOnce() {
+        FleetStatus status = new FleetStatus(2);
+        status.publish(standing(0, 1, 3));
+        status.publish(standing(1, 1, 5));
+
+        FleetSnapshot fleet = status.current();
+        assertEquals(2, fleet.getVersion());
+        assertSame(fleet, status.current());
+
+        ElevatorSnapshot moved = standing(1, 2, 6);
+        status.publish(moved);
+        FleetSnapshot next = status.current();
+        assertEquals(3, next.getVersion());
+        assertSame(fleet.get(0), next.get(0));
+        assertSame(moved, next.get(1));
+        assertTrue(Arrays.equals(new int[] {1}, next.changedSince(fleet)));
+    }
+
+    @Test
+    void readersSeeEveryElevatorMoveForwardWhilePublishing() throws InterruptedException {
+        FleetStatus status = new FleetStatus(ELEVATORS);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread[] publishers = new Thread[ELEVATORS];
+        for (int id = 0; id < ELEVATORS; id++) {
+            int elevator = id;
+            // every elevator publishes its own changes in order, as Elevator does under its lock
+            publishers[id] = new Thread(() -> {
+                for (int version = 1; version <= PUBLISHES; version++) {
+                    status.publish(standing(elevator, version, version % 20));
+                }
+            });
+        }
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                FleetSnapshot previous = null;
+                while (!failed.get()) {
+                    FleetSnapshot fleet = status.current();
+                    if (!movedForward(previous, fleet)) failed.set(true);
+                    previous = fleet;
+                    if (fleet.getVersion() == (long) ELEVATORS * PUBLISHES) return;
+                }
+            });
+        }
+        for (Thread reader: readers) reader.start();
+        for (Thread publisher: publishers) publisher.start();
+        for (Thread publisher: publishers) publisher.join();
+        for (Thread reader: readers) reader.join();
+
+        assertFalse(failed.get());
+        FleetSnapshot last = status.current();
+        assertEquals((long) ELEVATORS * PUBLISHES, last.getVersion());
+        for (int id = 0; id < ELEVATORS; id++) {
+            assertEquals(PUBLISHES, last.get(id).getVersion());
+        }
+    }
+
+    /**
+     * @return true if the fleet is not older than the previous one, no elevator went back
+     * and changedSince reports exactly the elevators whose snapshot changed
+     */
+    private static boolean movedForward(FleetSnapshot previous, FleetSnapshot fleet) {
+        if (previous == null) return true;
+        if (fleet.getVersion() < previous.getVersion()) return false;
+        int[] changed = fleet.changedSince(previous);
+        for (int id = 0, next = 0; id < ELEVATORS; id++) {
+            long before = version(previous.get(id));
+            long after = version(fleet.get(id));
+            boolean reported = next < changed.length && changed[next] == id;
+            if (reported) next++;
+            if (after < before || reported != (after != before)) return false;
+        }
+        return true;
+    }
+
+    private static long version(ElevatorSnapshot elevator) {
+        return elevator != null ? elevator.getVersion() : 0;
+    }
+
+    private static ElevatorSnapshot standing(int id, long version, int floor) {
+        return new ElevatorSnapshot(id, version, floor, floor, false, new IntRoute());
+    }
+}
@@ -0,0 +1,100 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntRouteTest {
+
+    @Test
+    void insertsOnBothSidesOfIndex() {
+        IntRoute route = route(2, 6);
+        route.add(0, 1);
+        route.add(2, 4);
+        route.add(route.size(), 9);
+
+        assertFloors(route, 1, 2, 4, 6, 9);
+    }
+
+    @Test
+    void keepsOrderWhenRingWrapsAndGrows() {
+        IntRoute route = new IntRoute();
+        for (int floor = 0; floor < 6; floor++) {
+            route.add(floor);
+        }
+        route.pollFirst();
+        route.pollFirst();
+        // the head is no longer at 0, so the next floors wrap around the buffer and then make it grow
+        for (int floor = 6; floor < 20; floor++) {
+            route.add(floor);
+        }
+        route.add(1, 30);
+
+        assertEquals(19, route.size());
+        assertEquals(2, route.get(0));
+        assertEquals(30, route.get(1));
+        assertEquals(3, route.get(2));
+        assertEquals(19, route.get(18));
+    }
+
+    @Test
+    void tracksDistanceRidesAndVisits() {
+        IntRoute route = route(5, 5, 2);
+
+        assertEquals(5 + 3, route.totalDistance(0));
+        assertEquals(3, route.totalDistance(5));
+        // 8 floors, 2 rides (to 5, then to 2), 3 stops
+        assertEquals(8 * 100 + 2 * 1000 + 3 * 10, route.totalMillis(0, new CarKinematics(100, 1000, 10)));
+        assertTrue(route.contains(5));
+
+        route.pollFirst();
+        assertTrue(route.contains(5));
+        route.pollFirst();
+        assertFalse(route.contains(5));
+        assertEquals(0, route.totalDistance(2));
+        assertFalse(route.contains(-1));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        IntRoute route = route(1, 2);
+        IntRoute copy = route.copy();
+        route.add(3);
+        copy.pollFirst();
+
+        assertFloors(route, 1, 2, 3);
+        assertFloors(copy, 2);
+        assertFalse(copy.contains(3));
+    }
+
+    @Test
+    void rejectsInvalidOperations() {
+        IntRoute route = route(1);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> route.add(2, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> route.get(1));
+        assertThrows(IllegalArgumentException.class, () -> route.add(-1));
+        route.pollFirst();
+        assertThrows(NoSuchElementException.class, route::peekFirst);
+    }
+
+    static IntRoute route(int... floors) {
+        IntRoute route = new IntRoute();
+        for (int floor: floors) {
+            route.add(floor);
+        }
+        return route;
+    }
+
+    static void assertFloors(IntRoute route, int... floors) {
+        assertEquals(floors.length, route.size());
+        for (int i = 0; i < floors.length; i++) {
+            assertEquals(floors[i], route.get(i), "floor " + i);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package main.java.model;
+
+import main.java.simulation.ElevatorScheduler;
+import main.java.threads.Elevator;
+
+import java.util.List;
+
+/**
+ * Scheduler that never moves the elevators, so their routes only grow; unlike DiscreteEventScheduler,
+ * calls can be made from many threads
+ */
+class StandingScheduler implements ElevatorScheduler {
+
+    @Override
+    public long now() {
+        return 0;
+    }
+
+    @Override
+    public void start(List<Elevator> elevators) {
+    }
+
+    @Override
+    public void floorAdded(Elevator elevator) {
+    }
+
+    @Override
+    public void schedule(long time, Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,81 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import static main.java.model.IntRouteTest.route;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SweepRouteTest {
+
+    // rides up from 3 to 4, continues to 6 and turns back down to 2
+    private final ElevatorSnapshot turning = new ElevatorSnapshot(0, 0, 3, 4, true, route(6, 2));
+
+    @Test
+    void splitsRouteIntoSweeps() {
+        SweepRoute sweeps = turning.getSweeps();
+
+        assertEquals(2, sweeps.getSweepCount());
+        assertTrue(sweeps.turnsBackDown());
+    }
+
+    @Test
+    void passesFloorsAheadInDirectionOfCall() {
+        SweepRoute sweeps = turning.getSweeps();
+
+        assertTrue(sweeps.passes(5, 6));
+        // the elevator has already left floor 3 behind
+        assertFalse(sweeps.passes(3, 4));
+        // the second sweep rides down to 2, turning back at any floor above
+        assertTrue(sweeps.passes(5, 1));
+        assertTrue(sweeps.passes(9, 8));
+        assertFalse(sweeps.passes(1, 0));
+    }
+
+    @Test
+    void boundsContainEveryPassedFloor() {
+        SweepRoute sweeps = turning.getSweeps();
+        for (int direction = -1; direction <= 1; direction += 2) {
+            for (int floor = 0; floor < 12; floor++) {
+                if (sweeps.passes(floor, floor + direction)) {
+                    assertTrue(floor >= sweeps.lowestPassed(direction) && floor <= sweeps.highestPassed(direction),
+                            "floor " + floor + " in direction " + direction);
+                }
+            }
+        }
+        assertEquals(4, sweeps.lowestPassed(1));
+        assertEquals(6, sweeps.highestPassed(1));
+        assertEquals(2, sweeps.lowestPassed(-1));
+        assertEquals(Integer.MAX_VALUE, sweeps.highestPassed(-1));
+    }
+
+    @Test
+    void insertsCallIntoSweepInItsDirection() {
+        ElevatorSnapshot planned = turning.withAssignment(turning.getSweeps().assign(5, 7));
+        IntRouteTest.assertFloors(routeOf(planned), 5, 6, 7, 2);
+
+        planned = turning.withAssignment(turning.getSweeps().assign(5, 3));
+        IntRouteTest.assertFloors(routeOf(planned), 6, 5, 3, 2);
+    }
+
+    @Test
+    void appendsCallNoSweepCanTake() {
+        ElevatorSnapshot idle = new ElevatorSnapshot(0, 0, 0, 0, false, new IntRoute());
+        SweepRoute sweeps = idle.getSweeps();
+
+        assertEquals(0, sweeps.getSweepCount());
+        assertFalse(sweeps.passes(3, 1));
+        IntRouteTest.assertFloors(routeOf(idle.withAssignment(sweeps.assign(3, 1))), 3, 1);
+        // the elevator already stands at the pickup
+        IntRouteTest.assertFloors(routeOf(idle.withAssignment(sweeps.assign(0, 2))), 2);
+    }
+
+    private static IntRoute routeOf(ElevatorSnapshot elevator) {
+        IntRoute route = new IntRoute();
+        for (int i = 0; i < elevator.getRouteLength(); i++) {
+            route.add(elevator.getRouteFloor(i));
+        }
+        return route;
+    }
+}
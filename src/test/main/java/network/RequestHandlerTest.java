@@ -0,0 +1,72 @@
+package main.java.network;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorManager;
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+import main.java.simulation.DiscreteEventScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestHandlerTest {
+
+    private static final PositionSink NOBODY = position -> {};
+
+    @Test
+    void answersPickup() {
+        Message response = handler().handleAsync(0, 3, Message.pickup(5, 11), NOBODY).join();
+
+        assertEquals(MessageType.ASSIGNMENT, response.type);
+        assertEquals(5, response.floor);
+        assertEquals(11, response.correlation);
+    }
+
+    @Test
+    void refusesEveryPickupOfBatchNewerThanNegotiatedVersion() {
+        Message batch = Message.pickupBatch(List.of(Message.pickup(3, 1), Message.pickup(6, 2)));
+
+        CompletableFuture<Message> response = handler().handleAsync(0, 1, batch, NOBODY);
+
+        assertTrue(response.isDone());
+        assertEquals(MessageType.RESULT_BATCH, response.join().type);
+        for (int i = 0; i < 2; i++) {
+            Message refused = response.join().entries.get(i);
+            assertEquals(MessageType.REFUSED, refused.type);
+            assertEquals(Reason.UNSUPPORTED_REQUEST, refused.reason);
+            assertEquals(batch.entries.get(i).correlation, refused.correlation);
+        }
+    }
+
+    @Test
+    void leavesSubscriptionUnansweredWithoutBroadcaster() {
+        CompletableFuture<Message> response = handler().handleAsync(0, 3, Message.subscribe(1), NOBODY);
+
+        assertTrue(response.isDone());
+        assertNull(response.join());
+    }
+
+    @Test
+    void refusesFailedPickupsWithTheirCorrelations() {
+        Message refused = RequestHandler.failed(Message.pickup(4, 7));
+        assertEquals(Reason.DISPATCH_FAILED, refused.reason);
+        assertEquals(7, refused.correlation);
+
+        assertNull(RequestHandler.failed(Message.unsubscribe(0)));
+    }
+
+    private static RequestHandler handler() {
+        ElevatorManager manager = new ElevatorManager(Collections.nCopies(2, CarKinematics.DEFAULT), new AtomicBoolean(true),
+                new DiscreteEventScheduler(), DispatchStrategies.byName(DispatchStrategies.DEFAULT));
+        return new RequestHandler(manager, 10);
+    }
+}
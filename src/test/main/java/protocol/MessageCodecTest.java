@@ -0,0 +1,145 @@
+package main.java.protocol;
+
+import main.java.model.Message;
+import main.java.model.MessageType;
+import main.java.model.Reason;
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCodecTest {
+
+    @Test
+    void roundTripsHandshake() throws ProtocolException {
+        Message hello = roundTrip(Message.hello(1, 3, 7, 2));
+        assertEquals(MessageType.HELLO, hello.type);
+        assertEquals(1, hello.version);
+        assertEquals(3, hello.maxVersion);
+        assertEquals(7, hello.floor);
+        assertEquals(2, hello.building);
+
+        Message anyFloor = roundTrip(Message.hello(1, 3));
+        assertEquals(-1, anyFloor.floor);
+        assertEquals(0, anyFloor.building);
+
+        Message welcome = roundTrip(Message.welcome(3, 7));
+        assertEquals(MessageType.WELCOME, welcome.type);
+        assertEquals(3, welcome.version);
+        assertEquals(7, welcome.floor);
+
+        assertEquals(Reason.NO_SUCH_BUILDING, roundTrip(Message.rejected(Reason.NO_SUCH_BUILDING)).reason);
+    }
+
+    @Test
+    void roundTripsPickupsAndAnswers() throws ProtocolException {
+        assertEquals(-1, roundTrip(Message.pickup(4)).correlation);
+
+        Message pickup = roundTrip(Message.pickup(4, 300));
+        assertEquals(MessageType.PICKUP, pickup.type);
+        assertEquals(4, pickup.floor);
+        assertEquals(300, pickup.correlation);
+
+        Message assignment = roundTrip(Message.assignment(4, 2, 300));
+        assertEquals(MessageType.ASSIGNMENT, assignment.type);
+        assertEquals(4, assignment.floor);
+        assertEquals(2, assignment.elevator);
+        assertEquals(300, assignment.correlation);
+
+        Message refused = roundTrip(Message.refused(4, Reason.DISPATCH_FAILED, 301));
+        assertEquals(MessageType.REFUSED, refused.type);
+        assertEquals(Reason.DISPATCH_FAILED, refused.reason);
+        assertEquals(301, refused.correlation);
+    }
+
+    @Test
+    void roundTripsBatches() throws ProtocolException {
+        Message batch = roundTrip(Message.pickupBatch(List.of(Message.pickup(1, 0), Message.pickup(9, 1))));
+        assertEquals(MessageType.PICKUP_BATCH, batch.type);
+        assertEquals(2, batch.entries.size());
+        assertEquals(9, batch.entries.get(1).floor);
+        assertEquals(1, batch.entries.get(1).correlation);
+
+        Message results = roundTrip(Message.resultBatch(List.of(Message.assignment(1, 0, 0),
+                Message.refused(9, Reason.DISPATCH_FAILED, 1))));
+        assertEquals(MessageType.RESULT_BATCH, results.type);
+        assertEquals(MessageType.ASSIGNMENT, results.entries.get(0).type);
+        assertEquals(MessageType.REFUSED, results.entries.get(1).type);
+    }
+
+    @Test
+    void roundTripsPositions() throws ProtocolException {
+        assertEquals(5, roundTrip(Message.subscribe(5)).elevator);
+        assertEquals(MessageType.UNSUBSCRIBE, roundTrip(Message.unsubscribe(5)).type);
+
+        Message position = roundTrip(Message.position(5, 3, 4, true, 2500));
+        assertEquals(5, position.elevator);
+        assertEquals(3, position.floor);
+        assertEquals(4, position.nextFloor);
+        assertTrue(position.moving);
+        assertEquals(2500, position.eta);
+        // -1: the elevator does not go to the floor of the client
+        assertEquals(-1, roundTrip(Message.position(5, 3, 3, false, -1)).eta);
+
+        assertEquals(MessageType.EXIT, roundTrip(Message.exit()).type);
+    }
+
+    @Test
+    void waitsForIncompleteFrame() throws ProtocolException {
+        ByteBuffer frame = encode(Message.assignment(4, 2, 300));
+        frame.limit(frame.limit() - 1);
+
+        assertNull(MessageCodec.tryDecode(frame));
+        assertEquals(0, frame.position());
+    }
+
+    @Test
+    void rejectsInvalidFrameLength() {
+        assertThrows(ProtocolException.class, () -> MessageCodec.tryDecode(bytes(0)));
+        // 5000 > MAX_FRAME_LENGTH
+        assertThrows(ProtocolException.class, () -> MessageCodec.tryDecode(bytes(0x88, 0x27)));
+        assertThrows(ProtocolException.class, () -> MessageCodec.tryDecode(bytes(0x80, 0x80, 0x80)));
+    }
+
+    @Test
+    void skipsMalformedBody() throws ProtocolException {
+        // ASSIGNMENT without the elevator, unknown opcode, batch without entries
+        ByteBuffer in = bytes(2, MessageType.ASSIGNMENT.opcode, 4, 1, 0x60, 2, MessageType.PICKUP_BATCH.opcode, 0);
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.tryDecode(in));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.tryDecode(in));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.tryDecode(in));
+        assertEquals(in.limit(), in.position());
+    }
+
+    @Test
+    void refusesNegativeFields() {
+        assertThrows(IllegalArgumentException.class, () -> encode(Message.assignment(4, -2)));
+    }
+
+    private static Message roundTrip(Message message) throws ProtocolException {
+        ByteBuffer frame = encode(message);
+        Message decoded = MessageCodec.tryDecode(frame);
+        assertEquals(frame.limit(), frame.position());
+        return decoded;
+    }
+
+    private static ByteBuffer encode(Message message) {
+        ByteBuffer frame = ByteBuffer.allocate(MessageCodec.MAX_HEADER_LENGTH + MessageCodec.MAX_FRAME_LENGTH);
+        MessageCodec.encode(message, frame);
+        return frame.flip();
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length);
+        for (int value: values) {
+            buffer.put((byte) value);
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,75 @@
+package main.java.simulation;
+
+import main.java.dispatch.DispatchStrategies;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscreteEventSchedulerTest {
+
+    // time, from, to of every call
+    private static final long[][] CALLS = {
+            {0, 0, 7}, {0, 5, 1}, {1_200, 3, 9}, {1_200, 9, 0}, {4_000, 2, 6},
+            {4_500, 8, 2}, {9_000, 0, 4}, {9_000, 6, 3}, {15_000, 1, 8}, {21_000, 7, 0},
+    };
+
+    @Test
+    void sameCallsGiveSameTimeline() {
+        List<String> first = timeline();
+        List<String> second = timeline();
+
+        assertFalse(first.isEmpty());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void visitsEveryRequestedFloor() {
+        List<String> timeline = timeline();
+
+        for (long[] call: CALLS) {
+            assertTrue(timeline.stream().anyMatch(event -> event.endsWith("floor " + call[1])), "pickup at " + call[1]);
+            assertTrue(timeline.stream().anyMatch(event -> event.endsWith("floor " + call[2])), "drop-off at " + call[2]);
+        }
+    }
+
+    @Test
+    void refusesTasksInThePast() {
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+        scheduler.runUntil(1_000);
+
+        assertEquals(1_000, scheduler.now());
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(999, () -> {}));
+    }
+
+    /**
+     * Replays CALLS in a fresh building of 3 elevators
+     * @return assignments and arrivals in the order of the simulation, with their times
+     */
+    private static List<String> timeline() {
+        DiscreteEventScheduler scheduler = new DiscreteEventScheduler();
+        ElevatorManager manager = new ElevatorManager(Collections.nCopies(3, CarKinematics.DEFAULT), new AtomicBoolean(true),
+                scheduler, DispatchStrategies.byName(DispatchStrategies.DEFAULT));
+        List<String> timeline = new ArrayList<>();
+        scheduler.setArrivalListener((elevator, time) ->
+                timeline.add(time + ": elevator " + elevator.getID() + " at floor " + elevator.getSnapshot().getCurrentFloor()));
+        for (long[] call: CALLS) {
+            int from = (int) call[1];
+            int to = (int) call[2];
+            scheduler.schedule(call[0], () ->
+                    timeline.add(scheduler.now() + ": " + from + " -> " + to + " by " + manager.askForElevator(from, to)));
+        }
+        scheduler.runUntilIdle();
+        manager.shutdown();
+        return timeline;
+    }
+}
@@ -0,0 +1,77 @@
+package main.java.threads;
+
+import main.java.model.Assignment;
+import main.java.model.CarKinematics;
+import main.java.model.ElevatorSnapshot;
+import main.java.model.FleetStatus;
+import main.java.model.LatencyMetric;
+import main.java.model.PassengerTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElevatorTest {
+
+    @Test
+    void commitsAssignmentOfCurrentSnapshot() {
+        Elevator elevator = elevator();
+        AtomicInteger registered = new AtomicInteger();
+
+        assertTrue(elevator.commit(Assignment.appendBoth(elevator.getSnapshot(), 2, 5), registered::incrementAndGet));
+
+        ElevatorSnapshot snapshot = elevator.getSnapshot();
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(2, snapshot.getRouteLength());
+        assertEquals(2, snapshot.getRouteFloor(0));
+        assertEquals(5, snapshot.getRouteFloor(1));
+        assertEquals(1, registered.get());
+    }
+
+    @Test
+    void rejectsAssignmentOfStaleSnapshot() {
+        Elevator elevator = elevator();
+        ElevatorSnapshot stale = elevator.getSnapshot();
+        elevator.commit(Assignment.appendBoth(stale, 2, 5), () -> {});
+        AtomicInteger registered = new AtomicInteger();
+
+        assertFalse(elevator.commit(Assignment.appendBoth(stale, 7, 1), registered::incrementAndGet));
+
+        ElevatorSnapshot snapshot = elevator.getSnapshot();
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(2, snapshot.getRouteLength());
+        assertFalse(snapshot.willBeVisited(7));
+        assertEquals(0, registered.get());
+    }
+
+    @Test
+    void rejectsAssignmentWhileLockedBySomeoneElse() throws InterruptedException {
+        Elevator elevator = elevator();
+        ElevatorSnapshot current = elevator.getSnapshot();
+        Thread holder = new Thread(() -> elevator.getLock().lock());
+        holder.start();
+        holder.join();
+
+        assertFalse(elevator.commit(Assignment.appendBoth(current, 2, 5), () -> {}));
+        assertSame(current, elevator.getSnapshot());
+    }
+
+    @Test
+    void appliesOnlyUnderLock() {
+        Elevator elevator = elevator();
+
+        assertThrows(IllegalStateException.class, () -> elevator.apply(Assignment.appendBoth(elevator.getSnapshot(), 2, 5)));
+    }
+
+    private static Elevator elevator() {
+        Elevator.Context context = new Elevator.Context(new AtomicBoolean(true), new LatencyMetric("departure"),
+                new PassengerTracker(1, System::currentTimeMillis), new FleetStatus(1));
+        return new Elevator(0, CarKinematics.DEFAULT, context);
+    }
+}